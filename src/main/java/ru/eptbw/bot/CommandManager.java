@@ -2,23 +2,25 @@ package ru.eptbw.bot;
 
 import ru.eptbw.bot.commands.*;
 import org.telegram.telegrambots.meta.api.objects.Update;
-import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.gemini.TranslationBackend;
 import ru.eptbw.bot.services.DatabaseManager;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class CommandManager {
     private final Map<String, Command> commands;
     private final DatabaseManager dbManager;
 
-    public CommandManager(GeminiService geminiService) {
+    public CommandManager(TranslationBackend translationBackend) {
         this.commands = new HashMap<>();
         this.dbManager = DatabaseManager.getInstance();
-        initializeCommands(geminiService);
+        initializeCommands(translationBackend);
     }
 
-    private void initializeCommands(GeminiService geminiService) {
+    private void initializeCommands(TranslationBackend translationBackend) {
         // Создаем основные команды
         Command aboutCommand = new AboutCommand();
         Command authorsCommand = new AuthorsCommand();
@@ -44,7 +46,7 @@ public class CommandManager {
         registerTranslationAliases(setTranslationCommand);
 
         // Создаем TranslateCommand
-        Command translateCommand = new TranslateCommand(geminiService);
+        Command translateCommand = new TranslateCommand(translationBackend);
         registerCommand(translateCommand);
 
         // Создаем команду профиля
@@ -127,6 +129,45 @@ public class CommandManager {
         return "❌ Неизвестная команда. Используйте /help для списка команд.";
     }
 
+    /**
+     * Асинхронное выполнение команды: статистика сохраняется по завершении future
+     */
+    public CompletableFuture<String> executeCommandAsync(Update update, String text) {
+        String[] parts = text.split(" ", 2);
+        String commandName = parts[0].toLowerCase();
+        String[] args = parts.length > 1 ? parts[1].split(" ") : new String[0];
+
+        Command command = getCommand(commandName);
+        if (command == null) {
+            return CompletableFuture.completedFuture("❌ Неизвестная команда. Используйте /help для списка команд.");
+        }
+
+        Long userId = update.getMessage().getFrom().getId();
+        String userName = getUserDisplayName(update.getMessage().getFrom());
+        long startTime = System.currentTimeMillis();
+
+        CompletableFuture<String> resultFuture;
+        try {
+            resultFuture = command.executeAsync(update, args);
+        } catch (Exception e) {
+            resultFuture = CompletableFuture.failedFuture(e);
+        }
+
+        return resultFuture.handle((result, error) -> {
+            long executionTime = System.currentTimeMillis() - startTime;
+
+            if (error == null) {
+                dbManager.saveSuccessfulCommand(userId, userName, commandName, executionTime);
+                return result;
+            }
+
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            dbManager.saveFailedCommand(userId, userName, commandName, executionTime, cause.getMessage());
+            return "❌ Произошла ошибка при выполнении команды: " + cause.getMessage();
+        });
+    }
+
     private String getUserDisplayName(org.telegram.telegrambots.meta.api.objects.User user) {
         if (user.getUserName() != null && !user.getUserName().isEmpty()) {
             return "@" + user.getUserName();
@@ -4,16 +4,26 @@ import org.telegram.telegrambots.bots.TelegramLongPollingBot;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.eptbw.bot.cache.CacheService;
+import ru.eptbw.bot.cache.DiskCache;
 import ru.eptbw.bot.features.InlineSuggestionsService;
 import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.gemini.TranslationBackend;
 import ru.eptbw.bot.handlers.AsyncMessageHandler;
 import ru.eptbw.bot.services.AutoTranslateService;
+import ru.eptbw.bot.services.CachingTranslationBackend;
+import ru.eptbw.bot.services.ChunkedTranslationBackend;
+import ru.eptbw.bot.services.DatabaseManager;
+import ru.eptbw.bot.services.DictionaryTranslationBackend;
+import ru.eptbw.bot.services.TranslationCacheWarmer;
 import ru.eptbw.bot.threading.RateLimiterService;
 import ru.eptbw.bot.threading.ThreadPoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.eptbw.config.Config;
 
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
 public class TelegramBot extends TelegramLongPollingBot {
     private static final Logger logger = LoggerFactory.getLogger(TelegramBot.class);
 
@@ -25,14 +35,54 @@ public class TelegramBot extends TelegramLongPollingBot {
 
     public TelegramBot() {
         this.geminiService = new GeminiService();
-        this.commandManager = new CommandManager(geminiService);
-        this.autoTranslateService = new AutoTranslateService(geminiService);
+        ChunkedTranslationBackend chunkedBackend = new ChunkedTranslationBackend(geminiService,
+                Config.getTranslationChunkSize(), Config.getTranslationChunkParallelism());
+        // Общий кеш стоит над разбиением на части, чтобы длинный текст кешировался целиком
+        CachingTranslationBackend cachingBackend = Config.getTranslationCacheExpireMinutes() > 0
+                ? new CachingTranslationBackend(chunkedBackend, CacheService.getInstance(),
+                        Config.getTranslationCacheRefreshMinutes(), Config.getTranslationCacheExpireMinutes())
+                : null;
+        TranslationBackend translationBackend = DictionaryTranslationBackend.wrap(
+                cachingBackend != null ? cachingBackend : chunkedBackend);
+        this.commandManager = new CommandManager(translationBackend);
+        this.autoTranslateService = new AutoTranslateService(translationBackend);
         this.asyncHandler = new AsyncMessageHandler(this);
         this.inlineSuggestions = new InlineSuggestionsService(this);
 
         // Инициализация сервисов
-        CacheService.getInstance();
-        RateLimiterService.getInstance();
+        CacheService cacheService = CacheService.getInstance();
+        if (Config.isDiskCacheEnabled()) {
+            DiskCache diskCache = new DiskCache(Path.of(Config.getDiskCacheDir()),
+                    Config.getDiskCacheMaxMb() * 1024 * 1024, ThreadPoolManager.getInstance().getExecutor());
+            cacheService.attachDiskCache(diskCache);
+            // Индекс загружается в фоне, первые запросы не ждут его на старте
+            ThreadPoolManager.getInstance().submitTask(diskCache::ensureLoaded);
+            ThreadPoolManager.getInstance().registerStatsSource("disk-cache", diskCache::getStats);
+        }
+        if (cachingBackend != null && Config.getCacheWarmupLimit() > 0) {
+            // Прогрев идет в фоне с бюджетом времени: бот начинает отвечать, не дожидаясь его
+            TranslationCacheWarmer warmer = new TranslationCacheWarmer(
+                    DatabaseManager.getInstance()::streamTopTranslations, cachingBackend);
+            ThreadPoolManager.getInstance().submitTask(() -> warmer.warmUp(Config.getCacheWarmupLimit(),
+                    TimeUnit.SECONDS.toMillis(Config.getCacheWarmupBudgetSeconds())));
+        }
+        ThreadPoolManager.getInstance().registerStatsSource("cache", cacheService::getStats);
+        ThreadPoolManager.getInstance().registerStatsSource("cache-metrics", cacheService::getMetricsStats);
+        ThreadPoolManager.getInstance().registerStatsSource("rate-limits", RateLimiterService.getInstance()::getTokenStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini", geminiService::getStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini-resilience", geminiService::getResilienceStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini-tokens", geminiService::getTokenStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini-connections", geminiService::getConnectionStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini-models", geminiService::getModelStats);
+        ThreadPoolManager.getInstance().registerStatsSource("gemini-keys", geminiService::getApiKeyStats);
+        ThreadPoolManager.getInstance().registerStatsSource("long-texts", chunkedBackend::getChunkStats);
+        if (cachingBackend != null) {
+            ThreadPoolManager.getInstance().registerStatsSource("translation-cache", cachingBackend::getCacheStats);
+        }
+        if (translationBackend instanceof DictionaryTranslationBackend dictionaryBackend) {
+            ThreadPoolManager.getInstance().registerStatsSource("dictionary", dictionaryBackend::getDictionaryStats);
+        }
+        geminiService.startConnectionMaintenance();
 
         logger.info("TelegramBot инициализирован с многопоточной обработкой");
     }
@@ -72,6 +122,7 @@ public class TelegramBot extends TelegramLongPollingBot {
         logger.info("Завершение работы бота...");
 
         asyncHandler.shutdown();
+        CacheService.getInstance().shutdown();
         ThreadPoolManager.getInstance().shutdown();
 
         try {
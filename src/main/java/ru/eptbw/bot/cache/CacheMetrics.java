@@ -0,0 +1,225 @@
+package ru.eptbw.bot.cache;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики кеша в разрезе пространств ключей ("translation:", "command:" и т.д.): попадания,
+ * промахи, удаления по причинам и время загрузки значения после промаха.
+ * Счетчики - LongAdder, поиск пространства ключа идет по небольшому массиву префиксов без аллокаций,
+ * поэтому запись метрик не добавляет блокировок на горячем пути.
+ */
+final class CacheMetrics {
+    // Ключи без префикса и все пространства сверх лимита попадают в одно общее
+    private static final String OTHER = "прочее";
+    private static final int MAX_NAMESPACES = 16;
+
+    private final Namespace other = new Namespace(OTHER);
+    private volatile Namespace[] namespaces = new Namespace[0];
+
+    void recordHit(String key, boolean fromDisk) {
+        Namespace namespace = namespaceOf(key);
+        namespace.hits.increment();
+        if (fromDisk) {
+            namespace.diskHits.increment();
+        }
+    }
+
+    void recordMiss(String key) {
+        namespaceOf(key).misses.increment();
+    }
+
+    void recordRefresh(String key) {
+        namespaceOf(key).refreshes.increment();
+    }
+
+    void recordRemoval(String key, SegmentedLruMap.RemovalCause cause) {
+        namespaceOf(key).removals.get(cause).increment();
+    }
+
+    void recordLoad(String key, long loadNanos, boolean success) {
+        Namespace namespace = namespaceOf(key);
+        namespace.loadTime.record(TimeUnit.NANOSECONDS.toMillis(loadNanos));
+        if (!success) {
+            namespace.loadFailures.increment();
+        }
+    }
+
+    long getHits(String key) {
+        return namespaceOf(key).hits.sum();
+    }
+
+    long getMisses(String key) {
+        return namespaceOf(key).misses.sum();
+    }
+
+    long getRefreshes(String key) {
+        return namespaceOf(key).refreshes.sum();
+    }
+
+    long getRemovals(String key, SegmentedLruMap.RemovalCause cause) {
+        return namespaceOf(key).removals.get(cause).sum();
+    }
+
+    LoadTimeHistogram getLoadTime(String key) {
+        return namespaceOf(key).loadTime;
+    }
+
+    String getStats() {
+        long hits = 0;
+        long requests = 0;
+        StringBuilder details = new StringBuilder();
+        Namespace[] all = Arrays.copyOf(namespaces, namespaces.length + 1);
+        all[all.length - 1] = other;
+
+        for (Namespace namespace : all) {
+            long namespaceHits = namespace.hits.sum();
+            long namespaceRequests = namespaceHits + namespace.misses.sum();
+            if (namespaceRequests == 0 && namespace.loadTime.getCount() == 0) {
+                continue;
+            }
+            hits += namespaceHits;
+            requests += namespaceRequests;
+            details.append("; ").append(namespace.getStats());
+        }
+
+        return String.format("Метрики кеша: попаданий=%d из %d (%.1f%%)",
+                hits, requests, ratio(hits, requests)) + details;
+    }
+
+    private Namespace namespaceOf(String key) {
+        for (Namespace namespace : namespaces) {
+            if (key.startsWith(namespace.prefix)) {
+                return namespace;
+            }
+        }
+
+        int separator = key.indexOf(':');
+        return separator > 0 ? register(key.substring(0, separator + 1)) : other;
+    }
+
+    private synchronized Namespace register(String prefix) {
+        for (Namespace namespace : namespaces) {
+            if (namespace.prefix.equals(prefix)) {
+                return namespace;
+            }
+        }
+        if (namespaces.length >= MAX_NAMESPACES) {
+            return other;
+        }
+
+        Namespace namespace = new Namespace(prefix);
+        Namespace[] updated = Arrays.copyOf(namespaces, namespaces.length + 1);
+        updated[updated.length - 1] = namespace;
+        namespaces = updated;
+        return namespace;
+    }
+
+    private static double ratio(long part, long total) {
+        return total > 0 ? part * 100.0 / total : 0.0;
+    }
+
+    private static final class Namespace {
+        private final String prefix;
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder diskHits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder loadFailures = new LongAdder();
+        private final LongAdder refreshes = new LongAdder();
+        private final Map<SegmentedLruMap.RemovalCause, LongAdder> removals =
+                new EnumMap<>(SegmentedLruMap.RemovalCause.class);
+        private final LoadTimeHistogram loadTime = new LoadTimeHistogram();
+
+        Namespace(String prefix) {
+            this.prefix = prefix;
+            // Карта заполняется целиком до публикации и дальше только читается
+            for (SegmentedLruMap.RemovalCause cause : SegmentedLruMap.RemovalCause.values()) {
+                removals.put(cause, new LongAdder());
+            }
+        }
+
+        String getStats() {
+            long hitCount = hits.sum();
+            long total = hitCount + misses.sum();
+            return String.format("%s попаданий=%d (с диска %d), промахов=%d (%.1f%% попаданий), " +
+                            "вытеснено=%d, истекло=%d, заменено=%d, удалено=%d, обновлено заранее=%d, " +
+                            "загрузка %s, ошибок загрузки=%d",
+                    prefix, hitCount, diskHits.sum(), total - hitCount, ratio(hitCount, total),
+                    removals.get(SegmentedLruMap.RemovalCause.SIZE).sum(),
+                    removals.get(SegmentedLruMap.RemovalCause.EXPIRED).sum(),
+                    removals.get(SegmentedLruMap.RemovalCause.REPLACED).sum(),
+                    removals.get(SegmentedLruMap.RemovalCause.EXPLICIT).sum(), refreshes.sum(),
+                    loadTime.getStats(), loadFailures.sum());
+        }
+    }
+
+    /**
+     * Гистограмма времени загрузки с корзинами по степеням двойки миллисекунд:
+     * запись - один LongAdder, перцентили оцениваются по верхней границе корзины
+     */
+    static final class LoadTimeHistogram {
+        // Последняя корзина собирает все, что дольше ~9 минут
+        private static final int BUCKETS = 20;
+
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        private final LongAdder totalMillis = new LongAdder();
+
+        LoadTimeHistogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long millis) {
+            // Корзина i содержит значения из [2^(i-1), 2^i), корзина 0 - меньше миллисекунды
+            int index = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(Math.max(0, millis)));
+            buckets[index].increment();
+            totalMillis.add(Math.max(0, millis));
+        }
+
+        long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * Верхняя граница корзины, в которую попадает перцентиль (мс), или 0 без замеров
+         */
+        long percentile(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+
+            long rank = (long) Math.ceil(percentile / 100.0 * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return 1L << i;
+                }
+            }
+            return 1L << (BUCKETS - 1);
+        }
+
+        String getStats() {
+            long count = getCount();
+            if (count == 0) {
+                return "нет замеров";
+            }
+            return String.format("p50/p95/p99<=%d/%d/%d мс (среднее %d мс, замеров %d)",
+                    percentile(50), percentile(95), percentile(99), totalMillis.sum() / count, count);
+        }
+    }
+}
@@ -4,29 +4,93 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.eptbw.config.Config;
 
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
 
 public class CacheService {
     private static final Logger logger = LoggerFactory.getLogger(CacheService.class);
     private static CacheService instance;
-
-    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private static final String TRANSLATION_PREFIX = "translation:";
+    private static final Object EXPIRED = new Object();
+    private static final Pattern HORIZONTAL_WHITESPACE = Pattern.compile("[ \\t\\x0B\\f\\u00A0]+");
+    // Служебные объекты записи в куче: узел SegmentedLruMap, узел и ячейка HashMap, CacheEntry
+    private static final long ENTRY_OVERHEAD = 56 + 32 + 8 + 48;
+    private static final long EXPIRATION_TICK_MILLIS = 1000;
+
+    // Вытеснение O(1): раньше при переполнении каждая вставка искала самую старую запись полным обходом
+    private final SegmentedLruMap<String, CacheEntry> cache;
+    // Строковые значения вне кучи (null - режим отключен)
+    private final OffHeapStore offHeapStore;
+    private final CacheMetrics metrics = new CacheMetrics();
     private final int maxSize;
+    private final long maxBytes;
     private final long expireMinutes;
+    // Ключи, для которых уже идет фоновое обновление: на запись - не больше одного запроса
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final Executor refreshExecutor;
+    private volatile DiskCache diskCache;
 
     private CacheService() {
-        this.maxSize = Config.getCacheMaxSize();
-        this.expireMinutes = Config.getCacheExpireMinutes();
+        this(Config.getCacheMaxSize(), Config.getCacheExpireMinutes(),
+                Config.isCacheOffHeapEnabled() ? Config.getCacheOffHeapMaxMb() * 1024 * 1024 : 0,
+                Config.getCacheMaxMb() * 1024 * 1024, ru.eptbw.bot.threading.ThreadPoolManager.getInstance().getExecutor());
 
-        // Очистка устаревших записей каждые 5 минут
+        // Колесо таймеров поворачивается раз в секунду и трогает только истекающие записи
         ru.eptbw.bot.threading.ThreadPoolManager.getInstance().scheduleAtFixedRate(
-                this::cleanupExpired, 5, 5, TimeUnit.MINUTES
+                this::cleanupExpired, EXPIRATION_TICK_MILLIS, EXPIRATION_TICK_MILLIS, TimeUnit.MILLISECONDS
         );
+    }
+
+    CacheService(int maxSize, long expireMinutes) {
+        this(maxSize, expireMinutes, 0);
+    }
+
+    /**
+     * Экземпляр без фоновой очистки - для тестов и бенчмарков
+     * @param offHeapBytes лимит памяти для значений вне кучи, 0 - хранить значения в куче
+     */
+    CacheService(int maxSize, long expireMinutes, long offHeapBytes) {
+        this(maxSize, expireMinutes, offHeapBytes, 0);
+    }
 
-        logger.info("CacheService инициализирован: maxSize={}, expire={}min",
-                maxSize, expireMinutes);
+    CacheService(int maxSize, long expireMinutes, long offHeapBytes, long maxBytes) {
+        this(maxSize, expireMinutes, offHeapBytes, maxBytes, Runnable::run);
+    }
+
+    /**
+     * @param maxBytes        предел памяти под записи (ключи, значения в куче и вне ее, служебные объекты),
+     *                        0 - ограничение только по числу записей
+     * @param refreshExecutor где запускаются фоновые обновления записей, переживших мягкий срок
+     */
+    CacheService(int maxSize, long expireMinutes, long offHeapBytes, long maxBytes, Executor refreshExecutor) {
+        this.maxSize = maxSize;
+        this.refreshExecutor = refreshExecutor;
+        this.maxBytes = maxBytes;
+        this.expireMinutes = expireMinutes;
+        this.offHeapStore = offHeapBytes > 0 ? new OffHeapStore(offHeapBytes) : null;
+        // Блок вне кучи освобождается под блокировкой полосы, под которой его и читают
+        this.cache = new SegmentedLruMap<>(maxSize, maxBytes, (key, entry) -> entry.weigh(key, offHeapStore),
+                CacheEntry::getExpiresAt, Runtime.getRuntime().availableProcessors() * 4,
+                (key, entry, cause) -> {
+                    if (offHeapStore != null) {
+                        entry.release(offHeapStore);
+                    }
+                    metrics.recordRemoval(key, cause);
+                });
+
+        logger.info("CacheService инициализирован: maxSize={}, maxBytes={}KB, expire={}min, полос={}, вне кучи={}MB",
+                maxSize, maxBytes / 1024, expireMinutes, cache.getStripeCount(), offHeapBytes / (1024 * 1024));
     }
 
     public static synchronized CacheService getInstance() {
@@ -41,41 +105,139 @@ public class CacheService {
     }
 
     public void put(String key, Object value, long customExpireMinutes) {
-        if (cache.size() >= maxSize) {
-            // Удаляем самую старую запись при переполнении
-            String oldestKey = findOldestKey();
-            if (oldestKey != null) {
-                cache.remove(oldestKey);
-            }
+        long expireMillis = TimeUnit.MINUTES.toMillis(customExpireMinutes);
+        store(key, value, expireMillis, expireMillis);
+    }
+
+    /**
+     * Положить значение с мягким и жестким сроком. После refreshAfterMinutes запись еще отдается,
+     * но первое чтение через {@link #getWithRefresh(String, Supplier)} запускает фоновое обновление;
+     * удаляется запись только через expireMinutes.
+     */
+    public void put(String key, Object value, long refreshAfterMinutes, long expireMinutes) {
+        store(key, value, TimeUnit.MINUTES.toMillis(Math.min(refreshAfterMinutes, expireMinutes)),
+                TimeUnit.MINUTES.toMillis(expireMinutes));
+    }
+
+    /**
+     * Положить значение, только если его нет ни в памяти, ни на диске (с диска оно поднимается в память).
+     * Для прогрева кеша: не учитывается в метриках попаданий и не дописывает на диск то, что там уже есть.
+     * @return true, если значение добавлено
+     */
+    public boolean putIfAbsent(String key, Object value, long refreshAfterMinutes, long expireMinutes) {
+        if (contains(key) || loadFromDisk(key) != null) {
+            return false;
         }
+        put(key, value, refreshAfterMinutes, expireMinutes);
+        return true;
+    }
 
-        CacheEntry entry = new CacheEntry(value, System.currentTimeMillis(),
-                TimeUnit.MINUTES.toMillis(customExpireMinutes));
+    private void store(String key, Object value, long refreshAfterMillis, long expireMillis) {
+        CacheEntry entry = newEntry(value, refreshAfterMillis, expireMillis);
         cache.put(key, entry);
+
+        // Переводы дублируются на диск, чтобы пережить перезапуск
+        DiskCache disk = diskCache;
+        if (disk != null && value instanceof String text && isPersistent(key)) {
+            disk.put(key, text, entry.getExpiresAt());
+        }
+    }
+
+    /**
+     * Учесть время получения значения после промаха (запрос к Gemini, выполнение команды)
+     * @param success false, если значение не удалось получить и оно не попало в кеш
+     */
+    public void recordLoad(String key, long loadNanos, boolean success) {
+        metrics.recordLoad(key, loadNanos, success);
+    }
+
+    /**
+     * Подключить дисковый второй уровень для переводов: промах в памяти проверяется на диске
+     */
+    public void attachDiskCache(DiskCache diskCache) {
+        this.diskCache = diskCache;
     }
 
-    @SuppressWarnings("unchecked")
     public <T> T get(String key) {
-        CacheEntry entry = cache.get(key);
-        if (entry == null) {
-            return null;
+        return getWithRefresh(key, null);
+    }
+
+    /**
+     * Получить значение; если запись пережила мягкий срок, она отдается сразу, а reloader
+     * один раз запускается в фоне и его результат заменяет запись с прежними сроками.
+     * Результат null от reloader означает, что обновлять запись не нужно (например, ошибка перевода).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getWithRefresh(String key, Supplier<CompletableFuture<T>> reloader) {
+        long now = System.currentTimeMillis();
+        Object value = cache.get(key, entry -> {
+            if (entry.isExpired(now)) {
+                return EXPIRED;
+            }
+            Object stored = entry.readValue(offHeapStore);
+            return entry.isStale(now) ? new Stale(stored, entry.refreshAfterMillis, entry.expireMillis) : stored;
+        });
+        if (value == null) {
+            Object loaded = loadFromDisk(key);
+            if (loaded != null) {
+                metrics.recordHit(key, true);
+            } else {
+                metrics.recordMiss(key);
+            }
+            return (T) loaded;
         }
 
-        if (entry.isExpired()) {
-            cache.remove(key);
+        if (value == EXPIRED) {
+            cache.expireIf(key, CacheEntry::isExpired);
+            metrics.recordMiss(key);
             return null;
         }
 
-        entry.updateAccessTime();
-        return (T) entry.getValue();
+        metrics.recordHit(key, false);
+        if (value instanceof Stale stale) {
+            if (reloader != null) {
+                refresh(key, stale, reloader);
+            }
+            return (T) stale.value();
+        }
+        return (T) value;
+    }
+
+    private <T> void refresh(String key, Stale stale, Supplier<CompletableFuture<T>> reloader) {
+        if (!refreshing.add(key)) {
+            return;
+        }
+
+        metrics.recordRefresh(key);
+        long startNanos = System.nanoTime();
+        try {
+            CompletableFuture.supplyAsync(reloader, refreshExecutor)
+                    .thenCompose(future -> future)
+                    .whenComplete((value, error) -> {
+                        try {
+                            boolean success = error == null && value != null;
+                            if (success) {
+                                store(key, value, stale.refreshAfterMillis(), stale.expireMillis());
+                            } else if (error != null) {
+                                logger.debug("Фоновое обновление записи кеша не удалось: {}", error.getMessage());
+                            }
+                            metrics.recordLoad(key, System.nanoTime() - startNanos, success);
+                        } finally {
+                            refreshing.remove(key);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            // Пул занят - запись еще действительна, обновим при следующем чтении
+            refreshing.remove(key);
+        }
     }
 
     public boolean contains(String key) {
-        CacheEntry entry = cache.get(key);
+        CacheEntry entry = cache.peek(key);
         if (entry == null) return false;
 
         if (entry.isExpired()) {
-            cache.remove(key);
+            cache.expireIf(key, CacheEntry::isExpired);
             return false;
         }
 
@@ -84,65 +246,111 @@ public class CacheService {
 
     public void remove(String key) {
         cache.remove(key);
+
+        DiskCache disk = diskCache;
+        if (disk != null && isPersistent(key)) {
+            disk.remove(key);
+        }
     }
 
     public void clear() {
         cache.clear();
+
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            disk.clear();
+        }
     }
 
-    public int size() {
-        return cache.size();
+    /**
+     * Сохранить индекс дискового кеша перед завершением работы
+     */
+    public void shutdown() {
+        DiskCache disk = diskCache;
+        if (disk != null) {
+            disk.close();
+        }
     }
 
-    public String getStats() {
-        int expired = 0;
-        long totalSize = 0;
+    private Object loadFromDisk(String key) {
+        DiskCache disk = diskCache;
+        if (disk == null || !isPersistent(key)) {
+            return null;
+        }
 
-        for (CacheEntry entry : cache.values()) {
-            if (entry.isExpired()) {
-                expired++;
-            }
-            totalSize += entry.getSize();
+        DiskCache.CachedValue cached = disk.get(key);
+        if (cached == null) {
+            return null;
         }
 
-        return String.format("Кеш: размер=%d, устарело=%d, память=~%dKB",
-                cache.size(), expired, totalSize / 1024);
+        // Поднимаем запись в память с оставшимся сроком жизни; мягкий срок на диске не хранится,
+        // поэтому поднятая запись не обновляется заранее, а истекает по жесткому сроку
+        long remainingMillis = cached.expiresAt() - System.currentTimeMillis();
+        cache.put(key, newEntry(cached.value(), remainingMillis, remainingMillis));
+        return cached.value();
     }
 
-    private void cleanupExpired() {
-        int removed = 0;
-        long now = System.currentTimeMillis();
-
-        for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
-            if (entry.getValue().isExpired(now)) {
-                cache.remove(entry.getKey());
-                removed++;
+    /**
+     * Время создания берется после записи значения, чтобы копирование вне кучи не съедало срок жизни
+     */
+    private CacheEntry newEntry(Object value, long refreshAfterMillis, long expireMillis) {
+        if (offHeapStore != null && value instanceof String text) {
+            long handle = offHeapStore.store(text);
+            if (handle != OffHeapStore.NO_HANDLE) {
+                return new CacheEntry(null, handle, System.currentTimeMillis(), refreshAfterMillis, expireMillis);
             }
         }
+        return new CacheEntry(value, OffHeapStore.NO_HANDLE, System.currentTimeMillis(), refreshAfterMillis, expireMillis);
+    }
 
-        if (removed > 0) {
-            logger.debug("Очищено устаревших записей из кеша: {}", removed);
-        }
+    private static boolean isPersistent(String key) {
+        return key.startsWith(TRANSLATION_PREFIX);
     }
 
-    private String findOldestKey() {
-        String oldestKey = null;
-        long oldestTime = Long.MAX_VALUE;
+    public int size() {
+        return cache.size();
+    }
 
-        for (Map.Entry<String, CacheEntry> entry : cache.entrySet()) {
-            if (entry.getValue().getLastAccessTime() < oldestTime) {
-                oldestTime = entry.getValue().getLastAccessTime();
-                oldestKey = entry.getKey();
-            }
+    public String getStats() {
+        String stats = String.format("Кеш: размер=%d/%d, истекло=%d, вытеснено=%d",
+                cache.size(), maxSize, cache.getExpirationCount(), cache.getEvictionCount());
+        if (maxBytes > 0) {
+            stats += String.format(", память=%dKB/%dKB", cache.weightedSize() / 1024, maxBytes / 1024);
         }
+        return offHeapStore != null ? stats + ", " + offHeapStore.getStats() : stats;
+    }
+
+    /**
+     * Попадания, промахи, удаления по причинам и время загрузки по пространствам ключей
+     */
+    public String getMetricsStats() {
+        return metrics.getStats();
+    }
 
-        return oldestKey;
+    CacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Удалить истекшие записи: колеса таймеров отдают только записи пройденных корзин,
+     * полного обхода кеша нет. Срок каждой записи свой (например, 5 минут для ответов на команды).
+     */
+    void cleanupExpired() {
+        int removed = cache.expire(System.currentTimeMillis());
+
+        if (removed > 0) {
+            logger.debug("Очищено устаревших записей из кеша: {}", removed);
+        }
     }
 
     // Вспомогательные методы для конкретных типов кеширования
-    public String getTranslationCacheKey(Long userId, String text, String targetLang) {
-        return String.format("translation:%d:%s:%s",
-                userId, text.hashCode(), targetLang);
+
+    /**
+     * Ключ общего для всех пользователей кеша переводов: SHA-256 от нормализованного текста
+     * и пары языков. Одинаковый текст, присланный разными пользователями, переводится один раз.
+     */
+    public String getTranslationCacheKey(String text, String sourceLang, String targetLang) {
+        return TRANSLATION_PREFIX + sha256Hex(sourceLang + '\0' + targetLang + '\0' + normalizeText(text));
     }
 
     public String getCommandCacheKey(Long userId, String command, String args) {
@@ -150,30 +358,77 @@ public class CacheService {
                 userId, command, args != null ? args.hashCode() : 0);
     }
 
-    // Внутренний класс для записи кеша
+    /**
+     * Различия, не влияющие на перевод: форма Unicode, пробелы по краям, переводы строк Windows,
+     * повторяющиеся пробелы и табуляции. Регистр и переводы строк сохраняются.
+     * Той же нормализацией пользуется объединение одинаковых запросов к Gemini.
+     */
+    public static String normalizeText(String text) {
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFC).strip();
+        return HORIZONTAL_WHITESPACE.matcher(normalized.replace("\r\n", "\n")).replaceAll(" ");
+    }
+
+    private static String sha256Hex(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 обязан поддерживаться любой JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Размер строки в куче: заголовки String и массива плюс 1 байт на символ для Latin-1
+     * (компактные строки) или 2 байта для остальных, с выравниванием до 8 байт
+     */
+    static long estimateStringSize(String value) {
+        int length = value.length();
+        boolean latin1 = true;
+        for (int i = 0; i < length && latin1; i++) {
+            latin1 = value.charAt(i) < 256;
+        }
+        return 24 + align(16L + (latin1 ? length : length * 2L));
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Значение записи, пережившей мягкий срок, со сроками для ее обновления
+     */
+    private record Stale(Object value, long refreshAfterMillis, long expireMillis) {
+    }
+
+    // Внутренний класс для записи кеша: значение в куче либо дескриптор блока вне кучи
     private static class CacheEntry {
         private final Object value;
+        private final long handle;
         private final long creationTime;
+        private final long refreshAfterMillis;
         private final long expireMillis;
-        private volatile long lastAccessTime;
 
-        CacheEntry(Object value, long creationTime, long expireMillis) {
+        CacheEntry(Object value, long handle, long creationTime, long refreshAfterMillis, long expireMillis) {
             this.value = value;
+            this.handle = handle;
             this.creationTime = creationTime;
+            this.refreshAfterMillis = refreshAfterMillis;
             this.expireMillis = expireMillis;
-            this.lastAccessTime = creationTime;
         }
 
-        Object getValue() {
-            return value;
+        Object readValue(OffHeapStore store) {
+            return handle != OffHeapStore.NO_HANDLE ? store.read(handle) : value;
         }
 
-        long getLastAccessTime() {
-            return lastAccessTime;
+        void release(OffHeapStore store) {
+            if (handle != OffHeapStore.NO_HANDLE) {
+                store.free(handle);
+            }
         }
 
-        void updateAccessTime() {
-            this.lastAccessTime = System.currentTimeMillis();
+        long getExpiresAt() {
+            return creationTime + expireMillis;
         }
 
         boolean isExpired() {
@@ -184,13 +439,29 @@ public class CacheService {
             return currentTime > (creationTime + expireMillis);
         }
 
-        long getSize() {
-            if (value instanceof String) {
-                return ((String) value).length() * 2L; // UTF-16
-            } else if (value instanceof byte[]) {
-                return ((byte[]) value).length;
+        /**
+         * Мягкий срок прошел: значение еще отдается, но пора обновить
+         */
+        boolean isStale(long currentTime) {
+            return refreshAfterMillis < expireMillis && currentTime > (creationTime + refreshAfterMillis);
+        }
+
+        /**
+         * Вес записи в байтах: ключ, служебные объекты и значение - блок вне кучи целиком
+         * (с округлением до класса размера) или оценка объекта в куче
+         */
+        long weigh(String key, OffHeapStore store) {
+            long size = ENTRY_OVERHEAD + estimateStringSize(key);
+            if (handle != OffHeapStore.NO_HANDLE) {
+                return size + store.blockSize(handle);
+            }
+            if (value instanceof String text) {
+                return size + estimateStringSize(text);
+            } else if (value instanceof byte[] bytes) {
+                return size + align(16L + bytes.length);
             }
-            return 0;
+            // Прочие объекты (числа, небольшие DTO) считаем одним заголовком с парой полей
+            return size + 24;
         }
     }
 }
\ No newline at end of file
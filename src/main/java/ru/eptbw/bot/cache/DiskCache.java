@@ -0,0 +1,747 @@
+package ru.eptbw.bot.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Второй уровень кеша переводов на диске, переживающий перезапуск бота.
+ * <p>
+ * Записи дописываются в конец журнала (append-only); новая запись по тому же ключу перекрывает
+ * старую, удаление - запись с истекшим сроком. Индекс - хеш-таблица (хеш ключа, смещение в журнале)
+ * в отдельном файле, отображенном в память; записи, добавленные после последнего сохранения
+ * индекса, лежат в небольшой карте в памяти. При старте отображается индекс и дочитывается только
+ * хвост журнала, поэтому загрузка не зависит от размера кеша и выполняется при первом обращении.
+ * Когда журнал превышает maxBytes, он сжимается в фоне: остаются только актуальные записи,
+ * а при нехватке места отбрасываются самые старые.
+ * <p>
+ * Формат записи журнала (big-endian): длина, срок действия, длина ключа, ключ и значение в UTF-8, CRC32.
+ */
+public class DiskCache implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DiskCache.class);
+
+    private static final int LOG_MAGIC = 0x54474c43; // "TGLC"
+    private static final int INDEX_MAGIC = 0x54474c49; // "TGLI"
+    private static final int VERSION = 1;
+    private static final int LOG_HEADER_SIZE = 8;
+    private static final int INDEX_HEADER_SIZE = 24;
+    private static final int SLOT_SIZE = 16;
+    private static final int MIN_SLOTS = 1024;
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+    // После сжатия журнал занимает не больше половины лимита, чтобы сжатие не запускалось слишком часто
+    private static final double COMPACTION_TARGET = 0.5;
+    private static final int INDEX_FLUSH_THRESHOLD = 4096;
+
+    /**
+     * Значение из дискового кеша и момент, когда оно устаревает
+     */
+    public record CachedValue(String value, long expiresAt) {
+    }
+
+    private record Record(long offset, int size, String key, String value, long expiresAt) {
+    }
+
+    /**
+     * Запись журнала при сжатии - без ключа и значения
+     */
+    private record LiveEntry(long hash, long offset, int size) {
+    }
+
+    private final Path logPath;
+    private final Path indexPath;
+    private final long maxBytes;
+    private final Executor maintenanceExecutor;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object appendLock = new Object();
+    private final AtomicBoolean maintenanceScheduled = new AtomicBoolean();
+    private final Map<String, Long> tail = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+
+    private volatile boolean loaded;
+    private FileChannel log;
+    private MappedByteBuffer index;
+    private int slotCount;
+    private int indexedEntries;
+    private volatile long writePosition;
+    // Меняется при очистке и подмене журнала: сжатие по ней узнает, что его копия устарела
+    private int logGeneration;
+
+    public DiskCache(Path directory, long maxBytes, Executor maintenanceExecutor) {
+        this.logPath = directory.resolve("translations.log");
+        this.indexPath = directory.resolve("translations.idx");
+        this.maxBytes = maxBytes;
+        this.maintenanceExecutor = maintenanceExecutor;
+    }
+
+    public CachedValue get(String key) {
+        if (!ensureLoaded()) {
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            Record record = find(key);
+            if (record == null || record.expiresAt <= System.currentTimeMillis()) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return new CachedValue(record.value, record.expiresAt);
+        } catch (IOException e) {
+            logger.warn("Ошибка чтения дискового кеша: {}", e.getMessage());
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String key, String value, long expiresAt) {
+        if (!ensureLoaded()) {
+            return;
+        }
+
+        byte[] record = encode(key, value, expiresAt);
+        if (record.length > MAX_RECORD_SIZE) {
+            return;
+        }
+
+        long size;
+        lock.readLock().lock();
+        try {
+            synchronized (appendLock) {
+                long offset = writePosition;
+                writeFully(log, ByteBuffer.wrap(record), offset);
+                writePosition = offset + record.length;
+                tail.put(key, offset);
+                size = writePosition;
+            }
+        } catch (IOException e) {
+            logger.warn("Ошибка записи в дисковый кеш: {}", e.getMessage());
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        if (size > maxBytes || tail.size() > INDEX_FLUSH_THRESHOLD) {
+            scheduleMaintenance();
+        }
+    }
+
+    /**
+     * Удаление - запись с истекшим сроком, которая перекрывает прежнее значение
+     */
+    public void remove(String key) {
+        put(key, "", 0);
+    }
+
+    public void clear() {
+        if (!ensureLoaded()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            log.truncate(LOG_HEADER_SIZE);
+            logGeneration++;
+            writePosition = LOG_HEADER_SIZE;
+            tail.clear();
+            index = null;
+            slotCount = 0;
+            indexedEntries = 0;
+            Files.deleteIfExists(indexPath);
+        } catch (IOException e) {
+            logger.warn("Не удалось очистить дисковый кеш: {}", e.getMessage());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Загрузка при старте: отображение индекса и дочитывание хвоста журнала.
+     * Вызывается лениво при первом обращении; можно вызвать заранее в фоне.
+     */
+    public boolean ensureLoaded() {
+        if (loaded) {
+            return log != null;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                load();
+            }
+        } catch (IOException e) {
+            logger.error("Дисковый кеш недоступен: {}", e.getMessage());
+            closeQuietly();
+        } finally {
+            loaded = true;
+            lock.writeLock().unlock();
+        }
+        return log != null;
+    }
+
+    private void load() throws IOException {
+        long startNanos = System.nanoTime();
+        Files.createDirectories(logPath.getParent());
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        if (log.size() < LOG_HEADER_SIZE || readInt(log, 0) != LOG_MAGIC || readInt(log, 4) != VERSION) {
+            if (log.size() > 0) {
+                logger.warn("Журнал дискового кеша имеет неверный формат и будет пересоздан");
+            }
+            resetLog(log);
+        }
+
+        long indexedLength = mapIndex();
+        if (indexedLength < 0) {
+            indexedLength = LOG_HEADER_SIZE;
+        }
+
+        // Дочитываем записи, добавленные после сохранения индекса
+        long position = indexedLength;
+        long logSize = log.size();
+        int tailRecords = 0;
+        while (position < logSize) {
+            Record record = readRecord(position, logSize);
+            if (record == null) {
+                // Недописанная запись после аварийного завершения - отрезаем
+                logger.warn("Журнал дискового кеша поврежден с позиции {}, хвост отброшен", position);
+                log.truncate(position);
+                break;
+            }
+            tail.put(record.key, record.offset);
+            position += record.size;
+            tailRecords++;
+        }
+        writePosition = position;
+
+        logger.info("Дисковый кеш загружен за {} мс: в индексе {}, в хвосте журнала {}, журнал {}KB",
+                (System.nanoTime() - startNanos) / 1_000_000, indexedEntries, tailRecords, writePosition / 1024);
+    }
+
+    /**
+     * @return длина журнала, покрытая индексом, или -1, если индекса нет или он не подходит к журналу
+     */
+    private long mapIndex() throws IOException {
+        index = null;
+        slotCount = 0;
+        indexedEntries = 0;
+        if (!Files.exists(indexPath)) {
+            return -1;
+        }
+
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            if (channel.size() < INDEX_HEADER_SIZE) {
+                return -1;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long indexedLength = mapped.getLong(8);
+            int slots = mapped.getInt(16);
+            if (mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != VERSION
+                    || indexedLength > log.size() || Integer.bitCount(slots) != 1
+                    || channel.size() != INDEX_HEADER_SIZE + (long) slots * SLOT_SIZE) {
+                logger.warn("Индекс дискового кеша не соответствует журналу, журнал будет прочитан целиком");
+                return -1;
+            }
+
+            index = mapped;
+            slotCount = slots;
+            indexedEntries = mapped.getInt(20);
+            return indexedLength;
+        }
+    }
+
+    private Record find(String key) throws IOException {
+        Long offset = tail.get(key);
+        if (offset != null) {
+            return readRecord(offset, writePosition);
+        }
+
+        MappedByteBuffer indexBuffer = index;
+        if (indexBuffer == null) {
+            return null;
+        }
+
+        long hash = hash(key);
+        int mask = slotCount - 1;
+        for (int slot = (int) hash & mask, probes = 0; probes < slotCount; slot = (slot + 1) & mask, probes++) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long slotOffset = indexBuffer.getLong(position + 8);
+            if (slotOffset == 0) {
+                return null;
+            }
+            if (indexBuffer.getLong(position) == hash) {
+                Record record = readRecord(slotOffset, writePosition);
+                if (record != null && record.key.equals(key)) {
+                    return record;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void scheduleMaintenance() {
+        if (!maintenanceScheduled.compareAndSet(false, true)) {
+            return;
+        }
+
+        maintenanceExecutor.execute(() -> {
+            try {
+                if (writePosition > maxBytes) {
+                    compact();
+                } else {
+                    flushIndex();
+                }
+            } catch (IOException e) {
+                logger.warn("Ошибка обслуживания дискового кеша: {}", e.getMessage());
+            } finally {
+                maintenanceScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Переносит записи из хвоста в индекс на диске, журнал не меняется
+     */
+    void flushIndex() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (log == null || tail.isEmpty()) {
+                return;
+            }
+
+            int entries = indexedEntries + tail.size();
+            long[] table = new long[tableSlots(entries) * 2];
+            int used = copyIndex(table);
+            for (Map.Entry<String, Long> entry : tail.entrySet()) {
+                used += insert(table, entry.getKey(), hash(entry.getKey()), entry.getValue());
+            }
+
+            writeIndex(table, used, writePosition);
+            tail.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Переписывает журнал, оставляя только актуальные записи; если и их больше половины лимита,
+     * отбрасываются самые старые.
+     * <p>
+     * В памяти держатся только хеш, смещение и размер каждой записи, ключ читается из журнала лишь
+     * при совпадении хешей. Копирование и сброс на диск идут под блокировкой чтения, так что get и put
+     * не ждут; под блокировкой записи только переносятся записи, дописанные за время копирования,
+     * и подменяются файлы.
+     */
+    void compact() throws IOException {
+        long startNanos = System.nanoTime();
+        Path tmpLog = logPath.resolveSibling(logPath.getFileName() + ".tmp");
+        long before;
+        long end;
+        int generation;
+        long[] table;
+        int used = 0;
+        int live;
+        int kept;
+
+        lock.readLock().lock();
+        try {
+            if (log == null) {
+                return;
+            }
+            synchronized (appendLock) {
+                end = writePosition;
+            }
+            before = end;
+            generation = logGeneration;
+
+            List<LiveEntry> entries = collectLive(end, System.currentTimeMillis());
+            live = entries.size();
+
+            // От новых записей к старым, пока помещаемся в бюджет
+            entries.sort((a, b) -> Long.compare(b.offset, a.offset));
+            long budget = (long) (maxBytes * COMPACTION_TARGET);
+            long size = LOG_HEADER_SIZE;
+            int count = 0;
+            while (count < entries.size() && size + entries.get(count).size <= budget) {
+                size += entries.get(count).size;
+                count++;
+            }
+            entries = new ArrayList<>(entries.subList(0, count));
+            entries.sort((a, b) -> Long.compare(a.offset, b.offset));
+            kept = count;
+
+            table = new long[tableSlots(kept) * 2];
+            try (FileChannel out = FileChannel.open(tmpLog, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                resetLog(out);
+                long position = LOG_HEADER_SIZE;
+                for (LiveEntry entry : entries) {
+                    transferFully(log, entry.offset, entry.size, out, position);
+                    // Ключи после сжатия уникальны, сверять их с журналом не нужно
+                    placeSlot(table, entry.hash, position);
+                    used++;
+                    position += entry.size;
+                }
+                out.force(false);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (log == null || logGeneration != generation) {
+                // Пока копировали, кеш очистили или закрыли - копия устарела
+                Files.deleteIfExists(tmpLog);
+                return;
+            }
+
+            // Записи, дописанные за время копирования, переносим в конец нового журнала
+            long appended = writePosition - end;
+            long newEnd;
+            try (FileChannel out = FileChannel.open(tmpLog, StandardOpenOption.WRITE)) {
+                newEnd = out.size();
+                transferFully(log, end, appended, out, newEnd);
+                out.force(false);
+            }
+
+            log.close();
+            Files.move(tmpLog, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            logGeneration++;
+            writePosition = log.size();
+
+            List<Long> offsets = new ArrayList<>();
+            long position = newEnd;
+            while (position < writePosition) {
+                int length = readInt(log, position);
+                offsets.add(position);
+                position += 4 + length;
+            }
+            if ((used + offsets.size()) * 2L > table.length / 2) {
+                table = resize(table, used + offsets.size());
+            }
+            for (long offset : offsets) {
+                String key = readKey(offset, writePosition);
+                if (key != null) {
+                    used += insert(table, key, hash(key), offset);
+                }
+            }
+
+            tail.clear();
+            writeIndex(table, used, writePosition);
+            compactions.increment();
+
+            logger.info("Дисковый кеш сжат за {} мс: {}KB -> {}KB, записей {} (отброшено {}, "
+                            + "дописано за время сжатия {})",
+                    (System.nanoTime() - startNanos) / 1_000_000, before / 1024, writePosition / 1024,
+                    kept, live - kept, offsets.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Актуальные записи журнала до позиции end: индекс, поверх него более новый хвост.
+     * Вызывается под блокировкой чтения.
+     */
+    private List<LiveEntry> collectLive(long end, long now) throws IOException {
+        long[] table = new long[tableSlots(indexedEntries + tail.size()) * 2];
+        copyIndex(table);
+        for (Map.Entry<String, Long> entry : tail.entrySet()) {
+            // Более новые записи попадут в журнал при подмене файлов
+            if (entry.getValue() < end) {
+                insert(table, entry.getKey(), hash(entry.getKey()), entry.getValue());
+            }
+        }
+
+        List<LiveEntry> entries = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(12);
+        for (int slot = 0; slot < table.length / 2; slot++) {
+            long offset = table[slot * 2 + 1];
+            if (offset == 0 || offset + 12 > end) {
+                continue;
+            }
+            header.clear();
+            readFully(log, header, offset);
+            int length = header.getInt(0);
+            long expiresAt = header.getLong(4);
+            if (length >= 16 && length <= MAX_RECORD_SIZE && offset + 4 + length <= end && expiresAt > now) {
+                entries.add(new LiveEntry(table[slot * 2], offset, 4 + length));
+            }
+        }
+        return entries;
+    }
+
+    private static long[] resize(long[] table, int entries) {
+        long[] resized = new long[tableSlots(entries) * 2];
+        for (int slot = 0; slot < table.length / 2; slot++) {
+            if (table[slot * 2 + 1] != 0) {
+                placeSlot(resized, table[slot * 2], table[slot * 2 + 1]);
+            }
+        }
+        return resized;
+    }
+
+    private int copyIndex(long[] table) {
+        if (index == null) {
+            return 0;
+        }
+
+        int used = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int position = INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+            long offset = index.getLong(position + 8);
+            if (offset == 0) {
+                continue;
+            }
+            placeSlot(table, index.getLong(position), offset);
+            used++;
+        }
+        return used;
+    }
+
+    private static void placeSlot(long[] table, long hash, long offset) {
+        int mask = table.length / 2 - 1;
+        int slot = (int) hash & mask;
+        while (table[slot * 2 + 1] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot * 2] = hash;
+        table[slot * 2 + 1] = offset;
+    }
+
+    /**
+     * Вставляет ключ в таблицу или обновляет смещение, если ключ уже есть
+     * @return 1, если занят новый слот
+     */
+    private int insert(long[] table, String key, long hash, long offset) throws IOException {
+        int mask = table.length / 2 - 1;
+        int slot = (int) hash & mask;
+        while (table[slot * 2 + 1] != 0) {
+            if (table[slot * 2] == hash) {
+                // Совпадение хеша проверяем по ключу записи в журнале
+                String existing = readKey(table[slot * 2 + 1], writePosition);
+                if (existing == null || existing.equals(key)) {
+                    table[slot * 2 + 1] = offset;
+                    return 0;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot * 2] = hash;
+        table[slot * 2 + 1] = offset;
+        return 1;
+    }
+
+    private void writeIndex(long[] table, int used, long indexedLength) throws IOException {
+        int slots = table.length / 2;
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + slots * SLOT_SIZE);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(indexedLength).putInt(slots).putInt(used);
+        for (long value : table) {
+            buffer.putLong(value);
+        }
+        buffer.flip();
+
+        // Журнал сбрасывается на диск раньше индекса, который на него ссылается
+        log.force(false);
+        Path tmpIndex = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(tmpIndex, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            writeFully(out, buffer, 0);
+            out.force(false);
+        }
+        Files.move(tmpIndex, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        mapIndex();
+    }
+
+    private Record readRecord(long offset, long limit) throws IOException {
+        if (offset < LOG_HEADER_SIZE || offset + 4 > limit) {
+            return null;
+        }
+
+        int length = readInt(log, offset);
+        if (length < 16 || length > MAX_RECORD_SIZE || offset + 4 + length > limit) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(log, buffer, offset + 4);
+        buffer.flip();
+
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, length - 4);
+        if ((int) crc.getValue() != buffer.getInt(length - 4)) {
+            return null;
+        }
+
+        long expiresAt = buffer.getLong();
+        int keyLength = buffer.getInt();
+        if (keyLength < 0 || keyLength > length - 16) {
+            return null;
+        }
+        String key = new String(buffer.array(), 12, keyLength, StandardCharsets.UTF_8);
+        String value = new String(buffer.array(), 12 + keyLength, length - 16 - keyLength, StandardCharsets.UTF_8);
+        return new Record(offset, 4 + length, key, value, expiresAt);
+    }
+
+    /**
+     * Только ключ записи, без значения и проверки CRC - для разрешения совпадений хешей
+     */
+    private String readKey(long offset, long limit) throws IOException {
+        if (offset < LOG_HEADER_SIZE || offset + 16 > limit) {
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(16);
+        readFully(log, header, offset);
+        int length = header.getInt(0);
+        int keyLength = header.getInt(12);
+        if (length < 16 || length > MAX_RECORD_SIZE || offset + 4 + length > limit
+                || keyLength < 0 || keyLength > length - 16) {
+            return null;
+        }
+
+        ByteBuffer key = ByteBuffer.allocate(keyLength);
+        readFully(log, key, offset + 16);
+        return new String(key.array(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] encode(String key, String value, long expiresAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 4 + keyBytes.length + valueBytes.length + 4;
+
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length);
+        buffer.putInt(length).putLong(expiresAt).putInt(keyBytes.length).put(keyBytes).put(valueBytes);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length - 4);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * 64-битный FNV-1a: совпадения хешей разрешаются сравнением ключа в журнале
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static int tableSlots(int entries) {
+        // Заполнение не больше половины - короткие цепочки линейного пробирования
+        return Math.max(MIN_SLOTS, Integer.highestOneBit(Math.max(1, entries * 2 - 1)) << 1);
+    }
+
+    private static void resetLog(FileChannel channel) throws IOException {
+        channel.truncate(0);
+        writeFully(channel, ByteBuffer.allocate(LOG_HEADER_SIZE).putInt(LOG_MAGIC).putInt(VERSION).flip(), 0);
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(channel, buffer, position);
+        return buffer.getInt(0);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Неожиданный конец журнала дискового кеша");
+            }
+        }
+    }
+
+    private static void transferFully(FileChannel from, long position, long count, FileChannel to,
+                                      long target) throws IOException {
+        long copied = 0;
+        while (copied < count) {
+            long transferred = from.transferTo(position + copied, count - copied, to.position(target + copied));
+            if (transferred <= 0) {
+                throw new IOException("Неожиданный конец журнала дискового кеша");
+            }
+            copied += transferred;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+    }
+
+    public int getEntryCount() {
+        return indexedEntries + tail.size();
+    }
+
+    public String getStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return String.format("Дисковый кеш: записей~%d, журнал=%dKB из %dKB, попаданий=%d из %d (%.1f%%), сжатий=%d",
+                getEntryCount(), writePosition / 1024, maxBytes / 1024, hitCount, total,
+                total > 0 ? hitCount * 100.0 / total : 0.0, compactions.sum());
+    }
+
+    /**
+     * Сохраняет индекс, чтобы следующий запуск не перечитывал журнал
+     */
+    @Override
+    public void close() {
+        if (!loaded || log == null) {
+            return;
+        }
+
+        try {
+            flushIndex();
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить индекс дискового кеша: {}", e.getMessage());
+        }
+
+        lock.writeLock().lock();
+        try {
+            closeQuietly();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void closeQuietly() {
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException ignored) {
+                // Канал уже закрыт или недоступен
+            }
+        }
+        log = null;
+        index = null;
+    }
+}
@@ -0,0 +1,303 @@
+package ru.eptbw.bot.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Хранилище строк вне кучи: значения лежат в сегментах памяти (FFM) в UTF-8, длинные - сжатыми Deflate,
+ * а в куче остается только дескриптор (long). Память выделяется слабами по 1 МБ, каждый слаб
+ * нарезан на блоки одного класса размера (степени двойки от 64 байт до 64 КБ); освобожденные
+ * блоки переиспользуются через стек свободных дескрипторов своего класса.
+ * Слаб живет в собственной арене: как только в нем не остается значений, арена закрывается
+ * и память сразу возвращается системе, а лимит освобождается для других классов размера.
+ * <p>
+ * Освобождение и чтение одного дескриптора не должны пересекаться: CacheService выполняет
+ * и то и другое под блокировкой полосы кеша, в которой лежит запись.
+ */
+final class OffHeapStore {
+    static final long NO_HANDLE = -1;
+
+    private static final int SLAB_SIZE = 1 << 20;
+    private static final int MIN_BLOCK_SHIFT = 6;
+    private static final int MAX_BLOCK_SHIFT = 16;
+    private static final int HEADER_SIZE = 8;
+    private static final int COMPRESSED_FLAG = 0x80000000;
+    // Короткие переводы Deflate почти не сжимает, а время тратит
+    private static final int COMPRESSION_THRESHOLD = 512;
+
+    private static final ThreadLocal<Deflater> DEFLATER = ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final long maxBytes;
+    private final SizeClass[] classes = new SizeClass[MAX_BLOCK_SHIFT - MIN_BLOCK_SHIFT + 1];
+    // Читатели обращаются к массиву без блокировки, поэтому при изменениях публикуется новая копия
+    private volatile Slab[] slabs = new Slab[0];
+    private int slabCount;
+    private final AtomicLong usedBytes = new AtomicLong();
+    private final AtomicLong payloadBytes = new AtomicLong();
+    private final LongAdder values = new LongAdder();
+    private final LongAdder compressedValues = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    OffHeapStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(i, 1 << (MIN_BLOCK_SHIFT + i));
+        }
+    }
+
+    /**
+     * @return дескриптор или NO_HANDLE, если значение слишком большое или память закончилась
+     */
+    long store(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = utf8;
+        boolean compressed = false;
+        if (utf8.length >= COMPRESSION_THRESHOLD) {
+            byte[] deflated = deflate(utf8);
+            // Сжатие должно экономить хотя бы восьмую часть, иначе распаковка не окупается
+            if (deflated.length < utf8.length - utf8.length / 8) {
+                payload = deflated;
+                compressed = true;
+            }
+        }
+
+        int classIndex = classFor(HEADER_SIZE + payload.length);
+        if (classIndex < 0) {
+            rejected.increment();
+            return NO_HANDLE;
+        }
+
+        long handle = classes[classIndex].allocate();
+        if (handle == NO_HANDLE) {
+            rejected.increment();
+            return NO_HANDLE;
+        }
+
+        MemorySegment slab = slabs[slabIndex(handle)].segment;
+        int offset = offset(handle);
+        slab.set(ValueLayout.JAVA_INT, offset, payload.length | (compressed ? COMPRESSED_FLAG : 0));
+        slab.set(ValueLayout.JAVA_INT, offset + 4, utf8.length);
+        MemorySegment.copy(payload, 0, slab, ValueLayout.JAVA_BYTE, offset + HEADER_SIZE, payload.length);
+
+        usedBytes.addAndGet(classes[classIndex].blockSize);
+        payloadBytes.addAndGet(HEADER_SIZE + payload.length);
+        values.increment();
+        if (compressed) {
+            compressedValues.increment();
+        }
+        return handle;
+    }
+
+    String read(long handle) {
+        MemorySegment slab = slabs[slabIndex(handle)].segment;
+        int offset = offset(handle);
+        int header = slab.get(ValueLayout.JAVA_INT, offset);
+        int length = header & ~COMPRESSED_FLAG;
+        byte[] payload = new byte[length];
+        MemorySegment.copy(slab, ValueLayout.JAVA_BYTE, offset + HEADER_SIZE, payload, 0, length);
+
+        if ((header & COMPRESSED_FLAG) == 0) {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+        return new String(inflate(payload, slab.get(ValueLayout.JAVA_INT, offset + 4)), StandardCharsets.UTF_8);
+    }
+
+    void free(long handle) {
+        Slab slab = slabs[slabIndex(handle)];
+        int header = slab.segment.get(ValueLayout.JAVA_INT, offset(handle));
+        SizeClass sizeClass = classes[slab.classIndex];
+
+        usedBytes.addAndGet(-sizeClass.blockSize);
+        payloadBytes.addAndGet(-(HEADER_SIZE + (header & ~COMPRESSED_FLAG)));
+        values.decrement();
+        if ((header & COMPRESSED_FLAG) != 0) {
+            compressedValues.decrement();
+        }
+        sizeClass.release(handle);
+    }
+
+    /**
+     * Размер блока, занятого значением (включая заголовок и округление до класса)
+     */
+    int blockSize(long handle) {
+        return classes[slabs[slabIndex(handle)].classIndex].blockSize;
+    }
+
+    long getUsedBytes() {
+        return usedBytes.get();
+    }
+
+    long getPayloadBytes() {
+        return payloadBytes.get();
+    }
+
+    synchronized long getReservedBytes() {
+        return (long) slabCount * SLAB_SIZE;
+    }
+
+    String getStats() {
+        return String.format("вне кучи=%dKB в блоках (данных %dKB, значений %d, сжатых %d, зарезервировано %dKB, не влезло %d)",
+                usedBytes.get() / 1024, payloadBytes.get() / 1024, values.sum(), compressedValues.sum(),
+                getReservedBytes() / 1024, rejected.sum());
+    }
+
+    private synchronized int newSlab(int classIndex) {
+        if ((long) (slabCount + 1) * SLAB_SIZE > maxBytes) {
+            return -1;
+        }
+
+        // Индекс освобожденного слаба переиспользуется: дескрипторов на него уже не осталось
+        Slab[] current = slabs;
+        int index = 0;
+        while (index < current.length && current[index] != null) {
+            index++;
+        }
+        Slab[] view = Arrays.copyOf(current, Math.max(current.length, index + 1));
+        Arena arena = Arena.ofShared();
+        view[index] = new Slab(arena, arena.allocate(SLAB_SIZE, HEADER_SIZE), classIndex);
+        slabCount++;
+        slabs = view;
+        return index;
+    }
+
+    private synchronized void releaseSlab(int index) {
+        Slab[] view = slabs.clone();
+        Slab slab = view[index];
+        view[index] = null;
+        slabCount--;
+        slabs = view;
+        slab.arena.close();
+    }
+
+    private static int classFor(int size) {
+        int shift = Math.max(MIN_BLOCK_SHIFT, 32 - Integer.numberOfLeadingZeros(size - 1));
+        return shift > MAX_BLOCK_SHIFT ? -1 : shift - MIN_BLOCK_SHIFT;
+    }
+
+    private static int slabIndex(long handle) {
+        return (int) (handle >>> 32);
+    }
+
+    private static int offset(long handle) {
+        return (int) handle;
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = DEFLATER.get();
+        deflater.reset();
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            int count = deflater.deflate(buffer);
+            output.write(buffer, 0, count);
+        }
+        return output.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] input, int originalLength) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(input);
+
+        byte[] output = new byte[originalLength];
+        try {
+            int position = 0;
+            while (position < originalLength && !inflater.finished()) {
+                position += inflater.inflate(output, position, originalLength - position);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Поврежденное значение в кеше вне кучи", e);
+        }
+        return output;
+    }
+
+    /**
+     * Слаб и класс размера, на блоки которого он нарезан
+     */
+    private static final class Slab {
+        final Arena arena;
+        final MemorySegment segment;
+        final int classIndex;
+        // Меняется под блокировкой класса размера
+        int liveBlocks;
+
+        Slab(Arena arena, MemorySegment segment, int classIndex) {
+            this.arena = arena;
+            this.segment = segment;
+            this.classIndex = classIndex;
+        }
+    }
+
+    /**
+     * Блоки одного размера: сначала переиспользуются освобожденные, затем нарезается текущий слаб
+     */
+    private final class SizeClass {
+        private final int index;
+        private final int blockSize;
+        private long[] freeHandles = new long[64];
+        private int freeCount;
+        private int currentSlab = -1;
+        private int nextOffset;
+
+        SizeClass(int index, int blockSize) {
+            this.index = index;
+            this.blockSize = blockSize;
+        }
+
+        synchronized long allocate() {
+            if (freeCount > 0) {
+                long handle = freeHandles[--freeCount];
+                slabs[slabIndex(handle)].liveBlocks++;
+                return handle;
+            }
+
+            if (currentSlab < 0 || nextOffset + blockSize > SLAB_SIZE) {
+                int slab = newSlab(index);
+                if (slab < 0) {
+                    return NO_HANDLE;
+                }
+                currentSlab = slab;
+                nextOffset = 0;
+            }
+
+            long handle = ((long) currentSlab << 32) | nextOffset;
+            nextOffset += blockSize;
+            slabs[currentSlab].liveBlocks++;
+            return handle;
+        }
+
+        synchronized void release(long handle) {
+            int slabIndex = slabIndex(handle);
+            if (--slabs[slabIndex].liveBlocks == 0 && slabIndex != currentSlab) {
+                // Слаб опустел: убираем его блоки из свободных и отдаем память
+                int kept = 0;
+                for (int i = 0; i < freeCount; i++) {
+                    if (slabIndex(freeHandles[i]) != slabIndex) {
+                        freeHandles[kept++] = freeHandles[i];
+                    }
+                }
+                freeCount = kept;
+                releaseSlab(slabIndex);
+                return;
+            }
+
+            if (freeCount == freeHandles.length) {
+                freeHandles = Arrays.copyOf(freeHandles, freeCount * 2);
+            }
+            freeHandles[freeCount++] = handle;
+        }
+    }
+}
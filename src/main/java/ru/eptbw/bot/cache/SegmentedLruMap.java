@@ -0,0 +1,472 @@
+package ru.eptbw.bot.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongBiFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ограниченная по размеру карта с вытеснением по сегментированному LRU (SLRU).
+ * Новая запись попадает в испытательную очередь, повторное обращение переводит ее в защищенную
+ * (80% емкости). Вытесняется самая давняя запись испытательной очереди, поэтому поток разовых
+ * ключей не вымывает часто используемые. Все операции O(1).
+ * <p>
+ * Ключи распределены по независимым полосам со своей блокировкой, так что потоки, работающие
+ * с разными ключами, почти не конкурируют; порядок вытеснения соблюдается внутри полосы.
+ * <p>
+ * Слушатель удаления вызывается под блокировкой полосы для каждого значения, покидающего карту,
+ * с причиной удаления ({@link RemovalCause}) - так внешние ресурсы значения освобождаются
+ * не одновременно с их чтением через {@link #get(Object, Function)}.
+ * <p>
+ * Кроме числа записей карта может ограничиваться суммарным весом (например, байтами): вес
+ * каждой записи считается функцией weigher один раз при вставке, и вытеснение продолжается,
+ * пока полоса не уложится в обе границы. Запись тяжелее бюджета полосы не задерживается.
+ * <p>
+ * Если задан срок жизни (expiry), у каждой полосы есть {@link TimerWheel}: {@link #expire(long)}
+ * удаляет истекшие записи, не обходя остальные.
+ */
+final class SegmentedLruMap<K, V> {
+    private static final int MIN_STRIPE_CAPACITY = 64;
+    // Бюджет полосы должен вмещать много записей, иначе крупные значения вытесняют друг друга
+    private static final long MIN_STRIPE_WEIGHT = 1024 * 1024;
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final Stripe<K, V>[] stripes;
+    private final int mask;
+    private final long maxWeight;
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    SegmentedLruMap(int maxSize) {
+        this(maxSize, Runtime.getRuntime().availableProcessors() * 4, null);
+    }
+
+    SegmentedLruMap(int maxSize, int concurrency) {
+        this(maxSize, concurrency, null);
+    }
+
+    SegmentedLruMap(int maxSize, int concurrency, RemovalListener<K, V> removalListener) {
+        this(maxSize, 0, null, null, concurrency, removalListener);
+    }
+
+    /**
+     * @param maxWeight предельный суммарный вес, 0 - ограничение только по числу записей
+     * @param weigher   вес записи; обязателен, если задан maxWeight
+     * @param expiry    момент истечения значения (мс), null - записи не истекают
+     */
+    @SuppressWarnings("unchecked")
+    SegmentedLruMap(int maxSize, long maxWeight, ToLongBiFunction<K, V> weigher, ToLongFunction<V> expiry,
+                    int concurrency, RemovalListener<K, V> removalListener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Размер кеша должен быть положительным: " + maxSize);
+        }
+        if (maxWeight < 0 || (maxWeight > 0 && weigher == null)) {
+            throw new IllegalArgumentException("Для ограничения по весу нужен weigher, maxWeight=" + maxWeight);
+        }
+
+        // Полос не больше, чем нужно для параллельности, и каждая не меньше MIN_STRIPE_CAPACITY,
+        // иначе вытеснение внутри полосы слишком далеко от глобального LRU
+        int byConcurrency = Integer.highestOneBit(Math.max(1, concurrency - 1)) << 1;
+        int bySize = Integer.highestOneBit(Math.max(1, maxSize / MIN_STRIPE_CAPACITY));
+        int count = Math.max(1, Math.min(byConcurrency, bySize));
+        if (maxWeight > 0) {
+            count = Math.min(count, (int) Math.max(1, Long.highestOneBit(maxWeight / MIN_STRIPE_WEIGHT)));
+        }
+
+        this.stripes = new Stripe[count];
+        this.mask = count - 1;
+        this.maxWeight = maxWeight;
+        for (int i = 0; i < count; i++) {
+            // Остаток от деления раздается первым полосам, сумма емкостей равна maxSize (и maxWeight)
+            int capacity = maxSize / count + (i < maxSize % count ? 1 : 0);
+            long weightCapacity = maxWeight > 0
+                    ? maxWeight / count + (i < maxWeight % count ? 1 : 0)
+                    : Long.MAX_VALUE;
+            stripes[i] = new Stripe<>(capacity, weightCapacity, maxWeight > 0 ? weigher : null,
+                    expiry, evictions, expirations, removalListener);
+        }
+    }
+
+    /**
+     * Получить значение и отметить обращение к нему
+     */
+    V get(K key) {
+        return stripeFor(key).get(key, true);
+    }
+
+    /**
+     * Прочитать значение функцией reader под блокировкой полосы и отметить обращение.
+     * Возвращает null, если ключа нет.
+     */
+    <R> R get(K key, Function<V, R> reader) {
+        return stripeFor(key).read(key, reader);
+    }
+
+    /**
+     * Получить значение, не меняя порядок вытеснения
+     */
+    V peek(K key) {
+        return stripeFor(key).get(key, false);
+    }
+
+    V put(K key, V value) {
+        return stripeFor(key).put(key, value);
+    }
+
+    V remove(K key) {
+        return stripeFor(key).remove(key, null);
+    }
+
+    /**
+     * Удалить запись, только если она все еще указывает на это значение
+     */
+    boolean remove(K key, V value) {
+        return stripeFor(key).remove(key, value) != null;
+    }
+
+    /**
+     * Удалить запись как истекшую, если условие expired выполняется (проверка и удаление атомарны)
+     */
+    boolean expireIf(K key, Predicate<V> expired) {
+        return stripeFor(key).expireIf(key, expired);
+    }
+
+    int removeIf(BiPredicate<K, V> predicate) {
+        int removed = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            removed += stripe.removeIf(predicate);
+        }
+        return removed;
+    }
+
+    /**
+     * Удалить записи, срок которых истек к моменту now; обходит только пройденные корзины колес
+     * @return число удаленных записей
+     */
+    int expire(long now) {
+        int expired = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            expired += stripe.expire(now);
+        }
+        return expired;
+    }
+
+    void clear() {
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * Суммарный вес записей (0, если карта ограничена только числом записей)
+     */
+    long weightedSize() {
+        long weight = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            weight += stripe.weight;
+        }
+        return weight;
+    }
+
+    long getMaxWeight() {
+        return maxWeight;
+    }
+
+    long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    int getStripeCount() {
+        return stripes.length;
+    }
+
+    private Stripe<K, V> stripeFor(K key) {
+        int hash = key.hashCode();
+        // Перемешиваем старшие биты, чтобы строки с похожим началом не собирались в одной полосе
+        hash ^= (hash >>> 16);
+        hash *= 0x45d9f3b;
+        hash ^= (hash >>> 16);
+        return stripes[hash & mask];
+    }
+
+    enum RemovalCause {
+        /** Вытеснена из-за предела числа записей или веса */
+        SIZE,
+        /** Истек срок жизни */
+        EXPIRED,
+        /** Значение заменено новым по тому же ключу */
+        REPLACED,
+        /** Удалена явно (remove, removeIf, clear) */
+        EXPLICIT
+    }
+
+    @FunctionalInterface
+    interface RemovalListener<K, V> {
+        void onRemoval(K key, V value, RemovalCause cause);
+    }
+
+    private static final class Node<K, V> extends TimerWheel.Timer {
+        final K key;
+        V value;
+        long weight;
+        boolean isProtected;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Полоса: хеш-таблица и две двусвязные очереди (испытательная и защищенная) под одной блокировкой.
+     * У каждой очереди кольцевой заголовок: head.next - самая свежая запись, head.prev - самая давняя.
+     */
+    private static final class Stripe<K, V> {
+        private final Map<K, Node<K, V>> nodes = new HashMap<>();
+        private final Node<K, V> probation = sentinel();
+        private final Node<K, V> protectedQueue = sentinel();
+        private final int capacity;
+        private final int protectedCapacity;
+        private final long weightCapacity;
+        private final ToLongBiFunction<K, V> weigher;
+        private final ToLongFunction<V> expiry;
+        private final TimerWheel wheel;
+        private final LongAdder evictions;
+        private final LongAdder expirations;
+        private final RemovalListener<K, V> removalListener;
+        private int protectedSize;
+        volatile int size;
+        volatile long weight;
+
+        Stripe(int capacity, long weightCapacity, ToLongBiFunction<K, V> weigher, ToLongFunction<V> expiry,
+               LongAdder evictions, LongAdder expirations, RemovalListener<K, V> removalListener) {
+            this.capacity = capacity;
+            this.protectedCapacity = (int) (capacity * PROTECTED_RATIO);
+            this.weightCapacity = weightCapacity;
+            this.weigher = weigher;
+            this.expiry = expiry;
+            this.wheel = expiry != null ? new TimerWheel(System.currentTimeMillis()) : null;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.removalListener = removalListener;
+        }
+
+        synchronized <R> R read(K key, Function<V, R> reader) {
+            Node<K, V> node = nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            onAccess(node);
+            return reader.apply(node.value);
+        }
+
+        synchronized boolean expireIf(K key, Predicate<V> expired) {
+            Node<K, V> node = nodes.get(key);
+            if (node == null || !expired.test(node.value)) {
+                return false;
+            }
+            removeNode(node);
+            expirations.increment();
+            notifyRemoval(node.key, node.value, RemovalCause.EXPIRED);
+            return true;
+        }
+
+        synchronized V get(K key, boolean recordAccess) {
+            Node<K, V> node = nodes.get(key);
+            if (node == null) {
+                return null;
+            }
+            if (recordAccess) {
+                onAccess(node);
+            }
+            return node.value;
+        }
+
+        synchronized V put(K key, V value) {
+            Node<K, V> node = nodes.get(key);
+            long newWeight = weigher != null ? weigher.applyAsLong(key, value) : 0;
+            if (node != null) {
+                V previous = node.value;
+                node.value = value;
+                weight += newWeight - node.weight;
+                node.weight = newWeight;
+                if (wheel != null) {
+                    node.expiresAt = expiry.applyAsLong(value);
+                    wheel.reschedule(node);
+                }
+                onAccess(node);
+                if (previous != value) {
+                    notifyRemoval(key, previous, RemovalCause.REPLACED);
+                }
+                evictOverflow();
+                return previous;
+            }
+
+            node = new Node<>(key, value);
+            node.weight = newWeight;
+            if (wheel != null) {
+                node.expiresAt = expiry.applyAsLong(value);
+                wheel.schedule(node);
+            }
+            nodes.put(key, node);
+            linkFirst(probation, node);
+            size++;
+            weight += newWeight;
+
+            evictOverflow();
+            return null;
+        }
+
+        synchronized V remove(K key, V expectedValue) {
+            Node<K, V> node = nodes.get(key);
+            if (node == null || (expectedValue != null && node.value != expectedValue)) {
+                return null;
+            }
+            removeNode(node);
+            notifyRemoval(node.key, node.value, RemovalCause.EXPLICIT);
+            return node.value;
+        }
+
+        synchronized int removeIf(BiPredicate<K, V> predicate) {
+            int removed = 0;
+            var iterator = nodes.values().iterator();
+            while (iterator.hasNext()) {
+                Node<K, V> node = iterator.next();
+                if (predicate.test(node.key, node.value)) {
+                    iterator.remove();
+                    unlinkNode(node);
+                    notifyRemoval(node.key, node.value, RemovalCause.EXPLICIT);
+                    removed++;
+                }
+            }
+            return removed;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized int expire(long now) {
+            if (wheel == null) {
+                return 0;
+            }
+            int before = size;
+            wheel.advance(now, timer -> {
+                Node<K, V> node = (Node<K, V>) timer;
+                removeNode(node);
+                expirations.increment();
+                notifyRemoval(node.key, node.value, RemovalCause.EXPIRED);
+            });
+            return before - size;
+        }
+
+        synchronized void clear() {
+            if (removalListener != null) {
+                nodes.values().forEach(node -> removalListener.onRemoval(node.key, node.value, RemovalCause.EXPLICIT));
+            }
+            nodes.clear();
+            if (wheel != null) {
+                wheel.clear();
+            }
+            probation.next = probation.prev = probation;
+            protectedQueue.next = protectedQueue.prev = protectedQueue;
+            protectedSize = 0;
+            size = 0;
+            weight = 0;
+        }
+
+        private void onAccess(Node<K, V> node) {
+            unlink(node);
+            if (node.isProtected) {
+                linkFirst(protectedQueue, node);
+                return;
+            }
+
+            // Повторное обращение: запись переходит в защищенную очередь
+            node.isProtected = true;
+            linkFirst(protectedQueue, node);
+            protectedSize++;
+
+            if (protectedSize > protectedCapacity) {
+                // Самая давняя защищенная запись получает второй шанс в испытательной очереди
+                Node<K, V> demoted = protectedQueue.prev;
+                unlink(demoted);
+                demoted.isProtected = false;
+                protectedSize--;
+                linkFirst(probation, demoted);
+            }
+        }
+
+        private void evictOverflow() {
+            while (size > capacity || (weight > weightCapacity && size > 0)) {
+                evict();
+            }
+        }
+
+        private void evict() {
+            Node<K, V> victim = probation.prev != probation ? probation.prev : protectedQueue.prev;
+            removeNode(victim);
+            evictions.increment();
+            notifyRemoval(victim.key, victim.value, RemovalCause.SIZE);
+        }
+
+        private void notifyRemoval(K key, V value, RemovalCause cause) {
+            if (removalListener != null) {
+                removalListener.onRemoval(key, value, cause);
+            }
+        }
+
+        private void removeNode(Node<K, V> node) {
+            nodes.remove(node.key);
+            unlinkNode(node);
+        }
+
+        private void unlinkNode(Node<K, V> node) {
+            unlink(node);
+            if (wheel != null) {
+                wheel.deschedule(node);
+            }
+            if (node.isProtected) {
+                protectedSize--;
+            }
+            size--;
+            weight -= node.weight;
+        }
+
+        private static <K, V> Node<K, V> sentinel() {
+            Node<K, V> head = new Node<>(null, null);
+            head.next = head;
+            head.prev = head;
+            return head;
+        }
+
+        private static <K, V> void linkFirst(Node<K, V> head, Node<K, V> node) {
+            node.prev = head;
+            node.next = head.next;
+            head.next.prev = node;
+            head.next = node;
+        }
+
+        private static <K, V> void unlink(Node<K, V> node) {
+            node.prev.next = node.next;
+            node.next.prev = node.prev;
+            node.prev = null;
+            node.next = null;
+        }
+    }
+}
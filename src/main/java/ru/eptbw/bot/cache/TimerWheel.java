@@ -0,0 +1,169 @@
+package ru.eptbw.bot.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров для истечения записей кеша за амортизированное O(1).
+ * Четыре уровня по 64 корзины с шагом ~1 с, ~65 с, ~70 мин и ~3 сут: запись попадает
+ * в корзину самого мелкого уровня, чей охват вмещает оставшееся время, а при повороте
+ * колеса еще не истекшие записи из пройденных корзин опускаются на уровень ниже.
+ * Так каждая запись переносится не больше числа уровней раз, а удаляется с точностью до секунды.
+ * <p>
+ * Класс не потокобезопасен: SegmentedLruMap держит по колесу на полосу и работает с ним
+ * под блокировкой полосы.
+ */
+final class TimerWheel {
+    // Время в миллисекундах; сдвиги дают шаг уровня 2^shift мс
+    private static final int[] SHIFTS = {10, 16, 22, 28};
+    private static final int BUCKETS = 64;
+
+    private final Timer[][] wheel = new Timer[SHIFTS.length][BUCKETS];
+    private long currentTime;
+    private int size;
+
+    TimerWheel(long now) {
+        this.currentTime = now;
+        for (Timer[] level : wheel) {
+            for (int i = 0; i < BUCKETS; i++) {
+                level[i] = Timer.sentinel();
+            }
+        }
+    }
+
+    /**
+     * Запланировать таймер на момент timer.expiresAt
+     */
+    void schedule(Timer timer) {
+        // Уже истекшие записи кладем в текущую корзину - они уйдут при следующем повороте
+        long time = Math.max(timer.expiresAt, currentTime);
+        link(findBucket(time), timer);
+        size++;
+    }
+
+    /**
+     * Перенести таймер после смены срока жизни
+     */
+    void reschedule(Timer timer) {
+        deschedule(timer);
+        schedule(timer);
+    }
+
+    void deschedule(Timer timer) {
+        if (timer.wheelNext == null) {
+            return;
+        }
+        unlink(timer);
+        size--;
+    }
+
+    /**
+     * Повернуть колесо до момента now и передать expired каждый истекший таймер
+     * (к этому моменту он уже снят с колеса)
+     */
+    void advance(long now, Consumer<Timer> expired) {
+        long previousTime = currentTime;
+        if (now <= previousTime) {
+            return;
+        }
+        currentTime = now;
+
+        for (int level = 0; level < SHIFTS.length; level++) {
+            long previousTicks = previousTime >>> SHIFTS[level];
+            long currentTicks = now >>> SHIFTS[level];
+            if (currentTicks <= previousTicks) {
+                break;
+            }
+            expire(level, previousTicks, currentTicks - previousTicks, expired);
+        }
+    }
+
+    void clear() {
+        for (Timer[] level : wheel) {
+            for (Timer sentinel : level) {
+                Timer timer = sentinel.wheelNext;
+                while (timer != sentinel) {
+                    Timer next = timer.wheelNext;
+                    timer.wheelPrev = null;
+                    timer.wheelNext = null;
+                    timer = next;
+                }
+                sentinel.wheelPrev = sentinel;
+                sentinel.wheelNext = sentinel;
+            }
+        }
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<Timer> expired) {
+        // Проходим и текущую корзину: ее записи либо истекли, либо спускаются на уровень ниже
+        int steps = (int) Math.min(delta + 1, BUCKETS);
+        int start = (int) (previousTicks & (BUCKETS - 1));
+
+        for (int i = start; i < start + steps; i++) {
+            Timer sentinel = wheel[level][i & (BUCKETS - 1)];
+            Timer timer = sentinel.wheelNext;
+            sentinel.wheelPrev = sentinel;
+            sentinel.wheelNext = sentinel;
+
+            while (timer != sentinel) {
+                Timer next = timer.wheelNext;
+                timer.wheelPrev = null;
+                timer.wheelNext = null;
+                size--;
+
+                if (timer.expiresAt <= currentTime) {
+                    expired.accept(timer);
+                } else {
+                    schedule(timer);
+                }
+                timer = next;
+            }
+        }
+    }
+
+    private Timer findBucket(long time) {
+        long delay = time - currentTime;
+        int last = SHIFTS.length - 1;
+        for (int level = 0; level < last; level++) {
+            if (delay < (1L << SHIFTS[level + 1])) {
+                return wheel[level][(int) ((time >>> SHIFTS[level]) & (BUCKETS - 1))];
+            }
+        }
+        // Дальше охвата последнего уровня: запись будет переноситься при каждом его обороте
+        return wheel[last][(int) ((time >>> SHIFTS[last]) & (BUCKETS - 1))];
+    }
+
+    private static void link(Timer sentinel, Timer timer) {
+        timer.wheelPrev = sentinel.wheelPrev;
+        timer.wheelNext = sentinel;
+        sentinel.wheelPrev.wheelNext = timer;
+        sentinel.wheelPrev = timer;
+    }
+
+    private static void unlink(Timer timer) {
+        timer.wheelPrev.wheelNext = timer.wheelNext;
+        timer.wheelNext.wheelPrev = timer.wheelPrev;
+        timer.wheelPrev = null;
+        timer.wheelNext = null;
+    }
+
+    /**
+     * Элемент колеса; wheelNext == null означает, что таймер не запланирован
+     */
+    static class Timer {
+        long expiresAt;
+        Timer wheelPrev;
+        Timer wheelNext;
+
+        private static Timer sentinel() {
+            Timer sentinel = new Timer();
+            sentinel.wheelPrev = sentinel;
+            sentinel.wheelNext = sentinel;
+            return sentinel;
+        }
+    }
+}
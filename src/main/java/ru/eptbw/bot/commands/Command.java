@@ -1,8 +1,15 @@
 package ru.eptbw.bot.commands;
 import org.telegram.telegrambots.meta.api.objects.Update;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface Command {
     String getName();
     String getDescription();
     String execute(Update update, String[] args);
-}
\ No newline at end of file
+
+    // Команды с сетевыми вызовами переопределяют этот метод, чтобы не блокировать поток пула
+    default CompletableFuture<String> executeAsync(Update update, String[] args) {
+        return CompletableFuture.completedFuture(execute(update, args));
+    }
+}
@@ -1,16 +1,22 @@
 package ru.eptbw.bot.commands;
 
 import org.telegram.telegrambots.meta.api.objects.Update;
-import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.gemini.TranslationBackend;
 import ru.eptbw.bot.services.DatabaseManager;
+import ru.eptbw.bot.services.LanguageDetector;
+import ru.eptbw.bot.services.LanguageDetector.Detection;
+import ru.eptbw.bot.threading.ThreadPoolManager;
+import ru.eptbw.config.Config;
+
+import java.util.concurrent.CompletableFuture;
 
 public class TranslateCommand extends AbstractCommand {
-    private final GeminiService geminiService;
+    private final TranslationBackend translationBackend;
     private final DatabaseManager dbManager;
 
-    public TranslateCommand(GeminiService geminiService) {
+    public TranslateCommand(TranslationBackend translationBackend) {
         super("/translate", "Перевести текст. Использование: /translate <текст> или /translate <язык> <текст>");
-        this.geminiService = geminiService;
+        this.translationBackend = translationBackend;
         this.dbManager = DatabaseManager.getInstance();
     }
 
@@ -20,42 +26,78 @@ public class TranslateCommand extends AbstractCommand {
             return getUsageHelp();
         }
 
-        Long userId = update.getMessage().getFrom().getId();
-        String targetLanguage = "english";
-        String textToTranslate;
-
-        if (args.length >= 2 && isValidLanguageCode(args[0])) {
-            targetLanguage = getLanguageName(args[0]);
-            textToTranslate = String.join(" ", java.util.Arrays.copyOfRange(args, 1, args.length));
-        } else {
-            // Используем последний язык перевода пользователя
-            String userTranslationLang = dbManager.getUserTranslationLanguage(userId);
-            targetLanguage = getLanguageName(userTranslationLang);
-            textToTranslate = String.join(" ", args);
+        TranslationArgs parsed = parseArgs(update, args);
+        if (parsed.text.length() > Config.getMaxTextLength()) {
+            return getTextTooLongMessage();
         }
-
-        if (textToTranslate.length() > 1000) {
-            return "❌ Текст слишком длинный. Максимальная длина - 1000 символов.";
+        if (parsed.isAlreadyTranslated()) {
+            return getAlreadyTranslatedMessage(parsed);
         }
 
         try {
-            String translatedText = geminiService.translateText(textToTranslate, targetLanguage);
+            String translatedText = translationBackend.translateText(parsed.text, parsed.targetLanguage);
+            return completeTranslation(update, parsed, translatedText);
 
-            // Сохраняем в историю переводов с именем пользователя
-            String userName = getUserDisplayName(update.getMessage().getFrom());
-            String sourceLang = getSourceLanguage(targetLanguage);
+        } catch (Exception e) {
+            return "❌ Ошибка при переводе через Gemini. Пожалуйста, попробуйте позже.";
+        }
+    }
 
-            dbManager.saveTranslation(userId, userName, textToTranslate, translatedText, sourceLang, targetLanguage);
+    @Override
+    public CompletableFuture<String> executeAsync(Update update, String[] args) {
+        if (args.length == 0) {
+            return CompletableFuture.completedFuture(getUsageHelp());
+        }
 
-            return "🌍 Перевод на " + getLanguageDisplayName(targetLanguage) + ":\n\n" + translatedText;
+        TranslationArgs parsed = parseArgs(update, args);
+        if (parsed.text.length() > Config.getMaxTextLength()) {
+            return CompletableFuture.completedFuture(getTextTooLongMessage());
+        }
+        if (parsed.isAlreadyTranslated()) {
+            return CompletableFuture.completedFuture(getAlreadyTranslatedMessage(parsed));
+        }
 
-        } catch (Exception e) {
-            return "❌ Ошибка при переводе через Gemini. Пожалуйста, попробуйте позже.";
+        // Ошибка должна дойти до exceptionally, а не попасть в историю как текст перевода
+        return translationBackend.translateTextOrFail(parsed.text, parsed.targetLanguage,
+                        update.getMessage().getFrom().getId())
+                // Запись в SQLite не должна занимать поток OkHttp, который доставляет ответы Gemini
+                .thenApplyAsync(translatedText -> completeTranslation(update, parsed, translatedText),
+                        ThreadPoolManager.getInstance().getExecutor())
+                .exceptionally(e -> "❌ Ошибка при переводе через Gemini. Пожалуйста, попробуйте позже.");
+    }
+
+    private TranslationArgs parseArgs(Update update, String[] args) {
+        Long userId = update.getMessage().getFrom().getId();
+
+        if (args.length >= 2 && isValidLanguageCode(args[0])) {
+            return new TranslationArgs(getLanguageName(args[0]),
+                    String.join(" ", java.util.Arrays.copyOfRange(args, 1, args.length)));
         }
+
+        // Используем последний язык перевода пользователя
+        String userTranslationLang = dbManager.getUserTranslationLanguage(userId);
+        return new TranslationArgs(getLanguageName(userTranslationLang), String.join(" ", args));
+    }
+
+    private String completeTranslation(Update update, TranslationArgs parsed, String translatedText) {
+        // Сохраняем в историю переводов с именем пользователя
+        Long userId = update.getMessage().getFrom().getId();
+        String userName = getUserDisplayName(update.getMessage().getFrom());
+        // Ненадежная догадка в историю не пишется - то же правило, что и для ключа кеша
+        String sourceLang = parsed.detection.isReliable() ? parsed.detection.getLanguage() : "auto";
+
+        dbManager.saveTranslation(userId, userName, parsed.text, translatedText, sourceLang, parsed.targetLanguage);
+
+        return "🌍 Перевод на " + getLanguageDisplayName(parsed.targetLanguage) + ":\n\n" + translatedText;
+    }
+
+    private String getTextTooLongMessage() {
+        return "❌ Текст слишком длинный. Максимальная длина - " + Config.getMaxTextLength() + " символов.";
     }
 
-    private String getSourceLanguage(String targetLanguage) {
-        return targetLanguage.equals("russian") ? "auto" : "russian";
+    private String getAlreadyTranslatedMessage(TranslationArgs parsed) {
+        return "ℹ️ Текст уже написан на языке перевода (" + getLanguageDisplayName(parsed.targetLanguage)
+                + "), перевод не требуется.";
     }
 
     private String getUsageHelp() {
@@ -114,4 +156,23 @@ public class TranslateCommand extends AbstractCommand {
             return user.getFirstName();
         }
     }
-}
\ No newline at end of file
+
+    private static class TranslationArgs {
+        final String targetLanguage;
+        final String text;
+        final Detection detection;
+
+        TranslationArgs(String targetLanguage, String text) {
+            this.targetLanguage = targetLanguage;
+            this.text = text;
+            this.detection = LanguageDetector.detect(text);
+        }
+
+        /**
+         * Текст уже на целевом языке - запрос к Gemini не нужен
+         */
+        boolean isAlreadyTranslated() {
+            return detection.isLanguage(targetLanguage);
+        }
+    }
+}
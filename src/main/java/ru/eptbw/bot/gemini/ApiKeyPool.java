@@ -0,0 +1,244 @@
+package ru.eptbw.bot.gemini;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Пул API-ключей Gemini: квота считается на проект, поэтому несколько ключей из разных проектов
+ * складывают квоты. Запрос получает ключ с наименьшим числом выполняющихся запросов относительно веса.
+ * Ключ, получивший 429, выводится из ротации на время охлаждения; при повторных 429 подряд
+ * охлаждение удваивается (не более чем в 8 раз).
+ */
+public class ApiKeyPool {
+    private static final Logger logger = LoggerFactory.getLogger(ApiKeyPool.class);
+    private static final int MAX_COOLDOWN_MULTIPLIER = 8;
+
+    private final List<ApiKey> keys;
+    private final long cooldownMillis;
+    private final LongSupplier clock;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public ApiKeyPool(List<ApiKey> keys, long cooldownMillis) {
+        this(keys, cooldownMillis, System::currentTimeMillis);
+    }
+
+    ApiKeyPool(List<ApiKey> keys, long cooldownMillis, LongSupplier clock) {
+        if (keys.isEmpty()) {
+            throw new IllegalArgumentException("Пул API-ключей пуст");
+        }
+        this.keys = List.copyOf(keys);
+        this.cooldownMillis = cooldownMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Разбор списка ключей вида "ключ1:3,ключ2,ключ3:1", где число после двоеточия - вес (по умолчанию 1).
+     * Пустая строка дает пул из одного пустого ключа, чтобы сервис создавался и без настроек.
+     * Некорректный или неположительный вес не роняет запуск: ключ получает вес 1 с предупреждением в лог.
+     */
+    public static ApiKeyPool parse(String spec, long cooldownMillis) {
+        List<ApiKey> keys = new ArrayList<>();
+        if (spec != null) {
+            for (String item : spec.split(",")) {
+                String trimmed = item.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+
+                int separator = trimmed.lastIndexOf(':');
+                if (separator > 0) {
+                    keys.add(new ApiKey(trimmed.substring(0, separator).trim(),
+                            parseWeight(trimmed.substring(separator + 1).trim(), keys.size() + 1)));
+                } else {
+                    keys.add(new ApiKey(trimmed, 1));
+                }
+            }
+        }
+
+        if (keys.isEmpty()) {
+            keys.add(new ApiKey("", 1));
+        }
+        return new ApiKeyPool(keys, cooldownMillis);
+    }
+
+    private static int parseWeight(String value, int position) {
+        try {
+            int weight = Integer.parseInt(value);
+            if (weight > 0) {
+                return weight;
+            }
+        } catch (NumberFormatException ignored) {
+            // Не число - предупреждение и вес по умолчанию ниже
+        }
+        // Сам ключ в лог не пишем - только его номер в списке
+        logger.warn("Некорректный вес API-ключа №{}: '{}', используется вес 1", position, value);
+        return 1;
+    }
+
+    /**
+     * Выбрать ключ и учесть запрос; после ответа обязательно вызвать release
+     */
+    public ApiKey acquire() {
+        ApiKey key = select();
+        key.outstanding.incrementAndGet();
+        key.requests.increment();
+        return key;
+    }
+
+    /**
+     * Выбрать ключ без учета запроса (для служебных вызовов вроде прогрева соединения)
+     */
+    public ApiKey select() {
+        long now = clock.getAsLong();
+        int size = keys.size();
+        int start = Math.floorMod(rotation.getAndIncrement(), size);
+
+        ApiKey best = null;
+        double bestLoad = Double.MAX_VALUE;
+        ApiKey coolest = null;
+
+        // Обход начинается с разных ключей, чтобы при равной нагрузке запросы шли по кругу
+        for (int i = 0; i < size; i++) {
+            ApiKey key = keys.get((start + i) % size);
+            if (key.cooldownUntil > now) {
+                if (coolest == null || key.cooldownUntil < coolest.cooldownUntil) {
+                    coolest = key;
+                }
+                continue;
+            }
+
+            double load = (key.outstanding.get() + 1.0) / key.weight;
+            if (load < bestLoad) {
+                best = key;
+                bestLoad = load;
+            }
+        }
+
+        // Все ключи на охлаждении - берем тот, что освободится раньше всех
+        return best != null ? best : coolest;
+    }
+
+    /**
+     * Вернуть ключ после ответа; error == null означает успех
+     */
+    public void release(ApiKey key, Throwable error) {
+        key.outstanding.decrementAndGet();
+
+        if (error == null) {
+            key.consecutiveRateLimits.set(0);
+        } else if (isQuotaExceeded(error)) {
+            key.rateLimited.increment();
+            int streak = key.consecutiveRateLimits.incrementAndGet();
+            long cooldown = cooldownMillis * Math.min(MAX_COOLDOWN_MULTIPLIER, 1L << Math.min(streak - 1, 3));
+            key.cooldownUntil = clock.getAsLong() + cooldown;
+            key.cooldowns.increment();
+            logger.warn("API-ключ {} исчерпал квоту, исключен из ротации на {} с",
+                    key.getMaskedKey(), TimeUnit.MILLISECONDS.toSeconds(cooldown));
+        } else if (!(error instanceof CancellationException)) {
+            key.failures.increment();
+        }
+    }
+
+    /**
+     * Есть ли ключ, который сейчас не на охлаждении
+     */
+    public boolean hasAvailableKey() {
+        long now = clock.getAsLong();
+        for (ApiKey key : keys) {
+            if (key.cooldownUntil <= now) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return keys.size();
+    }
+
+    public List<ApiKey> getKeys() {
+        return keys;
+    }
+
+    static boolean isQuotaExceeded(Throwable error) {
+        return error instanceof GeminiApiException apiError && apiError.getStatusCode() == 429;
+    }
+
+    public String getStats() {
+        long now = clock.getAsLong();
+        StringBuilder stats = new StringBuilder("Gemini ключи:");
+        for (ApiKey key : keys) {
+            stats.append(' ').append(key.getStats(now)).append(';');
+        }
+        stats.setLength(stats.length() - 1);
+        return stats.toString();
+    }
+
+    public static class ApiKey {
+        private final String key;
+        private final int weight;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicInteger consecutiveRateLimits = new AtomicInteger();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder rateLimited = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder cooldowns = new LongAdder();
+        private volatile long cooldownUntil;
+
+        public ApiKey(String key, int weight) {
+            if (weight <= 0) {
+                throw new IllegalArgumentException("Вес API-ключа должен быть положительным: " + weight);
+            }
+            this.key = key;
+            this.weight = weight;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        public long getRateLimited() {
+            return rateLimited.sum();
+        }
+
+        public boolean isCoolingDown(long now) {
+            return cooldownUntil > now;
+        }
+
+        public String getMaskedKey() {
+            return "***" + key.substring(Math.max(0, key.length() - 4));
+        }
+
+        String getStats(long now) {
+            long total = requests.sum();
+            long limited = rateLimited.sum();
+            String stats = String.format("%s (вес=%d): в процессе=%d, запросов=%d, 429=%d (%.1f%%), ошибок=%d, охлаждений=%d",
+                    getMaskedKey(), weight, outstanding.get(), total, limited,
+                    total > 0 ? limited * 100.0 / total : 0.0, failures.sum(), cooldowns.sum());
+            if (isCoolingDown(now)) {
+                stats += String.format(", на охлаждении еще %d с", TimeUnit.MILLISECONDS.toSeconds(cooldownUntil - now));
+            }
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.eptbw.bot.gemini;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Счетчики соединений OkHttp: сколько вызовов получили уже открытое соединение,
+ * а сколько заплатили за DNS, TCP и TLS
+ */
+class ConnectionStats extends EventListener {
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder failedConnects = new LongAdder();
+    private final LongAdder http2Connections = new LongAdder();
+    private final AtomicLong lastCallNanos = new AtomicLong(System.nanoTime());
+
+    @Override
+    public void callStart(Call call) {
+        calls.increment();
+        lastCallNanos.set(System.nanoTime());
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        opened.increment();
+        if (protocol == Protocol.HTTP_2) {
+            http2Connections.increment();
+        }
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                              Protocol protocol, IOException ioe) {
+        failedConnects.increment();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        acquired.increment();
+    }
+
+    long getOpenedConnections() {
+        return opened.sum();
+    }
+
+    long getAcquiredConnections() {
+        return acquired.sum();
+    }
+
+    /**
+     * Доля вызовов, которым досталось уже открытое соединение из пула, в процентах
+     */
+    double getReuseRate() {
+        long total = acquired.sum();
+        if (total == 0) {
+            return 0.0;
+        }
+        return Math.max(0, total - opened.sum()) * 100.0 / total;
+    }
+
+    long getIdleMillis() {
+        return (System.nanoTime() - lastCallNanos.get()) / 1_000_000;
+    }
+
+    String getStats() {
+        return String.format("вызовов=%d, новых соединений=%d (HTTP/2: %d, ошибок: %d), переиспользование=%.1f%%",
+                calls.sum(), opened.sum(), http2Connections.sum(), failedConnects.sum(), getReuseRate());
+    }
+}
@@ -0,0 +1,24 @@
+package ru.eptbw.bot.gemini;
+
+/**
+ * Ошибка ответа Gemini API с HTTP-кодом (0 - ответа не было, например открыт предохранитель)
+ */
+public class GeminiApiException extends RuntimeException {
+    private final int statusCode;
+
+    public GeminiApiException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Признак перегрузки API: на такие ошибки уменьшается лимит параллельных запросов
+     */
+    public boolean isOverload() {
+        return statusCode == 429 || statusCode >= 500;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Тело запроса generateContent, которое пишется прямо в sink OkHttp.
+ * Неизменяемые части JSON (инструкция промпта и generationConfig) заранее закодированы в байты,
+ * а текст пользователя экранируется JsonGenerator'ом по месту без промежуточных строк.
+ */
+class GeminiRequestBody extends RequestBody {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    // Генератор не закрывает и не сбрасывает sink: этим управляет OkHttp
+    private static final JsonFactory JSON_FACTORY = JsonFactory.builder()
+            .disable(StreamWriteFeature.AUTO_CLOSE_TARGET)
+            .disable(StreamWriteFeature.FLUSH_PASSED_TO_STREAM)
+            .build();
+
+    private final PromptTemplate template;
+    private final String userText;
+    private final byte[] generationConfig;
+
+    GeminiRequestBody(PromptTemplate template, String userText) {
+        this(template, userText, GenerationConfig.DEFAULT, false);
+    }
+
+    /**
+     * @param thinkingModel модель рассуждает и тратит на это часть maxOutputTokens
+     */
+    GeminiRequestBody(PromptTemplate template, String userText, GenerationConfig generationConfig,
+                      boolean thinkingModel) {
+        this.template = template;
+        this.userText = userText;
+        this.generationConfig = generationConfig.json(thinkingModel);
+    }
+
+    @Override
+    public MediaType contentType() {
+        return JSON;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.write(template.head);
+
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(sink.outputStream())) {
+            generator.writeString(userText);
+        }
+
+        sink.write(template.tail);
+        sink.write(generationConfig);
+    }
+
+    /**
+     * Заранее собранная форма промпта: инструкция до текста пользователя и (необязательно) после него.
+     * Части передаются в Gemini отдельными parts одного сообщения.
+     */
+    static class PromptTemplate {
+        final byte[] head;
+        final byte[] tail;
+        final String description;
+
+        PromptTemplate(String prefix, String suffix) {
+            this.description = prefix;
+            this.head = ("{\"contents\":[{\"parts\":[{\"text\":" + quote(prefix) + "},{\"text\":")
+                    .getBytes(StandardCharsets.UTF_8);
+            this.tail = ("}" + (suffix != null ? ",{\"text\":" + quote(suffix) + "}" : "")
+                    + "]}],")
+                    .getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static String quote(String value) {
+            return "\"" + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + "\"";
+        }
+    }
+
+    /**
+     * Параметры генерации, закодированные в хвост JSON-тела один раз.
+     * Рассуждающие модели (gemini-2.5) считают токены размышлений в maxOutputTokens, поэтому
+     * для запросов без рассуждений есть второй вариант хвоста с thinkingBudget=0:
+     * иначе лимит уходит на размышления и ответ приходит пустым или обрезанным.
+     */
+    static class GenerationConfig {
+        static final GenerationConfig DEFAULT = new GenerationConfig(0.3, 1000);
+
+        final double temperature;
+        final int maxOutputTokens;
+        final boolean thinking;
+        private final byte[] json;
+        private final byte[] withoutThinkingJson;
+
+        GenerationConfig(double temperature, int maxOutputTokens) {
+            this(temperature, maxOutputTokens, true);
+        }
+
+        /**
+         * @param thinking false - отключать рассуждения у моделей, которые это позволяют
+         */
+        GenerationConfig(double temperature, int maxOutputTokens, boolean thinking) {
+            this.temperature = temperature;
+            this.maxOutputTokens = maxOutputTokens;
+            this.thinking = thinking;
+            String base = "\"generationConfig\":{\"temperature\":" + temperature
+                    + ",\"maxOutputTokens\":" + maxOutputTokens;
+            this.json = (base + "}}").getBytes(StandardCharsets.UTF_8);
+            this.withoutThinkingJson = thinking
+                    ? json
+                    : (base + ",\"thinkingConfig\":{\"thinkingBudget\":0}}}").getBytes(StandardCharsets.UTF_8);
+        }
+
+        byte[] json(boolean thinkingModel) {
+            return thinkingModel ? withoutThinkingJson : json;
+        }
+    }
+}
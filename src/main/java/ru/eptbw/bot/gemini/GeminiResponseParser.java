@@ -0,0 +1,139 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Потоковый разбор ответа generateContent без построения дерева объектов.
+ * Из JSON извлекаются только текст первой части первого кандидата, finishReason и usageMetadata,
+ * остальные поля пропускаются парсером без материализации.
+ */
+class GeminiResponseParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private GeminiResponseParser() {
+    }
+
+    static ParsedResponse parse(InputStream body) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+            return parse(parser);
+        }
+    }
+
+    static ParsedResponse parse(String json) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            return parse(parser);
+        }
+    }
+
+    private static ParsedResponse parse(JsonParser parser) throws IOException {
+        ParsedResponse response = new ParsedResponse();
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("Ожидался JSON-объект в ответе Gemini API");
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("candidates".equals(field) && value == JsonToken.START_ARRAY) {
+                readCandidates(parser, response);
+            } else if ("usageMetadata".equals(field) && value == JsonToken.START_OBJECT) {
+                readUsage(parser, response);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return response;
+    }
+
+    private static void readCandidates(JsonParser parser, ParsedResponse response) throws IOException {
+        boolean first = true;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (first && parser.currentToken() == JsonToken.START_OBJECT) {
+                readCandidate(parser, response);
+                first = false;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readCandidate(JsonParser parser, ParsedResponse response) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("content".equals(field) && value == JsonToken.START_OBJECT) {
+                readContent(parser, response);
+            } else if ("finishReason".equals(field) && value == JsonToken.VALUE_STRING) {
+                response.finishReason = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readContent(JsonParser parser, ParsedResponse response) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("parts".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    if (response.text == null && parser.currentToken() == JsonToken.START_OBJECT) {
+                        readPart(parser, response);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readPart(JsonParser parser, ParsedResponse response) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("text".equals(field) && value == JsonToken.VALUE_STRING) {
+                response.text = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static void readUsage(JsonParser parser, ParsedResponse response) throws IOException {
+        response.hasUsage = true;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("promptTokenCount".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                response.promptTokens = parser.getIntValue();
+            } else if ("candidatesTokenCount".equals(field) && value == JsonToken.VALUE_NUMBER_INT) {
+                response.candidatesTokens = parser.getIntValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Нужные боту поля ответа Gemini
+     */
+    static class ParsedResponse {
+        String text;
+        String finishReason;
+        boolean hasUsage;
+        int promptTokens;
+        int candidatesTokens;
+    }
+}
@@ -0,0 +1,54 @@
+package ru.eptbw.bot.gemini;
+
+/**
+ * Текст ответа Gemini вместе с расходом токенов из usageMetadata
+ */
+public class GeminiResult {
+    private final String text;
+    private final int promptTokens;
+    private final int candidatesTokens;
+    private final boolean truncated;
+
+    public GeminiResult(String text, int promptTokens, int candidatesTokens) {
+        this(text, promptTokens, candidatesTokens, false);
+    }
+
+    public GeminiResult(String text, int promptTokens, int candidatesTokens, boolean truncated) {
+        this.text = text;
+        this.promptTokens = promptTokens;
+        this.candidatesTokens = candidatesTokens;
+        this.truncated = truncated;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getPromptTokens() {
+        return promptTokens;
+    }
+
+    public int getCandidatesTokens() {
+        return candidatesTokens;
+    }
+
+    public int getTotalTokens() {
+        return promptTokens + candidatesTokens;
+    }
+
+    /**
+     * Ответ оборван по лимиту maxOutputTokens (finishReason MAX_TOKENS)
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * Доля расхода токенов для одного текста из пакетного запроса
+     */
+    GeminiResult share(String text, double fraction) {
+        return new GeminiResult(text,
+                (int) Math.round(promptTokens * fraction),
+                (int) Math.round(candidatesTokens * fraction), truncated);
+    }
+}
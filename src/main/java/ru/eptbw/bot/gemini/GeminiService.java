@@ -3,162 +3,714 @@ package ru.eptbw.bot.gemini;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import okhttp3.*;
+import okio.BufferedSource;
+import ru.eptbw.bot.gemini.ApiKeyPool.ApiKey;
+import ru.eptbw.bot.gemini.GeminiRequestBody.GenerationConfig;
+import ru.eptbw.bot.gemini.GeminiRequestBody.PromptTemplate;
+import ru.eptbw.bot.gemini.ModelRouter.ModelTier;
+import ru.eptbw.bot.gemini.ModelRouter.RequestType;
+import ru.eptbw.bot.gemini.ModelRouter.Route;
+import ru.eptbw.bot.gemini.GeminiResponseParser.ParsedResponse;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.services.LanguageDetector;
+import ru.eptbw.bot.threading.AdaptiveConcurrencyLimiter;
+import ru.eptbw.bot.threading.CircuitBreaker;
+import ru.eptbw.bot.threading.RateLimiterService;
+import ru.eptbw.bot.threading.ThreadPoolManager;
 import ru.eptbw.config.Config;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-public class GeminiService {
+public class GeminiService implements TranslationBackend {
     private static final Logger logger = LoggerFactory.getLogger(GeminiService.class);
 
-    private final String apiKey;
+    private final ApiKeyPool apiKeyPool;
     private final String model;
+    private final String baseUrl;
     private final OkHttpClient httpClient;
+    private final ConnectionPool connectionPool;
+    private final ConnectionStats connectionStats = new ConnectionStats();
     private final ObjectMapper objectMapper;
+    private final RequestCoalescer<GeminiResult> translationCoalescer = new RequestCoalescer<>();
+    private final TranslationBatcher translationBatcher;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final CircuitBreaker circuitBreaker;
+    private final HedgingPolicy hedgingPolicy;
+    private final ModelRouter modelRouter;
+    private final LongAdder apiCalls = new LongAdder();
+    private final LongAdder promptTokens = new LongAdder();
+    private final LongAdder candidatesTokens = new LongAdder();
+
+    // Инструкции промптов закодированы в JSON один раз; на каждый запрос экранируется только текст пользователя
+    private static final PromptTemplate RESPONSE_TEMPLATE = new PromptTemplate(
+            "Ты - полезный AI-ассистент в Telegram боте. Ответь на сообщение пользователя кратко и информативно.\n\n" +
+                    "Сообщение пользователя: ",
+            "\n\nОтветь на русском языке, если пользователь не указал иное.");
+    private static final PromptTemplate AVAILABILITY_TEMPLATE = new PromptTemplate("Ответь одним словом: ", null);
+    private final Map<String, PromptTemplate> translationTemplates = new ConcurrentHashMap<>();
+    private final Map<String, PromptTemplate> batchTemplates = new ConcurrentHashMap<>();
 
     public GeminiService() {
-        this(Config.getGeminiApiKey(), Config.getGeminiModel());
+        this(ApiKeyPool.parse(Config.getGeminiApiKeys(),
+                        TimeUnit.SECONDS.toMillis(Config.getGeminiKeyCooldownSeconds())),
+                Config.getGeminiModel(), Config.getGeminiBaseUrl());
     }
 
     public GeminiService(String apiKey, String model) {
-        this.apiKey = apiKey;
+        this(apiKey, model, Config.getGeminiBaseUrl());
+    }
+
+    /**
+     * @param baseUrl адрес API до /models, например https://generativelanguage.googleapis.com/v1beta
+     */
+    public GeminiService(String apiKey, String model, String baseUrl) {
+        this(ApiKeyPool.parse(apiKey, TimeUnit.SECONDS.toMillis(Config.getGeminiKeyCooldownSeconds())),
+                model, baseUrl);
+    }
+
+    public GeminiService(ApiKeyPool apiKeyPool, String model, String baseUrl) {
+        this.apiKeyPool = apiKeyPool;
         this.model = model;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
         this.objectMapper = new ObjectMapper();
         // Игнорируем неизвестные поля в JSON
         this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        // По умолчанию OkHttp пускает к одному хосту только 5 запросов одновременно,
+        // поэтому лимиты диспетчера задаются с запасом над адаптивным лимитом параллельности
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(Config.getGeminiMaxRequests());
+        dispatcher.setMaxRequestsPerHost(Config.getGeminiMaxRequestsPerHost());
+        this.connectionPool = new ConnectionPool(Config.getGeminiPoolMaxIdle(),
+                Config.getGeminiPoolKeepAliveSeconds(), TimeUnit.SECONDS);
         this.httpClient = new OkHttpClient.Builder()
                 .connectTimeout(30, TimeUnit.SECONDS)
                 .readTimeout(60, TimeUnit.SECONDS)
                 .writeTimeout(30, TimeUnit.SECONDS)
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .eventListener(connectionStats)
                 .build();
 
-        logger.info("Initialized GeminiService with model: {}", model);
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter("gemini",
+                Config.getGeminiConcurrencyInitial(),
+                Config.getGeminiConcurrencyMin(),
+                Config.getGeminiConcurrencyMax(),
+                Config.getGeminiLatencyThresholdMs(),
+                Config.getGeminiQueueMaxSize(),
+                GeminiService::isOverload);
+        this.circuitBreaker = new CircuitBreaker("gemini",
+                Config.getCircuitFailureThreshold(),
+                TimeUnit.SECONDS.toMillis(Config.getCircuitOpenSeconds()));
+
+        this.modelRouter = new ModelRouter(model, Config.getGeminiFastModel(), Config.getGeminiFastMaxTextLength());
+        this.hedgingPolicy = Config.isGeminiHedgingEnabled()
+                ? new HedgingPolicy(
+                        (task, delayMs) -> ThreadPoolManager.getInstance()
+                                .scheduleTask(task, delayMs, TimeUnit.MILLISECONDS),
+                        Config.getGeminiHedgePercentile(),
+                        Config.getGeminiHedgeMaxPercent(),
+                        Config.getGeminiHedgeMinDelayMs())
+                : null;
+
+        this.translationBatcher = Config.isGeminiBatchingEnabled()
+                ? new TranslationBatcher(
+                        (targetLanguage, jsonArray) -> callGeminiAPIAsync(RequestType.BATCH,
+                                batchTemplates.computeIfAbsent(targetLanguage, GeminiService::batchTemplate), jsonArray),
+                        this::requestTranslation,
+                        (task, delayMs) -> ThreadPoolManager.getInstance()
+                                .scheduleTask(task, delayMs, TimeUnit.MILLISECONDS),
+                        objectMapper,
+                        Config.getGeminiBatchWindowMs(),
+                        Config.getGeminiBatchMaxSize(),
+                        Config.getGeminiBatchMaxTextLength())
+                : null;
+
+        logger.info("Initialized GeminiService with model: {} ({}, ключей: {})", model, this.baseUrl, apiKeyPool.size());
     }
 
+    @Override
     public String translateText(String text, String targetLanguage) {
-        try {
-            String prompt = String.format(
-                    "Переведи следующий текст на %s. Ответь ТОЛЬКО переводом без дополнительных комментариев:\n\n%s",
-                    targetLanguage, text
-            );
+        return translateTextAsync(text, targetLanguage).join();
+    }
 
-            return callGeminiAPI(prompt);
+    @Override
+    public String autoTranslateToRussian(String text) {
+        return autoTranslateToRussianAsync(text).join();
+    }
 
-        } catch (Exception e) {
-            logger.error("Ошибка при переводе текста: '{}'", text, e);
-            return "⚠️ Ошибка перевода. Попробуйте позже.";
+    @Override
+    public String generateResponse(String userMessage) {
+        return generateResponseAsync(userMessage).join();
+    }
+
+    /**
+     * Асинхронный перевод: поток пула не блокируется на время запроса к Gemini
+     */
+    @Override
+    public CompletableFuture<String> translateTextAsync(String text, String targetLanguage) {
+        return translateTextAsync(text, targetLanguage, null);
+    }
+
+    /**
+     * Асинхронный перевод с учетом потраченных токенов в квоте пользователя
+     */
+    @Override
+    public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+        return translateTextOrFail(text, targetLanguage, userId).exceptionally(e -> translationError(text, e));
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextOrFail(String text, String targetLanguage, Long userId) {
+        // Одинаковые тексты, пришедшие одновременно, переводятся одним запросом,
+        // а короткие разные тексты собираются в пакет
+        String key = RequestCoalescer.translationKey(text, targetLanguage);
+
+        return translationCoalescer.execute(key, () ->
+                translationBatcher != null && translationBatcher.accepts(text)
+                        ? translationBatcher.submit(text, targetLanguage)
+                        : requestTranslation(text, targetLanguage)
+        ).thenApply(result -> chargeUser(userId, result));
+    }
+
+    /**
+     * Язык определяется локально: русский текст возвращается как есть,
+     * остальное переводится обычным промптом без просьбы к модели определить язык
+     */
+    @Override
+    public CompletableFuture<String> autoTranslateToRussianAsync(String text) {
+        if (LanguageDetector.detect(text).isLanguage("ru")) {
+            return CompletableFuture.completedFuture(text);
         }
+        return translateTextAsync(text, "russian");
     }
 
-    public String autoTranslateToRussian(String text) {
-        try {
-            String prompt = "Определи язык следующего текста и переведи его на русский. " +
-                    "Ответь ТОЛЬКО переводом без дополнительных комментариев:\n\n" + text;
+    @Override
+    public CompletableFuture<String> generateResponseAsync(String userMessage) {
+        return callGeminiAPIAsync(RequestType.RESPONSE, RESPONSE_TEMPLATE, userMessage).thenApply(GeminiResult::getText).exceptionally(e -> {
+            logger.error("Ошибка при генерации ответа для сообщения: '{}'", userMessage, unwrap(e));
+            return "🤖 В настоящее время AI-функция временно недоступна.\nИспользуйте команды: /help, /translate";
+        });
+    }
 
-            return callGeminiAPI(prompt);
+    /**
+     * Потоковый перевод через streamGenerateContent (SSE).
+     * onPartial вызывается с накопленным текстом по мере прихода фрагментов,
+     * future завершается полным переводом.
+     */
+    @Override
+    public CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                         Consumer<String> onPartial) {
+        return callGeminiStreamAsync(translationTemplate(targetLanguage), text, onPartial)
+                .thenApply(GeminiService::requireComplete)
+                .thenApply(result -> chargeUser(userId, result))
+                .whenComplete((result, error) -> {
+                    if (error != null) {
+                        logger.error("Ошибка при потоковом переводе текста: '{}'", text, unwrap(error));
+                    }
+                });
+    }
 
-        } catch (Exception e) {
-            logger.error("Ошибка при автоматическом переводе", e);
-            return "⚠️ Ошибка автоматического перевода.";
+    private String chargeUser(Long userId, GeminiResult result) {
+        if (userId != null) {
+            RateLimiterService.getInstance().recordUserTokenUsage(userId, result.getTotalTokens());
         }
+        return result.getText();
     }
 
-    public String generateResponse(String userMessage) {
+    private String translationError(String text, Throwable error) {
+        Throwable cause = unwrap(error);
+        if (isCircuitOpen(cause)) {
+            // Быстрый отказ без обращения к API, пока оно восстанавливается
+            logger.warn("Перевод отклонен предохранителем Gemini: '{}'", text);
+            return "⚠️ Сервис перевода временно перегружен. Попробуйте через минуту.";
+        }
+
+        logger.error("Ошибка при переводе текста: '{}'", text, cause);
+        return "⚠️ Ошибка перевода. Попробуйте позже.";
+    }
+
+    private CompletableFuture<GeminiResult> requestTranslation(String text, String targetLanguage) {
+        return callGeminiAPIAsync(RequestType.TRANSLATION, translationTemplate(targetLanguage), text)
+                .thenApply(GeminiService::requireComplete);
+    }
+
+    private PromptTemplate translationTemplate(String targetLanguage) {
+        return translationTemplates.computeIfAbsent(targetLanguage, language -> new PromptTemplate(
+                "Переведи следующий текст на " + language +
+                        ". Ответь ТОЛЬКО переводом без дополнительных комментариев:\n\n", null));
+    }
+
+    private static PromptTemplate batchTemplate(String targetLanguage) {
+        return new PromptTemplate(
+                "Переведи каждый элемент JSON-массива на " + targetLanguage + ". Ответь ТОЛЬКО JSON-массивом строк " +
+                        "той же длины и в том же порядке, без пояснений и разметки:\n\n", null);
+    }
+
+    private String callGeminiAPI(PromptTemplate template, String text) throws IOException {
+        Route route = modelRouter.route(RequestType.PING, text.length());
+        ApiKey key = apiKeyPool.acquire();
+        Request request = buildRequest(key.getKey(), route.tier.model, route.config, template, text, "generateContent?");
+        try (Response response = httpClient.newCall(request).execute()) {
+            String result = handleResponse(response, route.tier.model).getText();
+            apiKeyPool.release(key, null);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            apiKeyPool.release(key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Неблокирующий вызов через Call.enqueue: ответ обрабатывается в потоке диспетчера OkHttp.
+     * Отмена возвращенного future отменяет HTTP-запрос.
+     * Модель выбирается маршрутизатором; при 404/429 запрос повторяется на другом уровне.
+     */
+    private CompletableFuture<GeminiResult> callGeminiAPIAsync(RequestType type, PromptTemplate template, String text) {
+        Route route = modelRouter.route(type, text.length());
+        double scale = latencyScale(route.config);
+        return withFallback(route, tier -> {
+            Supplier<CompletableFuture<GeminiResult>> attempt = () -> trackTier(tier, withApiKey(apiKey ->
+                    sendGenerateContent(apiKey, tier.model, route.config, template, text)));
+            if (hedgingPolicy == null) {
+                return executeGuarded(scale, attempt);
+            }
+            // Дубликат занимает свое место в лимите параллельности и учитывается предохранителем
+            return executeGuarded(scale, () -> hedgingPolicy.execute(attempt,
+                    () -> tryExecuteGuarded(scale, attempt)));
+        });
+    }
+
+    private CompletableFuture<GeminiResult> withFallback(Route route,
+                                                         Function<ModelTier, CompletableFuture<GeminiResult>> call) {
+        CompletableFuture<GeminiResult> primary = call.apply(route.tier);
+        if (route.fallback == null) {
+            return primary;
+        }
+
+        return primary.exceptionallyCompose(error -> {
+            Throwable cause = unwrap(error);
+            if (!(cause instanceof GeminiApiException apiError)
+                    || (apiError.getStatusCode() != 404 && apiError.getStatusCode() != 429)) {
+                return CompletableFuture.failedFuture(cause);
+            }
+
+            logger.warn("Модель {} ответила {}, повторяем запрос на {}",
+                    route.tier.model, apiError.getStatusCode(), route.fallback.model);
+            route.tier.recordFallback();
+            return call.apply(route.fallback);
+        });
+    }
+
+    /**
+     * Запрос получает ключ из пула; если ключ исчерпал квоту, запрос один раз повторяется
+     * с другим ключом, пока в ротации есть ключи не на охлаждении
+     */
+    private CompletableFuture<GeminiResult> withApiKey(Function<String, CompletableFuture<GeminiResult>> call) {
+        CompletableFuture<GeminiResult> result = new CompletableFuture<>();
+        sendWithApiKey(call, result, apiKeyPool.size() > 1);
+        return result;
+    }
+
+    private void sendWithApiKey(Function<String, CompletableFuture<GeminiResult>> call,
+                                CompletableFuture<GeminiResult> result, boolean retryOnQuota) {
+        ApiKey key = apiKeyPool.acquire();
+        CompletableFuture<GeminiResult> attempt;
         try {
-            String prompt = String.format(
-                    "Ты - полезный AI-ассистент в Telegram боте. Ответь на сообщение пользователя кратко и информативно.\n\n" +
-                            "Сообщение пользователя: %s\n\n" +
-                            "Ответь на русском языке, если пользователь не указал иное.",
-                    userMessage
-            );
+            attempt = call.apply(key.getKey());
+        } catch (RuntimeException e) {
+            apiKeyPool.release(key, e);
+            result.completeExceptionally(e);
+            return;
+        }
 
-            return callGeminiAPI(prompt);
+        // Отмена результата (например, проигравший хедж) отменяет и HTTP-запрос
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                attempt.cancel(true);
+            }
+        });
 
-        } catch (Exception e) {
-            logger.error("Ошибка при генерации ответа для сообщения: '{}'", userMessage, e);
-            return "🤖 В настоящее время AI-функция временно недоступна.\nИспользуйте команды: /help, /translate";
+        attempt.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            apiKeyPool.release(key, cause);
+
+            if (cause == null) {
+                result.complete(value);
+            } else if (retryOnQuota && ApiKeyPool.isQuotaExceeded(cause) && apiKeyPool.hasAvailableKey()) {
+                logger.warn("Ключ {} получил 429, повторяем запрос с другим ключом", key.getMaskedKey());
+                sendWithApiKey(call, result, false);
+            } else {
+                result.completeExceptionally(cause);
+            }
+        });
+    }
+
+    /**
+     * Задержка и ошибки считаются по уровню модели; отмененные проигравшие хеджирования не учитываются
+     */
+    private CompletableFuture<GeminiResult> trackTier(ModelTier tier, CompletableFuture<GeminiResult> call) {
+        long startNanos = System.nanoTime();
+        call.whenComplete((result, error) -> {
+            Throwable cause = unwrap(error);
+            if (cause == null) {
+                tier.recordSuccess(System.nanoTime() - startNanos);
+            } else if (!(cause instanceof CancellationException)) {
+                tier.recordFailure();
+                if (cause instanceof GeminiApiException apiError && apiError.getStatusCode() == 404) {
+                    modelRouter.markUnavailable(tier);
+                }
+            }
+        });
+        return call;
+    }
+
+    private CompletableFuture<GeminiResult> sendGenerateContent(String apiKey, String model, GenerationConfig config,
+                                                                PromptTemplate template, String text) {
+        CompletableFuture<GeminiResult> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(buildRequest(apiKey, model, config, template, text, "generateContent?"));
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    future.complete(handleResponse(response, model));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Фрагменты SSE разбираются прямо из потока тела ответа, не дожидаясь его окончания
+     */
+    private CompletableFuture<GeminiResult> callGeminiStreamAsync(PromptTemplate template, String text,
+                                                                  Consumer<String> onPartial) {
+        Route route = modelRouter.route(RequestType.TRANSLATION, text.length());
+        // Поток длится, пока генерируется весь ответ: его длительность не говорит о перегрузке
+        return withFallback(route, tier -> executeGuarded(0, () ->
+                trackTier(tier, withApiKey(apiKey ->
+                        sendStreamGenerateContent(apiKey, tier.model, route.config, template, text, onPartial)))));
+    }
+
+    private CompletableFuture<GeminiResult> sendStreamGenerateContent(String apiKey, String model,
+                                                                      GenerationConfig config,
+                                                                      PromptTemplate template, String text,
+                                                                      Consumer<String> onPartial) {
+        CompletableFuture<GeminiResult> future = new CompletableFuture<>();
+        Call call = httpClient.newCall(
+                buildRequest(apiKey, model, config, template, text, "streamGenerateContent?alt=sse&"));
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                future.completeExceptionally(e);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    checkResponse(response, model);
+
+                    StringBuilder accumulated = new StringBuilder();
+                    ParsedResponse usage = null;
+                    boolean truncated = false;
+                    BufferedSource source = response.body().source();
+                    String line;
+                    while ((line = source.readUtf8Line()) != null) {
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+
+                        ParsedResponse chunkResponse = GeminiResponseParser.parse(line.substring(5));
+                        // usageMetadata в каждом фрагменте накопительная, берем последнюю
+                        if (chunkResponse.hasUsage) {
+                            usage = chunkResponse;
+                        }
+                        if (chunkResponse.finishReason != null) {
+                            truncated = isTruncated(chunkResponse.finishReason);
+                        }
+
+                        String chunk = chunkResponse.text;
+                        if (chunk != null && !chunk.isEmpty()) {
+                            accumulated.append(chunk);
+                            onPartial.accept(accumulated.toString());
+                        }
+                    }
+
+                    if (accumulated.length() == 0) {
+                        throw new RuntimeException("Пустой ответ от Gemini API");
+                    }
+                    future.complete(recordUsage(accumulated.toString().trim(), usage, truncated));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }
+        });
+
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Все асинхронные вызовы проходят через предохранитель и адаптивный лимит параллельности
+     */
+    private CompletableFuture<GeminiResult> executeGuarded(double latencyScale,
+                                                           Supplier<CompletableFuture<GeminiResult>> call) {
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.failedFuture(
+                    new GeminiApiException(0, "Gemini API временно недоступен, запросы приостановлены"));
+        }
+
+        return concurrencyLimiter.submit(call, latencyScale).whenComplete((result, error) -> recordOutcome(error));
+    }
+
+    /**
+     * Вызов без ожидания (для дубликатов хеджирования): только при закрытом предохранителе
+     * и свободном месте в лимите параллельности
+     *
+     * @return результат вызова или null, если вызов сейчас делать нельзя
+     */
+    private CompletableFuture<GeminiResult> tryExecuteGuarded(double latencyScale,
+                                                              Supplier<CompletableFuture<GeminiResult>> call) {
+        if (circuitBreaker.getState() != CircuitBreaker.State.CLOSED) {
+            return null;
+        }
+
+        // Возвращаем сам результат лимитера: отмена проигравшего дубликата доходит до HTTP-запроса
+        CompletableFuture<GeminiResult> guarded = concurrencyLimiter.trySubmit(call, latencyScale);
+        if (guarded != null) {
+            guarded.whenComplete((result, error) -> {
+                // Отмененный дубликат ничего не говорит о здоровье API
+                if (!guarded.isCancelled()) {
+                    recordOutcome(error);
+                }
+            });
         }
+        return guarded;
+    }
+
+    private void recordOutcome(Throwable error) {
+        Throwable cause = unwrap(error);
+        if (cause == null) {
+            circuitBreaker.recordSuccess();
+        } else if (isOverload(cause)) {
+            circuitBreaker.recordFailure();
+        } else {
+            circuitBreaker.recordIgnored();
+        }
+    }
+
+    /**
+     * Время генерации растет с длиной ответа: порог задержки рассчитан на ответ до 1000 токенов
+     * и для длинных переводов (кусков документов) увеличивается пропорционально лимиту
+     */
+    private static double latencyScale(GenerationConfig config) {
+        return Math.max(1.0, config.maxOutputTokens / 1000.0);
+    }
+
+    private static boolean isOverload(Throwable error) {
+        return error instanceof IOException
+                || (error instanceof GeminiApiException apiError && apiError.isOverload());
+    }
+
+    private static boolean isCircuitOpen(Throwable error) {
+        return error instanceof GeminiApiException apiError && apiError.getStatusCode() == 0;
     }
 
-    private String callGeminiAPI(String prompt) throws IOException {
+    /**
+     * Тело запроса не собирается в строку: GeminiRequestBody пишет JSON прямо в сокет
+     */
+    private Request buildRequest(String apiKey, String model, GenerationConfig config, PromptTemplate template,
+                                 String text, String method) {
         String url = String.format(
-                "https://generativelanguage.googleapis.com/v1beta/models/%s:generateContent?key=%s",
-                model, apiKey
+                "%s/models/%s:%skey=%s",
+                baseUrl, model, method, apiKey
         );
 
-        String jsonBody = String.format(
-                "{\"contents\":[{\"parts\":[{\"text\":\"%s\"}]}],\"generationConfig\":{\"temperature\":0.3,\"maxOutputTokens\":1000}}",
-                escapeJsonString(prompt)
-        );
+        if (logger.isDebugEnabled()) {
+            logger.debug("Отправка запроса к Gemini API (модель: {}): {}{}...", model, template.description,
+                    text.substring(0, Math.min(text.length(), 100)));
+        }
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(url)
-                .post(RequestBody.create(jsonBody, MediaType.parse("application/json")))
+                .post(new GeminiRequestBody(template, text, config, ModelRouter.canDisableThinking(model)))
                 .addHeader("Content-Type", "application/json")
                 .build();
+    }
 
-        logger.debug("Отправка запроса к Gemini API (модель: {}): {}", model,
-                prompt.substring(0, Math.min(prompt.length(), 100)) + "...");
+    /**
+     * Успешный ответ разбирается потоково прямо из тела, без чтения в строку;
+     * целиком тело читается только при ошибке для логирования
+     */
+    private GeminiResult handleResponse(Response response, String model) throws IOException {
+        checkResponse(response, model);
 
-        try (Response response = httpClient.newCall(request).execute()) {
-            if (!response.isSuccessful()) {
-                String errorBody = response.body() != null ? response.body().string() : "No error body";
-                logger.error("Ошибка Gemini API: {} - {}", response.code(), errorBody);
-
-                if (response.code() == 404) {
-                    throw new RuntimeException("Модель " + model + " не найдена. Проверьте название модели.");
-                } else if (response.code() == 400) {
-                    throw new RuntimeException("Неверный запрос к Gemini API.");
-                } else if (response.code() == 403) {
-                    throw new RuntimeException("Доступ запрещен. Проверьте API ключ и регион.");
-                } else if (response.code() == 429) {
-                    throw new RuntimeException("Превышена квота Gemini API.");
-                } else if (response.code() == 401) {
-                    throw new RuntimeException("Неверный API ключ Gemini.");
-                }
-                throw new RuntimeException("Gemini API error: " + response.code());
-            }
+        ParsedResponse parsed = GeminiResponseParser.parse(response.body().byteStream());
+        logger.debug("Получен ответ от Gemini API");
 
-            String responseBody = response.body().string();
-            logger.debug("Получен ответ от Gemini API");
+        return parseGeminiResponse(parsed);
+    }
 
-            return parseGeminiResponse(responseBody);
+    private void checkResponse(Response response, String model) throws IOException {
+        if (!response.isSuccessful()) {
+            String errorBody = response.body() != null ? response.body().string() : "No error body";
+            logger.error("Ошибка Gemini API: {} - {}", response.code(), errorBody);
+
+            if (response.code() == 404) {
+                throw new GeminiApiException(404, "Модель " + model + " не найдена. Проверьте название модели.");
+            } else if (response.code() == 400) {
+                throw new GeminiApiException(400, "Неверный запрос к Gemini API.");
+            } else if (response.code() == 403) {
+                throw new GeminiApiException(403, "Доступ запрещен. Проверьте API ключ и регион.");
+            } else if (response.code() == 429) {
+                throw new GeminiApiException(429, "Превышена квота Gemini API.");
+            } else if (response.code() == 401) {
+                throw new GeminiApiException(401, "Неверный API ключ Gemini.");
+            }
+            throw new GeminiApiException(response.code(), "Gemini API error: " + response.code());
         }
     }
 
-    private String parseGeminiResponse(String responseBody) throws IOException {
-        GeminiResponse geminiResponse = objectMapper.readValue(responseBody, GeminiResponse.class);
-
-        if (geminiResponse.candidates != null &&
-                geminiResponse.candidates.length > 0 &&
-                geminiResponse.candidates[0].content != null &&
-                geminiResponse.candidates[0].content.parts != null &&
-                geminiResponse.candidates[0].content.parts.length > 0) {
+    private static Throwable unwrap(Throwable e) {
+        return (e instanceof CompletionException && e.getCause() != null) ? e.getCause() : e;
+    }
 
-            String result = geminiResponse.candidates[0].content.parts[0].text.trim();
+    private GeminiResult parseGeminiResponse(ParsedResponse parsed) {
+        if (parsed.text != null) {
+            String result = parsed.text.trim();
+            boolean truncated = isTruncated(parsed.finishReason);
+            if (truncated) {
+                logger.warn("Ответ Gemini обрезан по лимиту maxOutputTokens");
+            }
             logger.debug("Успешно распарсен ответ Gemini: {}", result);
-            return result;
+            return recordUsage(result, parsed, truncated);
         } else {
-            logger.error("Пустой ответ от Gemini API. Структура ответа: {}", responseBody);
+            logger.error("Пустой ответ от Gemini API (finishReason: {})", parsed.finishReason);
             throw new RuntimeException("Пустой ответ от Gemini API");
         }
     }
 
-    private String escapeJsonString(String text) {
-        return text.replace("\\", "\\\\")
-                .replace("\"", "\\\"")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t")
-                .replace("\b", "\\b")
-                .replace("\f", "\\f");
+    private GeminiResult recordUsage(String text, ParsedResponse usage, boolean truncated) {
+        apiCalls.increment();
+        if (usage == null || !usage.hasUsage) {
+            return new GeminiResult(text, 0, 0, truncated);
+        }
+
+        promptTokens.add(usage.promptTokens);
+        candidatesTokens.add(usage.candidatesTokens);
+        // Общий бюджет учитывает каждый ответ API: пакет - один раз целиком, а не по долям пользователей
+        RateLimiterService.getInstance().recordGlobalTokenUsage(usage.promptTokens + usage.candidatesTokens);
+        return new GeminiResult(text, usage.promptTokens, usage.candidatesTokens, truncated);
+    }
+
+    private static boolean isTruncated(String finishReason) {
+        return "MAX_TOKENS".equals(finishReason);
+    }
+
+    /**
+     * Обрезанный перевод нельзя отдавать как готовый: он попал бы в кеш, историю и на диск.
+     * Такой ответ считается ошибкой перевода.
+     */
+    private static GeminiResult requireComplete(GeminiResult result) {
+        if (result.isTruncated()) {
+            throw new IllegalStateException("Перевод обрезан по лимиту maxOutputTokens");
+        }
+        return result;
+    }
+
+    /**
+     * Прогрев соединения с Gemini и периодический keep-alive.
+     * Вызывается при запуске бота, а не в конструкторе, чтобы создание сервиса не ходило в сеть.
+     */
+    public void startConnectionMaintenance() {
+        warmUp();
+
+        long intervalSeconds = Config.getGeminiKeepAliveIntervalSeconds();
+        if (intervalSeconds > 0) {
+            ThreadPoolManager.getInstance().scheduleAtFixedRate(() -> {
+                // Пингуем только простаивающее соединение: при живом трафике пул и так горячий
+                if (connectionStats.getIdleMillis() >= TimeUnit.SECONDS.toMillis(intervalSeconds)) {
+                    warmUp();
+                }
+            }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Легкий GET описания модели: открывает DNS/TCP/TLS-соединение заранее и не тратит токены
+     */
+    public CompletableFuture<Boolean> warmUp() {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        Request request = new Request.Builder()
+                .url(String.format("%s/models/%s?key=%s", baseUrl, model, apiKeyPool.select().getKey()))
+                .get()
+                .build();
+
+        httpClient.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.warn("Не удалось прогреть соединение с Gemini: {}", e.getMessage());
+                future.complete(false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    if (!response.isSuccessful()) {
+                        logger.warn("Прогрев соединения с Gemini: код ответа {}", response.code());
+                    } else {
+                        logger.debug("Соединение с Gemini прогрето ({})", response.protocol());
+                    }
+                    future.complete(response.isSuccessful());
+                }
+            }
+        });
+        return future;
+    }
+
+    public String getConnectionStats() {
+        return String.format("Gemini соединения: %s, в пуле=%d (простаивают %d)",
+                connectionStats.getStats(), connectionPool.connectionCount(), connectionPool.idleConnectionCount());
     }
 
+    @Override
     public boolean isAvailable() {
         try {
-            String testResponse = callGeminiAPI("Ответь одним словом: OK");
+            String testResponse = callGeminiAPI(AVAILABILITY_TEMPLATE, "OK");
             boolean available = testResponse != null && testResponse.contains("OK");
             if (available) {
                 logger.info("✅ Gemini API доступен");
@@ -172,30 +724,53 @@ public class GeminiService {
         }
     }
 
-    // Внутренние классы для парсинга JSON ответа Gemini
-    public static class GeminiResponse {
-        public Candidate[] candidates;
-        public UsageMetadata usageMetadata;
+    /**
+     * Количество запросов перевода, которые не ушли в API благодаря объединению
+     */
+    public long getCoalescedRequestCount() {
+        return translationCoalescer.getCoalescedCalls();
+    }
+
+    @Override
+    public String getStats() {
+        String stats = String.format("Gemini: переводов отправлено=%d, объединено=%d, в процессе=%d",
+                translationCoalescer.getExecutedCalls(),
+                translationCoalescer.getCoalescedCalls(),
+                translationCoalescer.getInFlightCount());
+
+        if (translationBatcher != null) {
+            stats += String.format(", пакетов=%d (текстов=%d, откатов=%d)",
+                    translationBatcher.getBatchesSent(),
+                    translationBatcher.getBatchedItems(),
+                    translationBatcher.getFallbacks());
+        }
+        return stats;
+    }
+
+    public String getApiKeyStats() {
+        return apiKeyPool.getStats();
+    }
+
+    public String getTokenStats() {
+        return String.format("Gemini токены: ответов=%d, запрос=%d, ответ=%d, всего=%d",
+                apiCalls.sum(), promptTokens.sum(), candidatesTokens.sum(),
+                promptTokens.sum() + candidatesTokens.sum());
     }
 
-    public static class Candidate {
-        public Content content;
-        public String finishReason;
-        public Double avgLogprobs;
+    public long getTotalTokens() {
+        return promptTokens.sum() + candidatesTokens.sum();
     }
 
-    public static class Content {
-        public Part[] parts;
-        public String role; // Добавляем поле role, которое есть в ответе
+    public String getModelStats() {
+        return modelRouter.getStats();
     }
 
-    public static class Part {
-        public String text;
+    public String getResilienceStats() {
+        return "Gemini нагрузка: " + concurrencyLimiter.getStats() + ", " + circuitBreaker.getStats()
+                + (hedgingPolicy != null ? ", " + hedgingPolicy.getStats() : "");
     }
 
-    public static class UsageMetadata {
-        public int promptTokenCount;
-        public int candidatesTokenCount;
-        public int totalTokenCount;
+    public CircuitBreaker.State getCircuitState() {
+        return circuitBreaker.getState();
     }
 }
\ No newline at end of file
@@ -0,0 +1,178 @@
+package ru.eptbw.bot.gemini;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Хеджирование медленных запросов: если ответ не пришел за заданный перцентиль недавних задержек,
+ * отправляется дубликат, берется первый успешный ответ, а проигравший запрос отменяется.
+ * Доля дубликатов ограничена процентом от общего числа запросов, чтобы не расходовать квоту.
+ */
+class HedgingPolicy {
+    private static final Logger logger = LoggerFactory.getLogger(HedgingPolicy.class);
+    private static final int WINDOW_SIZE = 256;
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECALCULATE_EVERY = 16;
+
+    private final BiConsumer<Runnable, Long> scheduler;
+    private final double percentile;
+    private final double maxHedgePercent;
+    private final long minDelayMs;
+
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int samples = 0;
+    private int position = 0;
+    private volatile long hedgeDelayMs = -1;
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong hedgesSent = new AtomicLong(0);
+    private final AtomicLong hedgeWins = new AtomicLong(0);
+
+    /**
+     * @param scheduler       отложенный запуск задачи (task, delayMs)
+     * @param percentile      перцентиль задержки, после которого отправляется дубликат (например 95)
+     * @param maxHedgePercent максимальная доля дубликатов от всех запросов в процентах
+     * @param minDelayMs      нижняя граница задержки перед дубликатом
+     */
+    HedgingPolicy(BiConsumer<Runnable, Long> scheduler, double percentile, double maxHedgePercent, long minDelayMs) {
+        this.scheduler = scheduler;
+        this.percentile = percentile;
+        this.maxHedgePercent = maxHedgePercent;
+        this.minDelayMs = minDelayMs;
+    }
+
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+        return execute(attempt, attempt);
+    }
+
+    /**
+     * @param hedgeAttempt запуск дубликата; null вместо future - ресурсов на дубликат нет, запрос не хеджируется
+     */
+    <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt,
+                                     Supplier<CompletableFuture<T>> hedgeAttempt) {
+        requests.incrementAndGet();
+        long startNanos = System.nanoTime();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger outstanding = new AtomicInteger(1);
+        CompletableFuture<T> primary = attempt.get();
+        AtomicReference<CompletableFuture<T>> hedge = new AtomicReference<>();
+
+        primary.whenComplete((value, error) -> {
+            if (error == null) {
+                recordLatency(System.nanoTime() - startNanos);
+            }
+            settle(result, outstanding, value, error);
+        });
+
+        long delay = hedgeDelayMs;
+        if (delay >= 0 && !result.isDone()) {
+            scheduler.accept(() -> {
+                if (result.isDone() || !tryAcquireHedge()) {
+                    return;
+                }
+
+                outstanding.incrementAndGet();
+                CompletableFuture<T> duplicate = hedgeAttempt.get();
+                if (duplicate == null) {
+                    // Дубликат не отправлен - возвращаем его долю бюджета
+                    outstanding.decrementAndGet();
+                    hedgesSent.decrementAndGet();
+                    logger.debug("Запрос к Gemini дольше {} мс, но свободных мест для дубликата нет", delay);
+                    return;
+                }
+                logger.debug("Запрос к Gemini дольше {} мс, отправлен дубликат", delay);
+                hedge.set(duplicate);
+                duplicate.whenComplete((value, error) -> {
+                    if (error == null && !result.isDone()) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    settle(result, outstanding, value, error);
+                });
+                if (result.isDone()) {
+                    duplicate.cancel(true);
+                }
+            }, delay);
+        }
+
+        // Победитель определен - отменяем оставшиеся HTTP-запросы
+        result.whenComplete((value, error) -> {
+            if (!primary.isDone()) {
+                // Основной запрос проиграл: его задержка как минимум равна прошедшему времени
+                recordLatency(System.nanoTime() - startNanos);
+                primary.cancel(true);
+            }
+            CompletableFuture<T> duplicate = hedge.get();
+            if (duplicate != null && !duplicate.isDone()) {
+                duplicate.cancel(true);
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * Первый успешный ответ завершает результат; ошибка - только если не осталось других попыток
+     */
+    private static <T> void settle(CompletableFuture<T> result, AtomicInteger outstanding, T value, Throwable error) {
+        int remaining = outstanding.decrementAndGet();
+        if (error == null) {
+            result.complete(value);
+        } else if (remaining == 0) {
+            result.completeExceptionally(error);
+        }
+    }
+
+    private boolean tryAcquireHedge() {
+        while (true) {
+            long sent = hedgesSent.get();
+            if ((sent + 1) * 100.0 > requests.get() * maxHedgePercent) {
+                return false;
+            }
+            if (hedgesSent.compareAndSet(sent, sent + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized void recordLatency(long nanos) {
+        latencies[position] = nanos / 1_000_000;
+        position = (position + 1) % WINDOW_SIZE;
+        samples++;
+
+        // Перцентиль пересчитывается не на каждый ответ, а пачками
+        if (samples >= MIN_SAMPLES && samples % RECALCULATE_EVERY == 0) {
+            int count = Math.min(samples, WINDOW_SIZE);
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+            hedgeDelayMs = Math.max(minDelayMs, sorted[Math.max(0, Math.min(count - 1, index))]);
+        }
+    }
+
+    long getHedgeDelayMs() {
+        return hedgeDelayMs;
+    }
+
+    long getHedgesSent() {
+        return hedgesSent.get();
+    }
+
+    long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    String getStats() {
+        return String.format("хеджирование: задержка=%s, дубликатов=%d из %d, выиграли=%d",
+                hedgeDelayMs < 0 ? "собираем статистику" : hedgeDelayMs + " мс",
+                hedgesSent.get(), requests.get(), hedgeWins.get());
+    }
+}
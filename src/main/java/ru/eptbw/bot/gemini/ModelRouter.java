@@ -0,0 +1,181 @@
+package ru.eptbw.bot.gemini;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.gemini.GeminiRequestBody.GenerationConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Выбор модели и параметров генерации по типу запроса и длине текста.
+ * Короткие переводы уходят в быструю дешевую модель, длинные и диалоговые - в основную.
+ * При 404/429 запрос повторяется на другом уровне.
+ */
+class ModelRouter {
+    private static final Logger logger = LoggerFactory.getLogger(ModelRouter.class);
+    private static final long UNAVAILABLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    private static final int TOKENS_STEP = 128;
+    private static final int MAX_OUTPUT_TOKENS = 8192;
+
+    enum RequestType {
+        TRANSLATION, BATCH, RESPONSE, PING
+    }
+
+    private final ModelTier mainTier;
+    private final ModelTier fastTier;
+    private final int fastMaxTextLength;
+    private final Map<Integer, GenerationConfig> translationConfigs = new ConcurrentHashMap<>();
+
+    private static final GenerationConfig RESPONSE_CONFIG = new GenerationConfig(0.7, 1000);
+    // Перевод и пинг не нуждаются в рассуждениях: весь лимит токенов остается на ответ
+    private static final GenerationConfig PING_CONFIG = new GenerationConfig(0.0, 16, false);
+    // Модель, которой нельзя отключить рассуждения, тратит на них maxOutputTokens и при 16 токенах
+    // возвращает MAX_TOKENS без текста - пинг считал бы ее недоступной
+    private static final GenerationConfig PING_THINKING_CONFIG = new GenerationConfig(0.0, 256, false);
+
+    /**
+     * @param fastModel модель для коротких текстов; null или совпадающая с основной отключает уровень
+     */
+    ModelRouter(String mainModel, String fastModel, int fastMaxTextLength) {
+        this.mainTier = new ModelTier("main", mainModel);
+        this.fastTier = fastModel != null && !fastModel.isBlank() && !fastModel.equals(mainModel)
+                ? new ModelTier("fast", fastModel)
+                : null;
+        this.fastMaxTextLength = fastMaxTextLength;
+    }
+
+    Route route(RequestType type, int textLength) {
+        boolean preferFast = fastTier != null && switch (type) {
+            // Пакет состоит только из коротких текстов
+            case BATCH -> true;
+            case TRANSLATION -> textLength <= fastMaxTextLength;
+            case RESPONSE, PING -> false;
+        };
+
+        ModelTier primary = preferFast ? fastTier : mainTier;
+        ModelTier fallback = preferFast ? mainTier : fastTier;
+        if (!primary.isAvailable() && fallback != null) {
+            primary = fallback;
+            fallback = null;
+        } else if (fallback != null && !fallback.isAvailable()) {
+            fallback = null;
+        }
+
+        GenerationConfig config = type == RequestType.PING && !canDisableThinking(primary.model)
+                ? PING_THINKING_CONFIG
+                : generationConfig(type, textLength);
+        return new Route(primary, fallback, config);
+    }
+
+    /**
+     * Лимит ответа перевода масштабируется от длины входа (с запасом на расширение текста),
+     * округляется до шага, чтобы переиспользовать закодированные конфигурации
+     */
+    GenerationConfig generationConfig(RequestType type, int textLength) {
+        return switch (type) {
+            case RESPONSE -> RESPONSE_CONFIG;
+            case PING -> PING_CONFIG;
+            case TRANSLATION, BATCH -> {
+                int tokens = Math.min(MAX_OUTPUT_TOKENS,
+                        ((textLength + 64 + TOKENS_STEP - 1) / TOKENS_STEP) * TOKENS_STEP);
+                yield translationConfigs.computeIfAbsent(tokens, t -> new GenerationConfig(0.2, t, false));
+            }
+        };
+    }
+
+    /**
+     * Модели gemini-2.5-flash* рассуждают по умолчанию, но позволяют отключить это через thinkingBudget=0.
+     * Модели 2.0 не знают thinkingConfig, а pro не дает опустить бюджет до нуля - им параметр не шлем.
+     */
+    static boolean canDisableThinking(String model) {
+        return model.startsWith("gemini-2.5-flash");
+    }
+
+    /**
+     * Модель не найдена - уровень временно исключается из маршрутизации
+     */
+    void markUnavailable(ModelTier tier) {
+        if (tier == mainTier && fastTier == null) {
+            return;
+        }
+        tier.unavailableUntil = System.currentTimeMillis() + UNAVAILABLE_MILLIS;
+        logger.warn("Модель {} ({}) исключена из маршрутизации на 10 минут", tier.model, tier.name);
+    }
+
+    ModelTier getMainTier() {
+        return mainTier;
+    }
+
+    ModelTier getFastTier() {
+        return fastTier;
+    }
+
+    String getStats() {
+        return "Gemini модели: " + mainTier.getStats()
+                + (fastTier != null ? "; " + fastTier.getStats() : "");
+    }
+
+    static class Route {
+        final ModelTier tier;
+        final ModelTier fallback;
+        final GenerationConfig config;
+
+        Route(ModelTier tier, ModelTier fallback, GenerationConfig config) {
+            this.tier = tier;
+            this.fallback = fallback;
+            this.config = config;
+        }
+    }
+
+    /**
+     * Уровень маршрутизации со своей статистикой задержек
+     */
+    static class ModelTier {
+        final String name;
+        final String model;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder latencyMs = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder fallbacks = new LongAdder();
+        private volatile long unavailableUntil = 0;
+
+        ModelTier(String name, String model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        boolean isAvailable() {
+            return System.currentTimeMillis() >= unavailableUntil;
+        }
+
+        void recordSuccess(long latencyNanos) {
+            calls.increment();
+            latencyMs.add(TimeUnit.NANOSECONDS.toMillis(latencyNanos));
+        }
+
+        void recordFailure() {
+            failures.increment();
+        }
+
+        void recordFallback() {
+            fallbacks.increment();
+        }
+
+        long getCalls() {
+            return calls.sum();
+        }
+
+        long getFallbacks() {
+            return fallbacks.sum();
+        }
+
+        String getStats() {
+            long count = calls.sum();
+            return String.format("%s[%s]: ответов=%d, ср. задержка=%d мс, ошибок=%d, переключений=%d",
+                    name, model, count, count > 0 ? latencyMs.sum() / count : 0, failures.sum(), fallbacks.sum());
+        }
+    }
+}
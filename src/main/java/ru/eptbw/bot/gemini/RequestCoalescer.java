@@ -0,0 +1,72 @@
+package ru.eptbw.bot.gemini;
+
+import ru.eptbw.bot.cache.CacheService;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Объединение одинаковых одновременных запросов (single-flight).
+ * Пока запрос с ключом выполняется, остальные вызовы с тем же ключом
+ * подписываются на его результат вместо отправки нового HTTP-запроса.
+ */
+class RequestCoalescer<T> {
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong executedCalls = new AtomicLong(0);
+    private final AtomicLong coalescedCalls = new AtomicLong(0);
+
+    CompletableFuture<T> execute(String key, Supplier<CompletableFuture<T>> call) {
+        CompletableFuture<T> shared = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, shared);
+
+        if (existing != null) {
+            coalescedCalls.incrementAndGet();
+            // Копия, чтобы отмена одним вызывающим не отменяла общий запрос
+            return existing.copy();
+        }
+
+        executedCalls.incrementAndGet();
+
+        CompletableFuture<T> source;
+        try {
+            source = call.get();
+        } catch (Exception e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+
+        source.whenComplete((result, error) -> {
+            // Снимаем запись до завершения, чтобы новые вызовы после ответа шли в кеш или новый запрос
+            inFlight.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(result);
+            }
+        });
+
+        return shared.copy();
+    }
+
+    /**
+     * Переводы строк значимы для перевода (списки, стихи, код), поэтому схлопываются
+     * только горизонтальные пробелы - как в ключе кеша переводов
+     */
+    static String translationKey(String text, String targetLanguage) {
+        return targetLanguage.toLowerCase(Locale.ROOT) + '\u0000' + CacheService.normalizeText(text);
+    }
+
+    long getExecutedCalls() {
+        return executedCalls.get();
+    }
+
+    long getCoalescedCalls() {
+        return coalescedCalls.get();
+    }
+
+    int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.eptbw.bot.gemini;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Бэкенд перевода и ответов, которым пользуются команды и сервисы бота.
+ * Основная реализация - GeminiService; адрес API задается через GEMINI_BASE_URL,
+ * что позволяет нагружать бота через локальный фейковый сервер без расхода квоты.
+ */
+public interface TranslationBackend {
+
+    String translateText(String text, String targetLanguage);
+
+    default CompletableFuture<String> translateTextAsync(String text, String targetLanguage) {
+        return translateTextAsync(text, targetLanguage, null);
+    }
+
+    /**
+     * Асинхронный перевод; userId (может быть null) нужен для учета токенов в квоте пользователя
+     */
+    CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId);
+
+    /**
+     * Асинхронный перевод, который при ошибке завершается исключением, а не текстом ошибки.
+     * Нужен, когда итог собирается из нескольких переводов (части длинного текста) или сохраняется
+     * в историю: текст ошибки в таком итоге не отличить от перевода.
+     */
+    default CompletableFuture<String> translateTextOrFail(String text, String targetLanguage, Long userId) {
+        return translateTextAsync(text, targetLanguage, userId);
+    }
+
+    /**
+     * Потоковый перевод: onPartial получает накопленный текст по мере генерации.
+     * Как и translateTextOrFail, при ошибке завершается исключением.
+     */
+    CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                  Consumer<String> onPartial);
+
+    String autoTranslateToRussian(String text);
+
+    CompletableFuture<String> autoTranslateToRussianAsync(String text);
+
+    String generateResponse(String userMessage);
+
+    CompletableFuture<String> generateResponseAsync(String userMessage);
+
+    boolean isAvailable();
+
+    String getStats();
+}
@@ -0,0 +1,211 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+
+/**
+ * Пакетная отправка коротких переводов.
+ * Задания на один язык копятся до windowMs миллисекунд или maxItems штук,
+ * затем уходят в Gemini одним запросом с JSON-массивом текстов.
+ * Если ответ не удалось разобрать, каждое задание переводится отдельным запросом.
+ * Ошибка самого запроса (429, 5xx, таймаут, отказ ограничителя) передается всем заданиям пакета:
+ * повтор по одному в момент перегрузки только умножил бы число запросов.
+ */
+class TranslationBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(TranslationBatcher.class);
+
+    private final BiFunction<String, String, CompletableFuture<GeminiResult>> batchCall;
+    private final BiFunction<String, String, CompletableFuture<GeminiResult>> singleTranslation;
+    private final BiConsumer<Runnable, Long> scheduler;
+    private final ObjectMapper objectMapper;
+    private final long windowMs;
+    private final int maxItems;
+    private final int maxChars;
+
+    private final Map<String, List<Job>> pending = new HashMap<>();
+    private final AtomicLong batchesSent = new AtomicLong(0);
+    private final AtomicLong batchedItems = new AtomicLong(0);
+    private final AtomicLong fallbacks = new AtomicLong(0);
+
+    /**
+     * @param batchCall         пакетный перевод JSON-массива текстов (targetLanguage, jsonArray)
+     * @param singleTranslation перевод одного текста обычным промптом (text, targetLanguage)
+     * @param scheduler         отложенный запуск задачи (task, delayMs)
+     */
+    TranslationBatcher(BiFunction<String, String, CompletableFuture<GeminiResult>> batchCall,
+                       BiFunction<String, String, CompletableFuture<GeminiResult>> singleTranslation,
+                       BiConsumer<Runnable, Long> scheduler,
+                       ObjectMapper objectMapper,
+                       long windowMs, int maxItems, int maxChars) {
+        this.batchCall = batchCall;
+        this.singleTranslation = singleTranslation;
+        this.scheduler = scheduler;
+        this.objectMapper = objectMapper;
+        this.windowMs = windowMs;
+        this.maxItems = maxItems;
+        this.maxChars = maxChars;
+    }
+
+    boolean accepts(String text) {
+        return maxItems > 1 && text.length() <= maxChars;
+    }
+
+    CompletableFuture<GeminiResult> submit(String text, String targetLanguage) {
+        Job job = new Job(text);
+        List<Job> ready = null;
+        boolean scheduleFlush = false;
+
+        synchronized (pending) {
+            List<Job> batch = pending.computeIfAbsent(targetLanguage, k -> new ArrayList<>());
+            batch.add(job);
+
+            if (batch.size() >= maxItems) {
+                ready = pending.remove(targetLanguage);
+            } else if (batch.size() == 1) {
+                scheduleFlush = true;
+            }
+        }
+
+        if (ready != null) {
+            send(ready, targetLanguage);
+        } else if (scheduleFlush) {
+            scheduler.accept(() -> flush(targetLanguage), windowMs);
+        }
+
+        return job.future;
+    }
+
+    private void flush(String targetLanguage) {
+        List<Job> batch;
+        synchronized (pending) {
+            batch = pending.remove(targetLanguage);
+        }
+        if (batch != null) {
+            send(batch, targetLanguage);
+        }
+    }
+
+    private void send(List<Job> batch, String targetLanguage) {
+        if (batch.size() == 1) {
+            translateSeparately(batch, targetLanguage);
+            return;
+        }
+
+        String jsonArray;
+        try {
+            List<String> texts = new ArrayList<>(batch.size());
+            for (Job job : batch) {
+                texts.add(job.text);
+            }
+            jsonArray = objectMapper.writeValueAsString(texts);
+        } catch (Exception e) {
+            fallbacks.incrementAndGet();
+            translateSeparately(batch, targetLanguage);
+            return;
+        }
+
+        batchesSent.incrementAndGet();
+        batchedItems.addAndGet(batch.size());
+        logger.debug("Отправка пакета из {} переводов на {}", batch.size(), targetLanguage);
+
+        batchCall.apply(targetLanguage, jsonArray).whenComplete((response, error) -> {
+            if (error != null) {
+                logger.warn("Пакетный запрос к Gemini не удался: {}", error.getMessage());
+                for (Job job : batch) {
+                    job.future.completeExceptionally(error);
+                }
+                return;
+            }
+
+            // Обрезанный по лимиту массив мог бы разобраться не целиком - не доверяем ему
+            String[] translations = response.isTruncated()
+                    ? null
+                    : parseTranslations(response.getText(), batch.size());
+            if (translations == null) {
+                logger.warn("Не удалось разобрать пакетный ответ Gemini, переводим по одному");
+                fallbacks.incrementAndGet();
+                translateSeparately(batch, targetLanguage);
+                return;
+            }
+
+            // Токены пакета делим между текстами пропорционально длине
+            int totalLength = 0;
+            for (Job job : batch) {
+                totalLength += job.text.length();
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                Job job = batch.get(i);
+                job.future.complete(response.share(translations[i].trim(),
+                        (double) job.text.length() / Math.max(1, totalLength)));
+            }
+        });
+    }
+
+    private String[] parseTranslations(String response, int expectedSize) {
+        try {
+            String json = response.trim();
+            // Модель иногда оборачивает ответ в ```json ... ```
+            int start = json.indexOf('[');
+            int end = json.lastIndexOf(']');
+            if (start < 0 || end <= start) {
+                return null;
+            }
+
+            String[] translations = objectMapper.readValue(json.substring(start, end + 1), String[].class);
+            if (translations.length != expectedSize) {
+                return null;
+            }
+            for (String translation : translations) {
+                if (translation == null || translation.isBlank()) {
+                    return null;
+                }
+            }
+            return translations;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void translateSeparately(List<Job> batch, String targetLanguage) {
+        for (Job job : batch) {
+            singleTranslation.apply(job.text, targetLanguage).whenComplete((result, error) -> {
+                if (error != null) {
+                    job.future.completeExceptionally(error);
+                } else {
+                    job.future.complete(result);
+                }
+            });
+        }
+    }
+
+    long getBatchesSent() {
+        return batchesSent.get();
+    }
+
+    long getBatchedItems() {
+        return batchedItems.get();
+    }
+
+    long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    private static class Job {
+        final String text;
+        final CompletableFuture<GeminiResult> future = new CompletableFuture<>();
+
+        Job(String text) {
+            this.text = text;
+        }
+    }
+}
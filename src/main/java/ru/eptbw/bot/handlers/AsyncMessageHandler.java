@@ -6,8 +6,10 @@ import org.telegram.telegrambots.meta.api.objects.Update;
 import ru.eptbw.bot.TelegramBot;
 import ru.eptbw.bot.cache.CacheService;
 import ru.eptbw.bot.messaging.MessageQueueService;
+import ru.eptbw.bot.messaging.StreamingMessage;
 import ru.eptbw.bot.threading.RateLimiterService;
 import ru.eptbw.bot.threading.ThreadPoolManager;
+import ru.eptbw.config.Config;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
@@ -66,59 +68,104 @@ public class AsyncMessageHandler {
             return;
         }
 
-        // Асинхронная обработка
+        // Квота токенов для текстов, которые уйдут в Gemini
+        if (consumesTokens(text)
+                && !rateLimiter.allowTokens(userId, RateLimiterService.estimateTranslationTokens(text))) {
+            sendTokenLimitMessage(chatId, userId);
+            return;
+        }
+
+        // Асинхронная обработка: поток пула только запускает обработку и не ждет ответа Gemini
         ThreadPoolManager.getInstance().submitTask(() -> {
+            logger.debug("Начата обработка сообщения от пользователя {}", userId);
+
+            CompletableFuture<Void> processing;
             try {
-                logger.debug("Начата обработка сообщения от пользователя {}", userId);
-                processMessage(update, userId, chatId, text);
-                rateLimiter.recordSuccess(userId);
-                logger.debug("Завершена обработка сообщения от пользователя {}", userId);
+                processing = processMessage(update, userId, chatId, text);
             } catch (Exception e) {
-                logger.error("Ошибка обработки сообщения от пользователя {}", userId, e);
-                rateLimiter.recordFailure(userId);
-                sendErrorMessage(chatId);
+                processing = CompletableFuture.failedFuture(e);
             }
 
+            processing.whenComplete((ignored, e) -> {
+                if (e == null) {
+                    rateLimiter.recordSuccess(userId);
+                    logger.debug("Завершена обработка сообщения от пользователя {}", userId);
+                } else {
+                    logger.error("Ошибка обработки сообщения от пользователя {}", userId, e);
+                    rateLimiter.recordFailure(userId);
+                    sendErrorMessage(chatId);
+                }
+            });
+
             return null;
         });
     }
 
-    private void processMessage(Update update, Long userId, String chatId, String text) {
+    private CompletableFuture<Void> processMessage(Update update, Long userId, String chatId, String text) {
         logger.debug("Обработка сообщения: userId={}, text={}", userId, text);
 
-        // Проверка кеша команд
+        // Проверка кеша команд. Переводы здесь не кешируются: их кеширует общий кеш переводов,
+        // а готовый ответ пропускал бы запись в историю пользователя
+        boolean cacheReply = !isTranslationRequest(text);
         String cacheKey = cacheService.getCommandCacheKey(userId, text, null);
-        String cachedResponse = cacheService.get(cacheKey);
+        String cachedResponse = cacheReply ? cacheService.get(cacheKey) : null;
 
         if (cachedResponse != null) {
             logger.debug("Используем кешированный ответ для пользователя {}", userId);
             sendMessageAsync(chatId, cachedResponse);
-            return;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Длинный текст переводим потоково, чтобы пользователь видел начало перевода сразу
+        if (!text.startsWith("/") && Config.isStreamingEnabled()
+                && text.length() >= Config.getStreamingMinTextLength()) {
+            return processStreaming(update, userId, chatId);
         }
 
         // Обработка команды или текста
-        String response;
+        long startNanos = System.nanoTime();
+        CompletableFuture<String> responseFuture;
         if (text.startsWith("/")) {
             logger.debug("Обработка команды: {}", text);
-            response = bot.getCommandManager().executeCommand(update, text);
+            responseFuture = bot.getCommandManager().executeCommandAsync(update, text);
         } else {
             logger.debug("Обработка текста для автоперевода");
-            response = bot.getAutoTranslateService().autoTranslate(update);
+            responseFuture = bot.getAutoTranslateService().autoTranslateAsync(update);
         }
 
-        logger.debug("Сгенерирован ответ длиной {} символов",
-                response != null ? response.length() : 0);
+        return responseFuture.thenAccept(response -> {
+            logger.debug("Сгенерирован ответ длиной {} символов",
+                    response != null ? response.length() : 0);
+
+            // Кеширование ответа
+            if (cacheReply) {
+                boolean cacheable = response != null && !response.contains("❌") && !response.contains("⚠️");
+                if (cacheable) {
+                    cacheService.put(cacheKey, response, 5); // Кешируем на 5 минут
+                }
+                cacheService.recordLoad(cacheKey, System.nanoTime() - startNanos, cacheable);
+            }
+
+            // Асинхронная отправка ответа
+            sendMessageAsync(chatId, response);
 
-        // Кеширование ответа
-        if (response != null && !response.contains("❌") && !response.contains("⚠️")) {
-            cacheService.put(cacheKey, response, 5); // Кешируем на 5 минут
-        }
+            // Обновление времени последнего сообщения
+            lastUserMessageTime.put(userId, System.currentTimeMillis());
+        });
+    }
+
+    private CompletableFuture<Void> processStreaming(Update update, Long userId, String chatId) {
+        logger.debug("Потоковый автоперевод для пользователя {}", userId);
 
-        // Асинхронная отправка ответа
-        sendMessageAsync(chatId, response);
+        StreamingMessage reply = MessageQueueService.getInstance()
+                .startStreamingMessage(chatId, "⏳ Перевожу...");
 
-        // Обновление времени последнего сообщения
-        lastUserMessageTime.put(userId, System.currentTimeMillis());
+        return bot.getAutoTranslateService().autoTranslateStream(update, reply::update)
+                .thenCompose(response -> {
+                    lastUserMessageTime.put(userId, System.currentTimeMillis());
+                    return reply.complete(response);
+                })
+                .thenApply(sent -> null);
     }
 
     private boolean isUserInCooldown(Long userId) {
@@ -138,6 +185,22 @@ public class AsyncMessageHandler {
         sendMessageSync(chatId, message); // Используем синхронную отправку для важных сообщений
     }
 
+    private boolean consumesTokens(String text) {
+        return !text.startsWith("/") || text.toLowerCase().startsWith("/translate");
+    }
+
+    private void sendTokenLimitMessage(String chatId, Long userId) {
+        String message = "📏 Вы исчерпали лимит объема текста для перевода. Попробуйте позже или отправьте текст короче.\n\n" +
+                rateLimiter.getUserStats(userId);
+
+        sendMessageSync(chatId, message);
+    }
+
+    private static boolean isTranslationRequest(String text) {
+        return !text.startsWith("/") || text.equals("/translate") || text.startsWith("/translate ")
+                || text.startsWith("/translate@");
+    }
+
     private void sendErrorMessage(String chatId) {
         String message = "❌ Произошла ошибка при обработке вашего сообщения. Пожалуйста, попробуйте позже.";
         sendMessageSync(chatId, message);
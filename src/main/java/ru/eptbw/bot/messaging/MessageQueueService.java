@@ -2,12 +2,17 @@ package ru.eptbw.bot.messaging;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import ru.eptbw.bot.TelegramBot;
+import ru.eptbw.bot.services.TextChunker;
 import ru.eptbw.bot.threading.ThreadPoolManager;
 import ru.eptbw.config.Config;
 
+import java.io.Serializable;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -48,6 +53,10 @@ public class MessageQueueService {
     }
 
     public CompletableFuture<Boolean> sendMessageAsync(String chatId, String text) {
+        if (text != null && text.length() > StreamingMessage.MAX_MESSAGE_LENGTH) {
+            return sendLongMessageAsync(chatId, text);
+        }
+
         SendMessage message = new SendMessage();
         message.setChatId(chatId);
         message.setText(text);
@@ -55,16 +64,60 @@ public class MessageQueueService {
         return sendMessageAsync(message);
     }
 
+    /**
+     * Текст длиннее лимита Telegram отправляется несколькими сообщениями по порядку.
+     * Части режутся по абзацам, предложениям и словам, а не посреди слова или суррогатной пары
+     */
+    private CompletableFuture<Boolean> sendLongMessageAsync(String chatId, String text) {
+        CompletableFuture<Boolean> result = CompletableFuture.completedFuture(true);
+        for (TextChunker.Chunk chunk : TextChunker.split(text, StreamingMessage.MAX_MESSAGE_LENGTH)) {
+            result = result.thenCompose(sent -> sendMessageAsync(chatId, chunk.text()));
+        }
+        return result;
+    }
+
     public CompletableFuture<Boolean> sendMessageAsync(SendMessage message) {
-        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        return enqueue(message).thenApply(result -> true);
+    }
+
+    /**
+     * Отправить сообщение и получить его id (нужен для последующего редактирования)
+     */
+    public CompletableFuture<Integer> sendMessageForId(String chatId, String text) {
+        SendMessage message = new SendMessage();
+        message.setChatId(chatId);
+        message.setText(text);
+
+        return enqueue(message).thenApply(result -> ((Message) result).getMessageId());
+    }
+
+    public CompletableFuture<Boolean> editMessageAsync(String chatId, Integer messageId, String text) {
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(messageId);
+        edit.setText(text);
+
+        return enqueue(edit).thenApply(result -> true);
+    }
+
+    /**
+     * Начать потоковый ответ: отправляется заглушка, которая затем редактируется по мере прихода текста
+     */
+    public StreamingMessage startStreamingMessage(String chatId, String placeholder) {
+        return new StreamingMessage(this, chatId, sendMessageForId(chatId, placeholder),
+                Config.getStreamEditIntervalMs());
+    }
+
+    private CompletableFuture<Serializable> enqueue(BotApiMethod<? extends Serializable> method) {
+        CompletableFuture<Serializable> future = new CompletableFuture<>();
 
-        MessageTask task = new MessageTask(message, future, maxRetries);
+        MessageTask task = new MessageTask(method, future, maxRetries);
 
         if (messageQueue.offer(task)) {
             pendingMessages.incrementAndGet();
             future.whenComplete((result, error) -> {
                 pendingMessages.decrementAndGet();
-                if (Boolean.TRUE.equals(result)) {
+                if (error == null) {
                     sentMessages.incrementAndGet();
                 } else {
                     failedMessages.incrementAndGet();
@@ -103,8 +156,8 @@ public class MessageQueueService {
     private void processMessageTask(MessageTask task) {
         for (int attempt = 0; attempt <= task.maxRetries; attempt++) {
             try {
-                bot.execute(task.message);
-                task.future.complete(true);
+                Serializable result = bot.execute(task.method);
+                task.future.complete(result);
                 logger.debug("Сообщение отправлено успешно (попытка {})", attempt + 1);
                 return;
             } catch (TelegramApiException e) {
@@ -139,12 +192,13 @@ public class MessageQueueService {
 
     // Внутренний класс для задачи отправки сообщения
     private static class MessageTask {
-        final SendMessage message;
-        final CompletableFuture<Boolean> future;
+        final BotApiMethod<? extends Serializable> method;
+        final CompletableFuture<Serializable> future;
         final int maxRetries;
 
-        MessageTask(SendMessage message, CompletableFuture<Boolean> future, int maxRetries) {
-            this.message = message;
+        MessageTask(BotApiMethod<? extends Serializable> method, CompletableFuture<Serializable> future,
+                    int maxRetries) {
+            this.method = method;
             this.future = future;
             this.maxRetries = maxRetries;
         }
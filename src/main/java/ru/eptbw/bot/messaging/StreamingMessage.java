@@ -0,0 +1,139 @@
+package ru.eptbw.bot.messaging;
+
+import ru.eptbw.bot.services.TextChunker;
+import ru.eptbw.bot.threading.ThreadPoolManager;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сообщение, которое постепенно дополняется по мере прихода текста.
+ * Сначала отправляется заглушка, затем она редактируется не чаще editIntervalMs:
+ * промежуточные версии, пришедшие между правками, схлопываются в последнюю.
+ */
+public class StreamingMessage {
+    static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private final MessageQueueService queue;
+    private final String chatId;
+    private final CompletableFuture<Integer> messageId;
+    private final long editIntervalMs;
+
+    private String latestText;
+    private String shownText;
+    private long lastEditTime;
+    private boolean editInFlight;
+    private boolean flushScheduled;
+    private boolean completed;
+    private CompletableFuture<Boolean> lastEdit = CompletableFuture.completedFuture(true);
+
+    StreamingMessage(MessageQueueService queue, String chatId,
+                     CompletableFuture<Integer> messageId, long editIntervalMs) {
+        this.queue = queue;
+        this.chatId = chatId;
+        this.messageId = messageId;
+        this.editIntervalMs = editIntervalMs;
+
+        // Текст, пришедший до отправки заглушки, показываем сразу после нее
+        messageId.thenRun(this::tryEdit);
+    }
+
+    /**
+     * Показать новую версию текста (с учетом ограничения частоты правок)
+     */
+    public void update(String text) {
+        synchronized (this) {
+            if (completed) {
+                return;
+            }
+            latestText = text;
+        }
+        tryEdit();
+    }
+
+    /**
+     * Показать окончательный текст. Если заглушку отправить не удалось, текст уходит новым сообщением.
+     */
+    public CompletableFuture<Boolean> complete(String finalText) {
+        CompletableFuture<Boolean> pendingEdit;
+        synchronized (this) {
+            completed = true;
+            pendingEdit = lastEdit;
+        }
+
+        // Ждем последнюю промежуточную правку, чтобы она не перезаписала итоговый текст
+        return pendingEdit.handle((result, error) -> null)
+                .thenCompose(ignored -> messageId.handle((id, error) -> id))
+                .thenCompose(id -> {
+                    if (id == null) {
+                        return queue.sendMessageAsync(chatId, finalText);
+                    }
+
+                    // Правим всегда: в промежуточной версии есть курсор
+                    List<TextChunker.Chunk> parts = TextChunker.split(finalText, MAX_MESSAGE_LENGTH);
+                    CompletableFuture<Boolean> result = queue.editMessageAsync(chatId, id,
+                            parts.isEmpty() ? finalText : parts.get(0).text());
+
+                    // Остаток длинного текста отправляем отдельными сообщениями
+                    for (TextChunker.Chunk part : parts.subList(Math.min(1, parts.size()), parts.size())) {
+                        result = result.thenCompose(sent -> queue.sendMessageAsync(chatId, part.text()));
+                    }
+                    return result;
+                });
+    }
+
+    private void tryEdit() {
+        String text;
+        Integer id;
+
+        synchronized (this) {
+            if (completed || editInFlight || !messageId.isDone() || messageId.isCompletedExceptionally()
+                    || latestText == null || latestText.equals(shownText)) {
+                return;
+            }
+
+            long wait = lastEditTime + editIntervalMs - System.currentTimeMillis();
+            if (wait > 0) {
+                if (!flushScheduled) {
+                    flushScheduled = true;
+                    ThreadPoolManager.getInstance().scheduleTask(() -> {
+                        synchronized (this) {
+                            flushScheduled = false;
+                        }
+                        tryEdit();
+                    }, wait, TimeUnit.MILLISECONDS);
+                }
+                return;
+            }
+
+            text = latestText;
+            id = messageId.join();
+            editInFlight = true;
+            lastEditTime = System.currentTimeMillis();
+            lastEdit = queue.editMessageAsync(chatId, id, truncate(text) + " ▌");
+        }
+
+        lastEdit.whenComplete((result, error) -> {
+            synchronized (this) {
+                editInFlight = false;
+                if (error == null) {
+                    shownText = text;
+                }
+            }
+            tryEdit();
+        });
+    }
+
+    private static String truncate(String text) {
+        if (text.length() <= MAX_MESSAGE_LENGTH - 2) {
+            return text;
+        }
+        int end = MAX_MESSAGE_LENGTH - 2;
+        // Не разрываем суррогатную пару: половина эмодзи ломает правку сообщения
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+}
@@ -2,15 +2,21 @@ package ru.eptbw.bot.services;
 
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
-import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.gemini.TranslationBackend;
 import ru.eptbw.bot.services.DatabaseManager;
+import ru.eptbw.bot.services.LanguageDetector.Detection;
+import ru.eptbw.bot.threading.ThreadPoolManager;
+import ru.eptbw.config.Config;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class AutoTranslateService {
-    private final GeminiService geminiService;
+    private final TranslationBackend translationBackend;
     private final DatabaseManager dbManager;
 
-    public AutoTranslateService(GeminiService geminiService) {
-        this.geminiService = geminiService;
+    public AutoTranslateService(TranslationBackend translationBackend) {
+        this.translationBackend = translationBackend;
         this.dbManager = DatabaseManager.getInstance();
     }
 
@@ -19,39 +25,100 @@ public class AutoTranslateService {
      */
     public String autoTranslate(Update update) {
         String text = update.getMessage().getText().trim();
-        User user = update.getMessage().getFrom();
-        Long userId = user.getId();
 
-        if (text.length() > 1000) {
-            return "❌ Текст слишком длинный. Максимальная длина - 1000 символов.";
+        if (text.length() > Config.getMaxTextLength()) {
+            return getTextTooLongMessage();
         }
 
         // Получаем последний язык перевода пользователя
-        String targetLanguage = dbManager.getUserTranslationLanguage(userId);
-        String languageName = getLanguageDisplayName(targetLanguage);
+        String targetLanguage = dbManager.getUserTranslationLanguage(update.getMessage().getFrom().getId());
+        Detection detection = LanguageDetector.detect(text);
+        if (detection.isLanguage(targetLanguage)) {
+            return getAlreadyTranslatedMessage(targetLanguage);
+        }
 
         try {
-            String translatedText = geminiService.translateText(text, getGeminiLanguageName(targetLanguage));
+            String translatedText = translationBackend.translateText(text, getGeminiLanguageName(targetLanguage));
+            return completeTranslation(update, text, detection, targetLanguage, translatedText);
 
-            // Сохраняем в историю
-            String userName = getUserDisplayName(user);
-            String sourceLang = getSourceLanguage(targetLanguage);
+        } catch (Exception e) {
+            return "❌ Ошибка при автоматическом переводе. Попробуйте использовать команду /translate.";
+        }
+    }
 
-            dbManager.saveTranslation(userId, userName, text, translatedText, sourceLang, targetLanguage);
+    /**
+     * Асинхронный вариант autoTranslate: не блокирует поток на время запроса к Gemini
+     */
+    public CompletableFuture<String> autoTranslateAsync(Update update) {
+        String text = update.getMessage().getText().trim();
 
-            return String.format("""
-                🌍 **Автоматический перевод** (%s):
-                
-                %s
-                
-                💡 *Совет:* Используйте `/translate <язык> <текст>` для перевода на другой язык.
-                """,
-                    languageName, translatedText
-            );
+        if (text.length() > Config.getMaxTextLength()) {
+            return CompletableFuture.completedFuture(getTextTooLongMessage());
+        }
 
-        } catch (Exception e) {
-            return "❌ Ошибка при автоматическом переводе. Попробуйте использовать команду /translate.";
+        String targetLanguage = dbManager.getUserTranslationLanguage(update.getMessage().getFrom().getId());
+        Detection detection = LanguageDetector.detect(text);
+        if (detection.isLanguage(targetLanguage)) {
+            return CompletableFuture.completedFuture(getAlreadyTranslatedMessage(targetLanguage));
         }
+
+        // Ошибка должна дойти до exceptionally, а не попасть в историю как текст перевода
+        return translationBackend.translateTextOrFail(text, getGeminiLanguageName(targetLanguage),
+                        update.getMessage().getFrom().getId())
+                .thenApplyAsync(translatedText -> completeTranslation(update, text, detection, targetLanguage, translatedText),
+                        ThreadPoolManager.getInstance().getExecutor())
+                .exceptionally(e -> "❌ Ошибка при автоматическом переводе. Попробуйте использовать команду /translate.");
+    }
+
+    /**
+     * Потоковый автоперевод: onPartial получает отформатированный частичный перевод
+     */
+    public CompletableFuture<String> autoTranslateStream(Update update, Consumer<String> onPartial) {
+        String text = update.getMessage().getText().trim();
+
+        if (text.length() > Config.getMaxTextLength()) {
+            return CompletableFuture.completedFuture(getTextTooLongMessage());
+        }
+
+        String targetLanguage = dbManager.getUserTranslationLanguage(update.getMessage().getFrom().getId());
+        Detection detection = LanguageDetector.detect(text);
+        if (detection.isLanguage(targetLanguage)) {
+            return CompletableFuture.completedFuture(getAlreadyTranslatedMessage(targetLanguage));
+        }
+        String languageName = getLanguageDisplayName(targetLanguage);
+
+        return translationBackend.translateTextStream(text, getGeminiLanguageName(targetLanguage),
+                        update.getMessage().getFrom().getId(),
+                        partial -> onPartial.accept("🌍 **Автоматический перевод** (" + languageName + "):\n\n" + partial))
+                .thenApplyAsync(translatedText -> completeTranslation(update, text, detection, targetLanguage, translatedText),
+                        ThreadPoolManager.getInstance().getExecutor())
+                .exceptionally(e -> "❌ Ошибка при автоматическом переводе. Попробуйте использовать команду /translate.");
+    }
+
+    /**
+     * Пишет в SQLite, поэтому вызывается в пуле бота, а не в потоке OkHttp с ответом Gemini
+     */
+    private String completeTranslation(Update update, String text, Detection detection,
+                                       String targetLanguage, String translatedText) {
+        User user = update.getMessage().getFrom();
+        String languageName = getLanguageDisplayName(targetLanguage);
+
+        // Сохраняем в историю
+        String userName = getUserDisplayName(user);
+        // Ненадежная догадка в историю не пишется - то же правило, что и для ключа кеша
+        String sourceLang = detection.isReliable() ? detection.getLanguage() : "auto";
+
+        dbManager.saveTranslation(user.getId(), userName, text, translatedText, sourceLang, targetLanguage);
+
+        return String.format("""
+            🌍 **Автоматический перевод** (%s):
+            
+            %s
+            
+            💡 *Совет:* Используйте `/translate <язык> <текст>` для перевода на другой язык.
+            """,
+                languageName, translatedText
+        );
     }
 
     private String getGeminiLanguageName(String languageCode) {
@@ -76,8 +143,13 @@ public class AutoTranslateService {
         }
     }
 
-    private String getSourceLanguage(String targetLanguage) {
-        return targetLanguage.equals("ru") ? "auto" : "russian";
+    private String getTextTooLongMessage() {
+        return "❌ Текст слишком длинный. Максимальная длина - " + Config.getMaxTextLength() + " символов.";
+    }
+
+    private String getAlreadyTranslatedMessage(String targetLanguage) {
+        return "ℹ️ Текст уже написан на языке перевода (" + getLanguageDisplayName(targetLanguage)
+                + "), перевод не требуется.\n\n💡 *Совет:* Смените язык перевода командой /settranslation <код>.";
     }
 
     private String getUserDisplayName(User user) {
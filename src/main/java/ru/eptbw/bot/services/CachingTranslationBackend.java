@@ -0,0 +1,174 @@
+package ru.eptbw.bot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.cache.CacheService;
+import ru.eptbw.bot.gemini.TranslationBackend;
+import ru.eptbw.bot.services.LanguageDetector.Detection;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Общий кеш переводов для всех пользователей. Ключ - SHA-256 нормализованного текста,
+ * исходного и целевого языка, поэтому перевод, полученный для одного пользователя,
+ * отдается всем остальным, а разные тексты не могут совпасть по ключу.
+ * Через этот бэкенд переводят и /translate, и автоперевод.
+ * <p>
+ * Перевод, переживший мягкий срок (refreshAfterMinutes), отдается из кеша сразу, а свежий
+ * запрашивается в фоне, так что частые фразы не ждут Gemini после истечения записи.
+ */
+public class CachingTranslationBackend implements TranslationBackend {
+    private static final Logger logger = LoggerFactory.getLogger(CachingTranslationBackend.class);
+
+    private final TranslationBackend delegate;
+    private final CacheService cacheService;
+    private final long refreshAfterMinutes;
+    private final long expireMinutes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingTranslationBackend(TranslationBackend delegate, CacheService cacheService, long expireMinutes) {
+        this(delegate, cacheService, 0, expireMinutes);
+    }
+
+    /**
+     * @param refreshAfterMinutes мягкий срок записи, 0 - без фонового обновления
+     */
+    public CachingTranslationBackend(TranslationBackend delegate, CacheService cacheService,
+                                     long refreshAfterMinutes, long expireMinutes) {
+        this.delegate = delegate;
+        this.cacheService = cacheService;
+        this.refreshAfterMinutes = refreshAfterMinutes > 0 ? refreshAfterMinutes : expireMinutes;
+        this.expireMinutes = expireMinutes;
+    }
+
+    @Override
+    public String translateText(String text, String targetLanguage) {
+        String key = cacheKey(text, targetLanguage);
+        String cached = lookup(key, text, targetLanguage);
+        if (cached != null) {
+            return cached;
+        }
+        long startNanos = System.nanoTime();
+        return store(key, delegate.translateText(text, targetLanguage), startNanos);
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+        return translateCached(text, targetLanguage, () -> delegate.translateTextAsync(text, targetLanguage, userId));
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextOrFail(String text, String targetLanguage, Long userId) {
+        return translateCached(text, targetLanguage, () -> delegate.translateTextOrFail(text, targetLanguage, userId));
+    }
+
+    private CompletableFuture<String> translateCached(String text, String targetLanguage,
+                                                      Supplier<CompletableFuture<String>> translation) {
+        String key = cacheKey(text, targetLanguage);
+        String cached = lookup(key, text, targetLanguage);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long startNanos = System.nanoTime();
+        return translation.get().thenApply(result -> store(key, result, startNanos));
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                         Consumer<String> onPartial) {
+        String key = cacheKey(text, targetLanguage);
+        String cached = lookup(key, text, targetLanguage);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        long startNanos = System.nanoTime();
+        return delegate.translateTextStream(text, targetLanguage, userId, onPartial)
+                .thenApply(translation -> store(key, translation, startNanos));
+    }
+
+    private String cacheKey(String text, String targetLanguage) {
+        Detection detection = LanguageDetector.detect(text);
+        String sourceLanguage = detection.isReliable() ? detection.getLanguage() : "auto";
+        return cacheService.getTranslationCacheKey(text, sourceLanguage, LanguageDetector.toCode(targetLanguage));
+    }
+
+    private String lookup(String key, String text, String targetLanguage) {
+        // Фоновое обновление не расходует квоту пользователя, попавшего на устаревшую запись
+        String cached = cacheService.getWithRefresh(key, () -> delegate.translateTextAsync(text, targetLanguage, null)
+                .thenApply(translation -> isCacheable(translation) ? translation : null));
+        if (cached != null) {
+            hits.increment();
+            logger.debug("Перевод взят из общего кеша");
+        } else {
+            misses.increment();
+        }
+        return cached;
+    }
+
+    private String store(String key, String translation, long startNanos) {
+        boolean cacheable = isCacheable(translation);
+        if (cacheable) {
+            cacheService.put(key, translation, refreshAfterMinutes, expireMinutes);
+        }
+        cacheService.recordLoad(key, System.nanoTime() - startNanos, cacheable);
+        return translation;
+    }
+
+    /**
+     * Положить готовый перевод (например, из истории) в общий кеш, если его там еще нет
+     * @return true, если перевод добавлен
+     */
+    public boolean preload(String text, String targetLanguage, String translation) {
+        if (text == null || text.isBlank() || targetLanguage == null || !isCacheable(translation)) {
+            return false;
+        }
+        return cacheService.putIfAbsent(cacheKey(text, targetLanguage), translation, refreshAfterMinutes, expireMinutes);
+    }
+
+    // Бэкенд возвращает сообщения об ошибках как обычный текст - их не кешируем
+    static boolean isCacheable(String translation) {
+        return translation != null && !translation.isBlank()
+                && !translation.startsWith("⚠️") && !translation.startsWith("❌");
+    }
+
+    @Override
+    public String autoTranslateToRussian(String text) {
+        return delegate.autoTranslateToRussian(text);
+    }
+
+    @Override
+    public CompletableFuture<String> autoTranslateToRussianAsync(String text) {
+        return delegate.autoTranslateToRussianAsync(text);
+    }
+
+    @Override
+    public String generateResponse(String userMessage) {
+        return delegate.generateResponse(userMessage);
+    }
+
+    @Override
+    public CompletableFuture<String> generateResponseAsync(String userMessage) {
+        return delegate.generateResponseAsync(userMessage);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public String getStats() {
+        return delegate.getStats();
+    }
+
+    public String getCacheStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return String.format("Общий кеш переводов: попаданий=%d из %d (%.1f%%)",
+                hitCount, total, total > 0 ? hitCount * 100.0 / total : 0.0);
+    }
+}
@@ -0,0 +1,221 @@
+package ru.eptbw.bot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.gemini.TranslationBackend;
+import ru.eptbw.bot.services.TextChunker.Chunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Перевод длинных текстов по частям. Текст делится по абзацам и предложениям, части переводятся
+ * параллельно (не больше parallelism запросов одновременно) и собираются в исходном порядке.
+ * В потоковом режиме пользователь видит начало перевода, как только готовы первые части.
+ * Тексты не длиннее одной части передаются бэкенду без изменений.
+ * <p>
+ * Части переводятся через {@link TranslationBackend#translateTextOrFail}: ошибка любой части
+ * проваливает весь перевод, а не склеивается с остальными частями как обычный текст.
+ */
+public class ChunkedTranslationBackend implements TranslationBackend {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkedTranslationBackend.class);
+    // Как у GeminiService: синхронный перевод сообщает об ошибке текстом, который не кешируется
+    private static final String TRANSLATION_ERROR = "⚠️ Ошибка перевода. Попробуйте позже.";
+
+    private final TranslationBackend delegate;
+    private final int chunkSize;
+    private final int parallelism;
+    private final LongAdder chunkedTexts = new LongAdder();
+    private final LongAdder translatedChunks = new LongAdder();
+
+    public ChunkedTranslationBackend(TranslationBackend delegate, int chunkSize, int parallelism) {
+        this.delegate = delegate;
+        this.chunkSize = chunkSize;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    @Override
+    public String translateText(String text, String targetLanguage) {
+        if (!needsChunking(text)) {
+            return delegate.translateText(text, targetLanguage);
+        }
+
+        // Синхронный вариант переводит части по очереди: параллельность дает только асинхронный путь
+        List<Chunk> chunks = split(text);
+        List<String> translations = new ArrayList<>(chunks.size());
+        try {
+            for (Chunk chunk : chunks) {
+                translations.add(delegate.translateTextOrFail(chunk.text(), targetLanguage, null).join());
+                translatedChunks.increment();
+            }
+        } catch (CompletionException e) {
+            logger.error("Ошибка при переводе части длинного текста", e.getCause());
+            return TRANSLATION_ERROR;
+        }
+        return TextChunker.join(chunks, translations);
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+        if (!needsChunking(text)) {
+            return delegate.translateTextAsync(text, targetLanguage, userId);
+        }
+        return new ChunkedTranslation(split(text), targetLanguage, userId, null).start();
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextOrFail(String text, String targetLanguage, Long userId) {
+        if (!needsChunking(text)) {
+            return delegate.translateTextOrFail(text, targetLanguage, userId);
+        }
+        return new ChunkedTranslation(split(text), targetLanguage, userId, null).start();
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                         Consumer<String> onPartial) {
+        if (!needsChunking(text)) {
+            return delegate.translateTextStream(text, targetLanguage, userId, onPartial);
+        }
+        return new ChunkedTranslation(split(text), targetLanguage, userId, onPartial).start();
+    }
+
+    private boolean needsChunking(String text) {
+        return text != null && text.length() > chunkSize;
+    }
+
+    private List<Chunk> split(String text) {
+        List<Chunk> chunks = TextChunker.split(text, chunkSize);
+        chunkedTexts.increment();
+        logger.debug("Длинный текст ({} символов) разбит на {} частей", text.length(), chunks.size());
+        return chunks;
+    }
+
+    /**
+     * Перевод одного длинного текста: следующая часть запускается, когда освобождается место
+     * среди parallelism выполняющихся запросов
+     */
+    private class ChunkedTranslation {
+        private final List<Chunk> chunks;
+        private final String targetLanguage;
+        private final Long userId;
+        private final Consumer<String> onPartial;
+        private final String[] translations;
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger remaining;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private int publishedChunks;
+
+        ChunkedTranslation(List<Chunk> chunks, String targetLanguage, Long userId, Consumer<String> onPartial) {
+            this.chunks = chunks;
+            this.targetLanguage = targetLanguage;
+            this.userId = userId;
+            this.onPartial = onPartial;
+            this.translations = new String[chunks.size()];
+            this.remaining = new AtomicInteger(chunks.size());
+        }
+
+        CompletableFuture<String> start() {
+            int initial = Math.min(parallelism, chunks.size());
+            for (int i = 0; i < initial; i++) {
+                launchNext();
+            }
+            return result;
+        }
+
+        private void launchNext() {
+            int index = nextChunk.getAndIncrement();
+            if (index >= chunks.size() || result.isDone()) {
+                return;
+            }
+
+            CompletableFuture<String> translation;
+            try {
+                translation = delegate.translateTextOrFail(chunks.get(index).text(), targetLanguage, userId);
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+                return;
+            }
+
+            translation.whenComplete((translated, error) -> {
+                if (error != null) {
+                    // Без одной из частей перевод бессмыслен - сразу сообщаем об ошибке
+                    result.completeExceptionally(error);
+                    return;
+                }
+
+                translatedChunks.increment();
+                onChunkTranslated(index, translated);
+                if (remaining.decrementAndGet() == 0) {
+                    result.complete(TextChunker.join(chunks, Arrays.asList(translations)));
+                } else {
+                    launchNext();
+                }
+            });
+        }
+
+        private void onChunkTranslated(int index, String translated) {
+            String prefix = null;
+            synchronized (this) {
+                translations[index] = translated;
+
+                // Показываем только непрерывное начало текста, чтобы части не шли вразнобой
+                int ready = publishedChunks;
+                while (ready < translations.length && translations[ready] != null) {
+                    ready++;
+                }
+                if (onPartial != null && ready > publishedChunks && ready < translations.length) {
+                    prefix = TextChunker.join(chunks, Arrays.asList(translations).subList(0, ready));
+                }
+                publishedChunks = ready;
+            }
+
+            if (prefix != null) {
+                onPartial.accept(prefix);
+            }
+        }
+    }
+
+    @Override
+    public String autoTranslateToRussian(String text) {
+        return delegate.autoTranslateToRussian(text);
+    }
+
+    @Override
+    public CompletableFuture<String> autoTranslateToRussianAsync(String text) {
+        return delegate.autoTranslateToRussianAsync(text);
+    }
+
+    @Override
+    public String generateResponse(String userMessage) {
+        return delegate.generateResponse(userMessage);
+    }
+
+    @Override
+    public CompletableFuture<String> generateResponseAsync(String userMessage) {
+        return delegate.generateResponseAsync(userMessage);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public String getStats() {
+        return delegate.getStats();
+    }
+
+    public String getChunkStats() {
+        long texts = chunkedTexts.sum();
+        long chunks = translatedChunks.sum();
+        return String.format("Длинные тексты: %d, переведено частей: %d (в среднем %.1f на текст), параллельно до %d",
+                texts, chunks, texts > 0 ? (double) chunks / texts : 0.0, parallelism);
+    }
+}
@@ -6,6 +6,7 @@ import java.nio.file.StandardCopyOption;
 import java.sql.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class DatabaseManager {
     private static final String DB_URL = "jdbc:sqlite:bot_database.db";
@@ -306,6 +307,56 @@ public class DatabaseManager {
         return "en"; // По умолчанию английский
     }
 
+    /**
+     * Перевод из истории с числом повторов пары (текст, язык)
+     */
+    public record HistoryTranslation(String originalText, String targetLanguage,
+                                     String translatedText, int uses) {
+    }
+
+    /**
+     * Самые частые пары (текст, целевой язык) из истории по убыванию числа повторов, с последним
+     * переводом каждой пары. Строки читаются по одной и сразу передаются consumer; если он вернул
+     * false, чтение прекращается.
+     * @param timeoutSeconds предел времени на сам запрос (группировка всей таблицы), 0 - без предела
+     * @return число переданных строк
+     */
+    public int streamTopTranslations(int limit, int timeoutSeconds, Predicate<HistoryTranslation> consumer) {
+        // В SQLite столбцы рядом с MAX() берутся из строки с максимумом - то есть из последнего перевода
+        String sql = """
+            SELECT original_text, target_language, translated_text, COUNT(*) AS uses, MAX(id)
+            FROM translation_history
+            GROUP BY original_text, target_language
+            ORDER BY uses DESC
+            LIMIT ?
+        """;
+
+        int streamed = 0;
+        try (Connection conn = DriverManager.getConnection(DB_URL);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, limit);
+            pstmt.setQueryTimeout(timeoutSeconds);
+            pstmt.setFetchSize(100);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    streamed++;
+                    HistoryTranslation translation = new HistoryTranslation(rs.getString("original_text"),
+                            rs.getString("target_language"), rs.getString("translated_text"), rs.getInt("uses"));
+                    if (!consumer.test(translation)) {
+                        break;
+                    }
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("❌ Ошибка чтения истории переводов: " + e.getMessage());
+        }
+
+        return streamed;
+    }
+
     // ==================== МЕТОДЫ ДЛЯ СТАТИСТИКИ ИСПОЛЬЗОВАНИЯ ====================
 
     /**
@@ -0,0 +1,146 @@
+package ru.eptbw.bot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.gemini.TranslationBackend;
+import ru.eptbw.config.Config;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Быстрый путь перевода: отдельные слова и короткие фразы ищутся в локальном словаре,
+ * в Gemini уходят только промахи. Остальные вызовы передаются бэкенду без изменений.
+ */
+public class DictionaryTranslationBackend implements TranslationBackend {
+    private static final Logger logger = LoggerFactory.getLogger(DictionaryTranslationBackend.class);
+
+    private final TranslationBackend delegate;
+    private final LocalDictionary dictionary;
+    private final int maxWords;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public DictionaryTranslationBackend(TranslationBackend delegate, LocalDictionary dictionary, int maxWords) {
+        this.delegate = delegate;
+        this.dictionary = dictionary;
+        this.maxWords = maxWords;
+    }
+
+    /**
+     * Оборачивает бэкенд словарем из настроек; при ошибке загрузки словаря возвращает бэкенд как есть
+     */
+    public static TranslationBackend wrap(TranslationBackend delegate) {
+        if (!Config.isDictionaryEnabled()) {
+            return delegate;
+        }
+
+        try {
+            LocalDictionary dictionary = LocalDictionary.loadOrBuild(
+                    Path.of(Config.getDictionaryIndexPath()), "dictionary.tsv");
+            return new DictionaryTranslationBackend(delegate, dictionary, Config.getDictionaryMaxWords());
+        } catch (Exception e) {
+            logger.warn("Локальный словарь недоступен, все переводы идут через Gemini: {}", e.getMessage());
+            return delegate;
+        }
+    }
+
+    @Override
+    public String translateText(String text, String targetLanguage) {
+        String cached = lookup(text, targetLanguage);
+        return cached != null ? cached : delegate.translateText(text, targetLanguage);
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+        String cached = lookup(text, targetLanguage);
+        return cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : delegate.translateTextAsync(text, targetLanguage, userId);
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextOrFail(String text, String targetLanguage, Long userId) {
+        String cached = lookup(text, targetLanguage);
+        return cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : delegate.translateTextOrFail(text, targetLanguage, userId);
+    }
+
+    @Override
+    public CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                         Consumer<String> onPartial) {
+        String cached = lookup(text, targetLanguage);
+        return cached != null
+                ? CompletableFuture.completedFuture(cached)
+                : delegate.translateTextStream(text, targetLanguage, userId, onPartial);
+    }
+
+    private String lookup(String text, String targetLanguage) {
+        if (text == null || text.length() > 64 || countWords(text) > maxWords) {
+            return null;
+        }
+
+        String translation = dictionary.lookup(text, targetLanguage);
+        if (translation != null) {
+            hits.increment();
+            logger.debug("Перевод '{}' найден в словаре", text);
+        } else {
+            misses.increment();
+        }
+        return translation;
+    }
+
+    private static int countWords(String text) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean space = Character.isWhitespace(text.charAt(i));
+            if (!space && !inWord) {
+                words++;
+            }
+            inWord = !space;
+        }
+        return words;
+    }
+
+    @Override
+    public String autoTranslateToRussian(String text) {
+        return delegate.autoTranslateToRussian(text);
+    }
+
+    @Override
+    public CompletableFuture<String> autoTranslateToRussianAsync(String text) {
+        return delegate.autoTranslateToRussianAsync(text);
+    }
+
+    @Override
+    public String generateResponse(String userMessage) {
+        return delegate.generateResponse(userMessage);
+    }
+
+    @Override
+    public CompletableFuture<String> generateResponseAsync(String userMessage) {
+        return delegate.generateResponseAsync(userMessage);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return delegate.isAvailable();
+    }
+
+    @Override
+    public String getStats() {
+        return delegate.getStats();
+    }
+
+    public String getDictionaryStats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return String.format("Словарь: статей=%d, терминов=%d, попаданий=%d из %d (%.1f%%)",
+                dictionary.getEntryCount(), dictionary.getTermCount(), hitCount, total,
+                total > 0 ? hitCount * 100.0 / total : 0.0);
+    }
+}
@@ -0,0 +1,190 @@
+package ru.eptbw.bot.services;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Быстрое определение языка текста среди поддерживаемых ботом (ru, en, es, fr, de) без обращения к Gemini.
+ * Кириллица однозначно дает русский (если нет букв других кириллических алфавитов),
+ * латиница различается по диакритике, частотным словам и характерным триграммам.
+ */
+public final class LanguageDetector {
+    private static final String[] LATIN_LANGUAGES = {"en", "es", "fr", "de"};
+
+    private static final Map<String, Set<String>> STOP_WORDS = Map.of(
+            "en", Set.of("the", "and", "is", "are", "was", "you", "your", "i", "my", "it", "to", "of", "in",
+                    "on", "for", "with", "this", "that", "what", "how", "be", "have", "do", "not", "we",
+                    "they", "he", "she", "hello", "please", "thanks", "good", "can", "will", "me"),
+            "es", Set.of("el", "la", "los", "las", "que", "y", "en", "es", "por", "un", "una", "con", "para",
+                    "no", "está", "estoy", "yo", "tu", "mi", "muy", "pero", "como", "del", "al", "hola",
+                    "gracias", "buenos", "qué", "soy", "se", "lo"),
+            "fr", Set.of("le", "la", "les", "de", "et", "est", "un", "une", "je", "vous", "pas", "que", "des",
+                    "pour", "dans", "ce", "il", "elle", "nous", "avec", "sur", "mais", "du", "au", "bonjour",
+                    "merci", "oui", "suis", "c'est", "très", "tu"),
+            "de", Set.of("der", "die", "das", "und", "ist", "ich", "nicht", "ein", "eine", "zu", "mit", "sie",
+                    "es", "du", "den", "auf", "für", "bin", "wir", "sind", "auch", "aber", "wie", "hallo",
+                    "danke", "guten", "ja", "nein", "mein", "dem"));
+
+    private static final Map<String, Set<String>> TRIGRAMS = Map.of(
+            "en", Set.of("the", "ing", "and", "ion", "ent", "her", "hat", "tha", "thi", "ith", "you", "ght"),
+            "es", Set.of("que", "ión", "ado", "los", "par", "con", "est", "nte", "ara", "ien", "aci", "ero"),
+            "fr", Set.of("les", "que", "ion", "ait", "des", "our", "eur", "ais", "ous", "eme", "ell", "oir"),
+            "de", Set.of("ein", "ich", "der", "sch", "und", "die", "cht", "den", "gen", "ung", "ier", "ach"));
+
+    private LanguageDetector() {
+    }
+
+    /**
+     * Результат определения: язык (лучшая догадка, может быть null) и надежность догадки
+     */
+    public static final class Detection {
+        private final String language;
+        private final boolean reliable;
+
+        private Detection(String language, boolean reliable) {
+            this.language = language;
+            this.reliable = reliable;
+        }
+
+        public String getLanguage() {
+            return language;
+        }
+
+        public boolean isReliable() {
+            return reliable;
+        }
+
+        /**
+         * Текст надежно определен как написанный на указанном языке (код или название)
+         */
+        public boolean isLanguage(String language) {
+            return reliable && this.language != null && this.language.equals(toCode(language));
+        }
+    }
+
+    private static final Detection UNKNOWN = new Detection(null, false);
+
+    public static Detection detect(String text) {
+        if (text == null || text.isEmpty()) {
+            return UNKNOWN;
+        }
+
+        int cyrillic = 0;
+        int latin = 0;
+        boolean foreignCyrillic = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetter(c)) {
+                continue;
+            }
+            if (Character.UnicodeBlock.of(c) == Character.UnicodeBlock.CYRILLIC) {
+                cyrillic++;
+                // Украинские, белорусские и сербские буквы
+                if ("іїєґўђјљњћџІЇЄҐЎЂЈЉЊЋЏ".indexOf(c) >= 0) {
+                    foreignCyrillic = true;
+                }
+            } else if (c < 0x250) {
+                latin++;
+            }
+        }
+
+        int letters = cyrillic + latin;
+        if (letters < 2) {
+            return UNKNOWN;
+        }
+        if (cyrillic * 10 >= letters * 6) {
+            return foreignCyrillic ? UNKNOWN : new Detection("ru", true);
+        }
+        if (latin * 10 < letters * 6) {
+            return UNKNOWN;
+        }
+        return detectLatin(text.toLowerCase(Locale.ROOT), latin);
+    }
+
+    private static Detection detectLatin(String text, int letters) {
+        int[] scores = new int[LATIN_LANGUAGES.length];
+        int words = 0;
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            scoreDiacritic(c, scores);
+            if (Character.isLetter(c) || c == '\'') {
+                if (start < 0) {
+                    start = i;
+                }
+                continue;
+            }
+            if (start >= 0) {
+                scoreWord(text.substring(start, i), scores);
+                words++;
+                start = -1;
+            }
+        }
+
+        int best = 0;
+        int second = -1;
+        for (int i = 1; i < scores.length; i++) {
+            if (scores[i] > scores[best]) {
+                second = best;
+                best = i;
+            } else if (second < 0 || scores[i] > scores[second]) {
+                second = i;
+            }
+        }
+
+        if (scores[best] == 0 || scores[best] == scores[second]) {
+            return UNKNOWN;
+        }
+        // Одно слово без характерных букв легко спутать, поэтому надежным считается только явный перевес
+        boolean reliable = words >= 2 && letters >= 8 && scores[best] >= 6 && scores[best] >= scores[second] * 2;
+        return new Detection(LATIN_LANGUAGES[best], reliable);
+    }
+
+    private static void scoreWord(String word, int[] scores) {
+        for (int i = 0; i < LATIN_LANGUAGES.length; i++) {
+            String language = LATIN_LANGUAGES[i];
+            if (STOP_WORDS.get(language).contains(word)) {
+                scores[i] += 3;
+            }
+            Set<String> trigrams = TRIGRAMS.get(language);
+            for (int j = 0; j + 3 <= word.length(); j++) {
+                if (trigrams.contains(word.substring(j, j + 3))) {
+                    scores[i]++;
+                }
+            }
+        }
+    }
+
+    private static void scoreDiacritic(char c, int[] scores) {
+        switch (c) {
+            case 'ñ', 'á', 'í', 'ó', 'ú', '¿', '¡' -> scores[1] += 4;
+            case 'ç', 'è', 'ê', 'à', 'â', 'ù', 'û', 'î', 'ï', 'ô', 'œ', 'ë' -> scores[2] += 4;
+            case 'ä', 'ö', 'ü', 'ß' -> scores[3] += 4;
+            case 'é' -> {
+                scores[2] += 2;
+                scores[1] += 1;
+            }
+            default -> {
+            }
+        }
+    }
+
+    /**
+     * Код языка по коду или названию, которое используют команды (english, russian...)
+     */
+    public static String toCode(String language) {
+        if (language == null) {
+            return null;
+        }
+        return switch (language.toLowerCase(Locale.ROOT)) {
+            case "ru", "russian" -> "ru";
+            case "en", "english" -> "en";
+            case "es", "spanish" -> "es";
+            case "fr", "french" -> "fr";
+            case "de", "german" -> "de";
+            default -> language.toLowerCase(Locale.ROOT);
+        };
+    }
+}
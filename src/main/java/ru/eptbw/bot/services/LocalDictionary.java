@@ -0,0 +1,344 @@
+package ru.eptbw.bot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Двуязычный словарь для пяти поддерживаемых языков в компактном бинарном индексе,
+ * отображенном в память (mmap). В куче остается только объект буфера: поиск идет
+ * бинарным поиском по отсортированной таблице терминов прямо в отображенном файле.
+ * <p>
+ * Формат файла (big-endian):
+ * <pre>
+ * заголовок   MAGIC, VERSION, crc исходного TSV, число языков, статей, терминов,
+ *             смещения таблицы статей, таблицы терминов и пула строк
+ * статьи      [статья][язык] -> (смещение, длина) перевода в пуле, длина 0 - нет перевода
+ * термины     (смещение, длина, язык, статья) нормализованных форм, отсортированы по байтам UTF-8
+ * пул строк   UTF-8
+ * </pre>
+ */
+public class LocalDictionary {
+    private static final Logger logger = LoggerFactory.getLogger(LocalDictionary.class);
+
+    public static final String[] LANGUAGES = {"ru", "en", "es", "fr", "de"};
+    private static final String[] LANGUAGE_NAMES = {"russian", "english", "spanish", "french", "german"};
+
+    private static final int MAGIC = 0x54474443; // "TGDC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final int ENTRY_SLOT_SIZE = 8;
+    private static final int TERM_SIZE = 12;
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final String EDGE_PUNCTUATION = "?!.,;:¡¿\"'«»“”…";
+
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int termCount;
+    private final int entriesOffset;
+    private final int termsOffset;
+    private final int poolOffset;
+
+    private LocalDictionary(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("Неверный формат индекса словаря");
+        }
+        if (buffer.getInt(12) != LANGUAGES.length) {
+            throw new IOException("Индекс словаря собран для другого набора языков");
+        }
+        this.entryCount = buffer.getInt(16);
+        this.termCount = buffer.getInt(20);
+        this.entriesOffset = buffer.getInt(24);
+        this.termsOffset = buffer.getInt(28);
+        this.poolOffset = buffer.getInt(32);
+    }
+
+    /**
+     * Открывает индекс, пересобирая его из TSV-ресурса, если файла нет или словарь изменился
+     */
+    public static LocalDictionary loadOrBuild(Path indexPath, String resourceName) throws IOException {
+        byte[] source;
+        try (InputStream in = LocalDictionary.class.getClassLoader().getResourceAsStream(resourceName)) {
+            if (in == null) {
+                throw new IOException("Ресурс словаря не найден: " + resourceName);
+            }
+            source = in.readAllBytes();
+        }
+
+        int crc = crc(source);
+        if (!Files.exists(indexPath) || readSourceCrc(indexPath) != crc) {
+            logger.info("Сборка индекса словаря {} из {}", indexPath, resourceName);
+            Path tmp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            Files.write(tmp, build(new String(source, StandardCharsets.UTF_8), crc));
+            Files.move(tmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        return open(indexPath);
+    }
+
+    public static LocalDictionary open(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            // Отображение остается валидным и после закрытия канала
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            LocalDictionary dictionary = new LocalDictionary(mapped);
+            logger.info("Словарь загружен: статей={}, терминов={}, {} КБ",
+                    dictionary.entryCount, dictionary.termCount, channel.size() / 1024);
+            return dictionary;
+        }
+    }
+
+    /**
+     * Перевод короткой фразы или null, если ее нет в словаре.
+     *
+     * @param targetLanguage код (en) или название языка (english)
+     */
+    public String lookup(String text, String targetLanguage) {
+        int target = languageIndex(targetLanguage);
+        if (target < 0 || text == null) {
+            return null;
+        }
+
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            return null;
+        }
+        byte[] key = normalized.getBytes(StandardCharsets.UTF_8);
+
+        int index = lowerBound(key);
+        for (; index < termCount && compareTerm(index, key) == 0; index++) {
+            int record = termsOffset + index * TERM_SIZE;
+            int language = buffer.get(record + 6);
+            if (language == target) {
+                // Текст уже на целевом языке - пусть решает модель
+                continue;
+            }
+
+            String translation = readTranslation(buffer.getInt(record + 8), target);
+            if (translation != null) {
+                return matchCase(text, translation);
+            }
+        }
+        return null;
+    }
+
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    private int lowerBound(byte[] key) {
+        int low = 0;
+        int high = termCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareTerm(mid, key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Сравнение термина из индекса с ключом побайтово, без создания строк
+     */
+    private int compareTerm(int index, byte[] key) {
+        int record = termsOffset + index * TERM_SIZE;
+        int offset = poolOffset + buffer.getInt(record);
+        int length = buffer.getShort(record + 4) & 0xFFFF;
+
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int diff = (buffer.get(offset + i) & 0xFF) - (key[i] & 0xFF);
+            if (diff != 0) {
+                return diff;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String readTranslation(int entry, int language) {
+        int slot = entriesOffset + (entry * LANGUAGES.length + language) * ENTRY_SLOT_SIZE;
+        int length = buffer.getInt(slot + 4);
+        if (length == 0) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        buffer.get(poolOffset + buffer.getInt(slot), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String matchCase(String original, String translation) {
+        String trimmed = original.strip();
+        if (!trimmed.isEmpty() && Character.isUpperCase(trimmed.codePointAt(0))) {
+            return translation.substring(0, 1).toUpperCase(Locale.ROOT) + translation.substring(1);
+        }
+        return translation;
+    }
+
+    /**
+     * Нормализация для поиска: NFC, нижний регистр, ё -> е, схлопнутые пробелы, без пунктуации по краям
+     */
+    static String normalize(String text) {
+        String value = Normalizer.normalize(text, Normalizer.Form.NFC)
+                .toLowerCase(Locale.ROOT)
+                .replace('ё', 'е');
+        value = SPACES.matcher(value).replaceAll(" ").strip();
+
+        int start = 0;
+        int end = value.length();
+        while (start < end && EDGE_PUNCTUATION.indexOf(value.charAt(start)) >= 0) {
+            start++;
+        }
+        while (end > start && EDGE_PUNCTUATION.indexOf(value.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        return value.substring(start, end).strip();
+    }
+
+    static int languageIndex(String language) {
+        if (language == null) {
+            return -1;
+        }
+        for (int i = 0; i < LANGUAGES.length; i++) {
+            if (LANGUAGES[i].equalsIgnoreCase(language) || LANGUAGE_NAMES[i].equalsIgnoreCase(language)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Сборка бинарного индекса из TSV: строка заголовка с кодами языков, затем по статье на строку
+     */
+    static byte[] build(String tsv, int sourceCrc) throws IOException {
+        List<String[]> entries = new ArrayList<>();
+        int[] columns = null;
+
+        try (BufferedReader reader = new BufferedReader(new StringReader(tsv))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] cells = line.split("\t", -1);
+                if (columns == null) {
+                    columns = new int[cells.length];
+                    for (int i = 0; i < cells.length; i++) {
+                        columns[i] = languageIndex(cells[i].strip());
+                    }
+                    continue;
+                }
+
+                String[] entry = new String[LANGUAGES.length];
+                for (int i = 0; i < cells.length && i < columns.length; i++) {
+                    if (columns[i] >= 0 && !cells[i].isBlank()) {
+                        entry[columns[i]] = cells[i].strip();
+                    }
+                }
+                entries.add(entry);
+            }
+        }
+
+        ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        int[][] slots = new int[entries.size() * LANGUAGES.length][];
+        List<Term> terms = new ArrayList<>();
+
+        for (int entry = 0; entry < entries.size(); entry++) {
+            for (int language = 0; language < LANGUAGES.length; language++) {
+                String value = entries.get(entry)[language];
+                if (value == null) {
+                    slots[entry * LANGUAGES.length + language] = new int[]{0, 0};
+                    continue;
+                }
+
+                byte[] display = value.getBytes(StandardCharsets.UTF_8);
+                slots[entry * LANGUAGES.length + language] = new int[]{pool.size(), display.length};
+                pool.write(display);
+
+                byte[] term = normalize(value).getBytes(StandardCharsets.UTF_8);
+                terms.add(new Term(pool.size(), term, language, entry));
+                pool.write(term);
+            }
+        }
+
+        terms.sort(Comparator.<Term, byte[]>comparing(term -> term.bytes, Arrays::compareUnsigned)
+                .thenComparingInt(term -> term.language)
+                .thenComparingInt(term -> term.entry));
+
+        int entriesOffset = HEADER_SIZE;
+        int termsOffset = entriesOffset + slots.length * ENTRY_SLOT_SIZE;
+        int poolOffset = termsOffset + terms.size() * TERM_SIZE;
+        ByteBuffer out = ByteBuffer.allocate(poolOffset + pool.size());
+
+        out.putInt(MAGIC).putInt(VERSION).putInt(sourceCrc).putInt(LANGUAGES.length)
+                .putInt(entries.size()).putInt(terms.size())
+                .putInt(entriesOffset).putInt(termsOffset).putInt(poolOffset);
+        for (int[] slot : slots) {
+            out.putInt(slot[0]).putInt(slot[1]);
+        }
+        for (Term term : terms) {
+            out.putInt(term.poolOffset).putShort((short) term.bytes.length)
+                    .put((byte) term.language).put((byte) 0).putInt(term.entry);
+        }
+        out.put(pool.toByteArray());
+        return out.array();
+    }
+
+    private static int readSourceCrc(Path indexPath) {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            channel.read(header, 0);
+            return header.getInt(0) == MAGIC && header.getInt(4) == VERSION ? header.getInt(8) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static int crc(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    private static class Term {
+        final int poolOffset;
+        final byte[] bytes;
+        final int language;
+        final int entry;
+
+        Term(int poolOffset, byte[] bytes, int language, int entry) {
+            this.poolOffset = poolOffset;
+            this.bytes = bytes;
+            this.language = language;
+            this.entry = entry;
+        }
+    }
+}
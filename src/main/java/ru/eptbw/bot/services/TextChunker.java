@@ -0,0 +1,166 @@
+package ru.eptbw.bot.services;
+
+import java.text.BreakIterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Делит длинный текст на части не длиннее заданного размера.
+ * Границы выбираются по убыванию приоритета: абзац, предложение, слово; слово режется только если
+ * оно само длиннее части. Разделители между частями сохраняются, поэтому после перевода текст
+ * собирается с исходной разбивкой на абзацы.
+ */
+public final class TextChunker {
+    private static final Pattern PARAGRAPH_BREAK = Pattern.compile("\\n\\s*\\n");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final int PARAGRAPH = 0;
+    private static final int SENTENCE = 1;
+    private static final int WORD = 2;
+
+    private TextChunker() {
+    }
+
+    /**
+     * Часть текста и разделитель, который шел за ней в исходном тексте (у последней части - пустой)
+     */
+    public record Chunk(String text, String separator) {
+    }
+
+    public static List<Chunk> split(String text, int maxChars) {
+        if (maxChars <= 0) {
+            throw new IllegalArgumentException("Размер части должен быть положительным: " + maxChars);
+        }
+
+        List<Chunk> chunks = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return chunks;
+        }
+        if (text.length() <= maxChars) {
+            chunks.add(new Chunk(text, ""));
+            return chunks;
+        }
+
+        pack(text, PARAGRAPH, maxChars, chunks);
+        return chunks;
+    }
+
+    /**
+     * Собрать части обратно, подставив вместо исходного текста переводы в том же порядке
+     */
+    public static String join(List<Chunk> chunks, List<String> texts) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < texts.size(); i++) {
+            result.append(texts.get(i).strip());
+            if (i < texts.size() - 1) {
+                result.append(chunks.get(i).separator());
+            }
+        }
+        return result.toString();
+    }
+
+    private static void pack(String text, int level, int maxChars, List<Chunk> out) {
+        StringBuilder current = new StringBuilder();
+        String currentSeparator = "";
+
+        for (Chunk segment : segments(text, level)) {
+            if (segment.text().length() > maxChars) {
+                flush(current, currentSeparator, out);
+                current.setLength(0);
+
+                // Сегмент не влезает целиком - делим его по границам следующего уровня
+                if (level < WORD) {
+                    pack(segment.text(), level + 1, maxChars, out);
+                } else {
+                    cut(segment.text(), maxChars, out);
+                }
+                Chunk last = out.get(out.size() - 1);
+                out.set(out.size() - 1, new Chunk(last.text(), segment.separator()));
+                currentSeparator = segment.separator();
+                continue;
+            }
+
+            if (!current.isEmpty()
+                    && current.length() + currentSeparator.length() + segment.text().length() > maxChars) {
+                flush(current, currentSeparator, out);
+                current.setLength(0);
+            }
+            if (!current.isEmpty()) {
+                current.append(currentSeparator);
+            }
+            current.append(segment.text());
+            currentSeparator = segment.separator();
+        }
+
+        flush(current, currentSeparator, out);
+    }
+
+    private static void flush(StringBuilder current, String separator, List<Chunk> out) {
+        if (!current.isEmpty()) {
+            out.add(new Chunk(current.toString(), separator));
+        }
+    }
+
+    private static void cut(String word, int maxChars, List<Chunk> out) {
+        int start = 0;
+        while (start < word.length()) {
+            int end = Math.min(word.length(), start + maxChars);
+            // Не разрываем суррогатную пару
+            if (end < word.length() && end - start > 1 && Character.isHighSurrogate(word.charAt(end - 1))) {
+                end--;
+            }
+            out.add(new Chunk(word.substring(start, end), ""));
+            start = end;
+        }
+    }
+
+    private static List<Chunk> segments(String text, int level) {
+        return switch (level) {
+            case PARAGRAPH -> splitByPattern(text, PARAGRAPH_BREAK);
+            case SENTENCE -> splitSentences(text);
+            default -> splitByPattern(text, WHITESPACE);
+        };
+    }
+
+    private static List<Chunk> splitByPattern(String text, Pattern pattern) {
+        List<Chunk> segments = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        int start = 0;
+        while (matcher.find()) {
+            addSegment(segments, text.substring(start, matcher.start()), matcher.group());
+            start = matcher.end();
+        }
+        addSegment(segments, text.substring(start), "");
+        return segments;
+    }
+
+    private static List<Chunk> splitSentences(String text) {
+        List<Chunk> segments = new ArrayList<>();
+        BreakIterator iterator = BreakIterator.getSentenceInstance(Locale.ROOT);
+        iterator.setText(text);
+
+        int start = iterator.first();
+        for (int end = iterator.next(); end != BreakIterator.DONE; start = end, end = iterator.next()) {
+            // Пробелы в конце предложения становятся разделителем
+            int textEnd = end;
+            while (textEnd > start && Character.isWhitespace(text.charAt(textEnd - 1))) {
+                textEnd--;
+            }
+            addSegment(segments, text.substring(start, textEnd), text.substring(textEnd, end));
+        }
+        return segments;
+    }
+
+    private static void addSegment(List<Chunk> segments, String text, String separator) {
+        if (!text.isEmpty()) {
+            segments.add(new Chunk(text, separator));
+        } else if (!segments.isEmpty()) {
+            // Пустой сегмент (например, пробелы в начале) - приклеиваем разделитель к предыдущему
+            Chunk last = segments.get(segments.size() - 1);
+            segments.set(segments.size() - 1, new Chunk(last.text(), last.separator() + separator));
+        }
+    }
+}
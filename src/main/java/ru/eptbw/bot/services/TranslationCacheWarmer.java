@@ -0,0 +1,58 @@
+package ru.eptbw.bot.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.eptbw.bot.services.DatabaseManager.HistoryTranslation;
+
+import java.util.function.Predicate;
+
+/**
+ * Прогрев общего кеша переводов при старте: самые частые пары (текст, язык) из translation_history
+ * кладутся в кеш, чтобы после перезапуска популярные фразы не шли в Gemini все разом.
+ * История читается потоково и прогрев останавливается по истечении бюджета времени;
+ * запускается в фоне и не задерживает готовность бота.
+ */
+public class TranslationCacheWarmer {
+    private static final Logger logger = LoggerFactory.getLogger(TranslationCacheWarmer.class);
+
+    /**
+     * Источник истории: DatabaseManager::streamTopTranslations
+     */
+    @FunctionalInterface
+    public interface HistorySource {
+        int streamTopTranslations(int limit, int timeoutSeconds, Predicate<HistoryTranslation> consumer);
+    }
+
+    private final HistorySource history;
+    private final CachingTranslationBackend cache;
+
+    public TranslationCacheWarmer(HistorySource history, CachingTranslationBackend cache) {
+        this.history = history;
+        this.cache = cache;
+    }
+
+    /**
+     * @return число переводов, добавленных в кеш
+     */
+    public int warmUp(int limit, long budgetMillis) {
+        long start = System.currentTimeMillis();
+        long deadline = start + budgetMillis;
+        int[] loaded = new int[1];
+
+        int read = history.streamTopTranslations(limit, (int) Math.max(1, (budgetMillis + 999) / 1000), translation -> {
+            if (cache.preload(translation.originalText(), translation.targetLanguage(), translation.translatedText())) {
+                loaded[0]++;
+            }
+            return System.currentTimeMillis() < deadline;
+        });
+
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed >= budgetMillis) {
+            logger.info("Прогрев кеша переводов прерван по времени: загружено {} из {} прочитанных за {} мс",
+                    loaded[0], read, elapsed);
+        } else {
+            logger.info("Прогрев кеша переводов: загружено {} из {} прочитанных за {} мс", loaded[0], read, elapsed);
+        }
+        return loaded[0];
+    }
+}
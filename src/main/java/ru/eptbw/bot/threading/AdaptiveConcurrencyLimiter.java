@@ -0,0 +1,179 @@
+package ru.eptbw.bot.threading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Адаптивный лимит параллельных асинхронных вызовов (AIMD).
+ * Успешный быстрый ответ увеличивает лимит на 1/limit (примерно +1 за "окно"),
+ * перегрузка (429/5xx, таймаут) или ответ медленнее порога умножает лимит на backoffRatio.
+ * Вызовы сверх лимита ждут в очереди ограниченного размера.
+ * Порог задержки рассчитан на обычный запрос: для длинных ответов он масштабируется,
+ * а потоковые вызовы, которые живут, пока генерируется весь текст, проверяются только на ошибки.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+    private static final double BACKOFF_RATIO = 0.75;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdMs;
+    private final int maxQueueSize;
+    private final Predicate<Throwable> isOverload;
+
+    private final Deque<Runnable> waiting = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseTime;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      long latencyThresholdMs, int maxQueueSize,
+                                      Predicate<Throwable> isOverload) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.maxQueueSize = maxQueueSize;
+        this.isOverload = isOverload;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        return submit(call, 1.0);
+    }
+
+    /**
+     * @param latencyScale во сколько раз вызову можно превысить порог задержки;
+     *                     0 - задержку не учитывать (потоковые ответы)
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call, double latencyScale) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable start = () -> start(call, result, latencyScale);
+
+        synchronized (this) {
+            if (inFlight < (int) limit) {
+                inFlight++;
+            } else if (waiting.size() < maxQueueSize) {
+                waiting.addLast(start);
+                return result;
+            } else {
+                rejected++;
+                result.completeExceptionally(new RejectedExecutionException(
+                        "Очередь запросов " + name + " переполнена"));
+                return result;
+            }
+        }
+
+        start.run();
+        return result;
+    }
+
+    /**
+     * Запустить вызов, только если под лимитом есть свободное место; в очередь вызов не ставится.
+     * Отмена результата отменяет и сам вызов.
+     *
+     * @return результат вызова или null, если лимит исчерпан
+     */
+    public <T> CompletableFuture<T> trySubmit(Supplier<CompletableFuture<T>> call, double latencyScale) {
+        synchronized (this) {
+            if (inFlight >= (int) limit) {
+                return null;
+            }
+            inFlight++;
+        }
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        start(call, result, latencyScale);
+        return result;
+    }
+
+    private <T> void start(Supplier<CompletableFuture<T>> call, CompletableFuture<T> result, double latencyScale) {
+        if (result.isDone()) {
+            // Отменен, пока ждал в очереди - место освобождаем, не отправляя вызов
+            onComplete(0, 0, new CancellationException());
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+
+        CompletableFuture<T> source;
+        try {
+            source = call.get();
+        } catch (Exception e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+
+        CompletableFuture<T> started = source;
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                started.cancel(true);
+            }
+        });
+
+        source.whenComplete((value, error) -> {
+            onComplete(System.currentTimeMillis() - startTime, latencyScale, error);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(value);
+            }
+        });
+    }
+
+    private void onComplete(long latencyMs, double latencyScale, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+        boolean slow = latencyScale > 0 && latencyMs > latencyThresholdMs * latencyScale;
+        boolean overloaded = (cause != null && isOverload.test(cause)) || slow;
+
+        Deque<Runnable> toStart = new ArrayDeque<>();
+        synchronized (this) {
+            inFlight--;
+
+            if (overloaded) {
+                // Не уменьшаем лимит несколько раз подряд из-за одной волны ошибок
+                long now = System.currentTimeMillis();
+                if (now - lastDecreaseTime >= latencyThresholdMs / 4) {
+                    double previous = limit;
+                    limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+                    lastDecreaseTime = now;
+                    logger.warn("Лимит {} снижен: {} -> {} (задержка {}мс, ошибка: {})",
+                            name, (int) previous, (int) limit, latencyMs,
+                            cause != null ? cause.getMessage() : "нет");
+                }
+            } else if (cause == null) {
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            while (inFlight < (int) limit && !waiting.isEmpty()) {
+                inFlight++;
+                toStart.add(waiting.pollFirst());
+            }
+        }
+
+        toStart.forEach(Runnable::run);
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized String getStats() {
+        return String.format("лимит=%d, выполняется=%d, в очереди=%d, отклонено=%d",
+                (int) limit, inFlight, waiting.size(), rejected);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.eptbw.bot.threading;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Предохранитель для внешнего API.
+ * CLOSED - запросы проходят; после failureThreshold ошибок подряд переходит в OPEN.
+ * OPEN - запросы сразу отклоняются openMillis миллисекунд, затем HALF_OPEN.
+ * HALF_OPEN - пропускается один пробный запрос: успех закрывает предохранитель, ошибка снова открывает.
+ */
+public class CircuitBreaker {
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMillis;
+    private final LongSupplier clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean probeInFlight;
+    private long rejectedCount;
+    private long openCount;
+
+    public CircuitBreaker(String name, int failureThreshold, long openMillis) {
+        this(name, failureThreshold, openMillis, System::currentTimeMillis);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, long openMillis, LongSupplier clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.clock = clock;
+    }
+
+    public synchronized boolean allowRequest() {
+        if (state == State.OPEN && clock.getAsLong() - openedAt >= openMillis) {
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+            logger.info("Предохранитель {}: пробный запрос", name);
+        }
+
+        switch (state) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                if (!probeInFlight) {
+                    probeInFlight = true;
+                    return true;
+                }
+                rejectedCount++;
+                return false;
+            default:
+                rejectedCount++;
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        // Успех запроса, пропущенного еще до срабатывания, не говорит о восстановлении API:
+        // закрыть предохранитель может только пробный запрос
+        if (state == State.OPEN || (state == State.HALF_OPEN && !probeInFlight)) {
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            logger.info("Предохранитель {} закрыт, API восстановился", name);
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = clock.getAsLong();
+            probeInFlight = false;
+            openCount++;
+            logger.warn("Предохранитель {} открыт на {}мс после {} ошибок подряд",
+                    name, openMillis, consecutiveFailures);
+        }
+    }
+
+    /**
+     * Ответ, не говорящий о здоровье API (например, 400): освобождает пробный слот без смены состояния
+     */
+    public synchronized void recordIgnored() {
+        probeInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized String getStats() {
+        return String.format("предохранитель=%s, ошибок подряд=%d, открывался=%d, отклонено=%d",
+                state, consecutiveFailures, openCount, rejectedCount);
+    }
+}
@@ -4,6 +4,8 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ru.eptbw.config.Config;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -18,18 +20,25 @@ public class RateLimiterService {
     private final Semaphore globalLimiter;
     private final int perMinuteLimit;
     private final int perHourLimit;
+    private final long tokensPerMinute;
+    private final long tokensPerHour;
+    private final TokenWindow globalTokens;
+    private final LongAdder totalTokens = new LongAdder();
 
     private RateLimiterService() {
         this.perMinuteLimit = Config.getRateLimitPerMinute();
         this.perHourLimit = Config.getRateLimitPerHour();
         this.globalLimiter = new Semaphore(perMinuteLimit);
+        this.tokensPerMinute = Config.getTokenLimitPerMinute();
+        this.tokensPerHour = Config.getTokenLimitPerHour();
+        this.globalTokens = new TokenWindow(TimeUnit.MINUTES.toMillis(1), Config.getGlobalTokenLimitPerMinute());
 
         ThreadPoolManager.getInstance().scheduleAtFixedRate(
                 this::cleanupExpiredUsers, 1, 1, TimeUnit.HOURS
         );
 
-        logger.info("RateLimiterService инициализирован: {} в минуту, {} в час",
-                perMinuteLimit, perHourLimit);
+        logger.info("RateLimiterService инициализирован: {} в минуту, {} в час, токенов {} в минуту, {} в час",
+                perMinuteLimit, perHourLimit, tokensPerMinute, tokensPerHour);
     }
 
     public static synchronized RateLimiterService getInstance() {
@@ -49,7 +58,7 @@ public class RateLimiterService {
 
             // Лимит по пользователю
             UserRateLimit userLimit = userLimits.computeIfAbsent(
-                    userId, k -> new UserRateLimit(perMinuteLimit, perHourLimit)
+                    userId, k -> new UserRateLimit(perMinuteLimit, perHourLimit, tokensPerMinute, tokensPerHour)
             );
 
             boolean allowed = userLimit.tryAcquire();
@@ -69,6 +78,63 @@ public class RateLimiterService {
         }
     }
 
+    /**
+     * Проверка квоты токенов: пользователь с длинными текстами упирается в лимит раньше,
+     * чем пользователь, отправляющий отдельные слова
+     */
+    public boolean allowTokens(Long userId, int estimatedTokens) {
+        if (!globalTokens.hasRoom(estimatedTokens)) {
+            logger.warn("Глобальный лимит токенов превышен, запрос пользователя {} отклонен", userId);
+            return false;
+        }
+
+        UserRateLimit userLimit = userLimits.computeIfAbsent(
+                userId, k -> new UserRateLimit(perMinuteLimit, perHourLimit, tokensPerMinute, tokensPerHour)
+        );
+
+        boolean allowed = userLimit.hasTokenRoom(estimatedTokens);
+        if (!allowed) {
+            logger.warn("Лимит токенов пользователя {} превышен: {}/min, {}/hour",
+                    userId, userLimit.getMinuteTokens(), userLimit.getHourTokens());
+        }
+        return allowed;
+    }
+
+    /**
+     * Учесть фактический расход токенов по usageMetadata ответа Gemini
+     */
+    public void recordTokenUsage(Long userId, int tokens) {
+        recordGlobalTokenUsage(tokens);
+        recordUserTokenUsage(userId, tokens);
+    }
+
+    /**
+     * Расход любого вызова Gemini, в том числе без пользователя (фоновое обновление кеша, ответы,
+     * автоперевод): общий бюджет в минуту должен видеть все потраченные токены
+     */
+    public void recordGlobalTokenUsage(int tokens) {
+        totalTokens.add(tokens);
+        globalTokens.add(tokens);
+    }
+
+    /**
+     * Доля расхода, которая относится к квоте пользователя; общий бюджет учитывается отдельно
+     */
+    public void recordUserTokenUsage(Long userId, int tokens) {
+        userLimits.computeIfAbsent(
+                userId, k -> new UserRateLimit(perMinuteLimit, perHourLimit, tokensPerMinute, tokensPerHour)
+        ).addTokens(tokens);
+    }
+
+    /**
+     * Грубая оценка токенов на перевод до запроса: ~3 символа на токен во входе,
+     * столько же в ответе и постоянная часть промпта
+     */
+    public static int estimateTranslationTokens(String text) {
+        int inputTokens = (text.length() + 2) / 3;
+        return 30 + inputTokens * 2;
+    }
+
     public void recordSuccess(Long userId) {
         UserRateLimit userLimit = userLimits.get(userId);
         if (userLimit != null) {
@@ -89,12 +155,20 @@ public class RateLimiterService {
             return "Нет данных о лимитах";
         }
 
-        return String.format("Лимиты пользователя %d: %d/%d в минуту, %d/%d в час, успешно: %d, ошибок: %d",
+        return String.format("Лимиты пользователя %d: %d/%d в минуту, %d/%d в час, успешно: %d, ошибок: %d, " +
+                        "токенов: %d/%d в минуту, %d/%d в час",
                 userId,
                 userLimit.getMinuteCount(), perMinuteLimit,
                 userLimit.getHourCount(), perHourLimit,
                 userLimit.getSuccessCount(),
-                userLimit.getFailureCount());
+                userLimit.getFailureCount(),
+                userLimit.getMinuteTokens(), tokensPerMinute,
+                userLimit.getHourTokens(), tokensPerHour);
+    }
+
+    public String getTokenStats() {
+        return String.format("Токены: всего=%d, за текущую минуту=%d/%d",
+                totalTokens.sum(), globalTokens.current(), globalTokens.limit);
     }
 
     private void cleanupExpiredUsers() {
@@ -110,11 +184,33 @@ public class RateLimiterService {
         private final Semaphore hourLimiter;
         private final AtomicInteger successCount = new AtomicInteger(0);
         private final AtomicInteger failureCount = new AtomicInteger(0);
+        private final TokenWindow minuteTokens;
+        private final TokenWindow hourTokens;
         private volatile long lastAccessTime = System.currentTimeMillis();
 
-        UserRateLimit(int perMinute, int perHour) {
+        UserRateLimit(int perMinute, int perHour, long tokensPerMinute, long tokensPerHour) {
             this.minuteLimiter = new Semaphore(perMinute);
             this.hourLimiter = new Semaphore(perHour);
+            this.minuteTokens = new TokenWindow(TimeUnit.MINUTES.toMillis(1), tokensPerMinute);
+            this.hourTokens = new TokenWindow(TimeUnit.HOURS.toMillis(1), tokensPerHour);
+        }
+
+        boolean hasTokenRoom(long tokens) {
+            lastAccessTime = System.currentTimeMillis();
+            return minuteTokens.hasRoom(tokens) && hourTokens.hasRoom(tokens);
+        }
+
+        void addTokens(long tokens) {
+            minuteTokens.add(tokens);
+            hourTokens.add(tokens);
+        }
+
+        long getMinuteTokens() {
+            return minuteTokens.current();
+        }
+
+        long getHourTokens() {
+            return hourTokens.current();
         }
 
         boolean tryAcquire() {
@@ -158,4 +254,40 @@ public class RateLimiterService {
             return lastAccessTime;
         }
     }
-}
\ No newline at end of file
+
+    // Счетчик токенов в фиксированном окне без блокировок
+    private static class TokenWindow {
+        private final long windowMillis;
+        private final long limit;
+        private final AtomicLong windowStart = new AtomicLong(System.currentTimeMillis());
+        private final AtomicLong used = new AtomicLong(0);
+
+        TokenWindow(long windowMillis, long limit) {
+            this.windowMillis = windowMillis;
+            this.limit = limit;
+        }
+
+        boolean hasRoom(long tokens) {
+            return current() + tokens <= limit;
+        }
+
+        void add(long tokens) {
+            roll();
+            used.addAndGet(tokens);
+        }
+
+        long current() {
+            roll();
+            return used.get();
+        }
+
+        private void roll() {
+            long now = System.currentTimeMillis();
+            long start = windowStart.get();
+            // Сбрасывает окно только поток, выигравший CAS
+            if (now - start >= windowMillis && windowStart.compareAndSet(start, now)) {
+                used.set(0);
+            }
+        }
+    }
+}
@@ -7,9 +7,11 @@ import ru.eptbw.config.Config;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.PrintWriter;
+import java.util.Map;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 
 //1. Задача поступает в submitTask()
@@ -30,6 +32,7 @@ public class ThreadPoolManager {
     private final AtomicInteger completedTasks = new AtomicInteger(0);
     private final AtomicInteger failedTasks = new AtomicInteger(0);
     private final AtomicLong totalProcessingTime = new AtomicLong(0);
+    private final Map<String, Supplier<String>> statsSources = new ConcurrentSkipListMap<>();
     private String statsFilePath;
 
     private ThreadPoolManager() {
@@ -197,14 +200,32 @@ public class ThreadPoolManager {
         long avgTime = totalTasks.get() > 0 ?
                 totalProcessingTime.get() / totalTasks.get() : 0;
 
-        return String.format("[%s] Статистика потоков: " +
+        StringBuilder stats = new StringBuilder(String.format("[%s] Статистика потоков: " +
                         "Размер пула=%d, Активные=%d, В очереди=%d, " +
                         "Выполнено=%d, Всего задач=%d, Ошибок=%d, " +
                         "Среднее время=%dмс\n",
                 java.time.LocalDateTime.now(),
                 poolSize, activeCount, queueSize,
                 completed, totalTasks.get(), failedTasks.get(),
-                avgTime);
+                avgTime));
+
+        // Статистика других сервисов (Gemini, кеш и т.д.)
+        for (Map.Entry<String, Supplier<String>> source : statsSources.entrySet()) {
+            try {
+                stats.append("    ").append(source.getValue().get()).append('\n');
+            } catch (Exception e) {
+                logger.warn("Ошибка получения статистики {}: {}", source.getKey(), e.getMessage());
+            }
+        }
+
+        return stats.toString();
+    }
+
+    /**
+     * Зарегистрировать источник статистики, который будет выводиться вместе со статистикой потоков
+     */
+    public void registerStatsSource(String name, Supplier<String> source) {
+        statsSources.put(name, source);
     }
 
     public static synchronized ThreadPoolManager getInstance() {
@@ -11,10 +11,158 @@ public class Config {
         return dotenv.get("GEMINI_API_KEY");
     }
 
+    // Несколько ключей через запятую, вес после двоеточия: "ключ1:2,ключ2". Если не задано - GEMINI_API_KEY
+    public static String getGeminiApiKeys() {
+        String keys = dotenv.get("GEMINI_API_KEYS", "");
+        return keys.isBlank() ? getGeminiApiKey() : keys;
+    }
+
+    public static long getGeminiKeyCooldownSeconds() {
+        return Long.parseLong(dotenv.get("GEMINI_KEY_COOLDOWN_SECONDS", "60"));
+    }
+
     public static String getGeminiModel() {
         return dotenv.get("GEMINI_MODEL", "gemini-2.0-flash");
     }
 
+    // Адрес Gemini API; для нагрузочных тестов можно указать локальный фейковый сервер
+    public static String getGeminiBaseUrl() {
+        return dotenv.get("GEMINI_BASE_URL", "https://generativelanguage.googleapis.com/v1beta");
+    }
+
+    // Быстрая модель для коротких текстов (пустое значение отключает маршрутизацию)
+    public static String getGeminiFastModel() {
+        return dotenv.get("GEMINI_FAST_MODEL", "gemini-2.0-flash-lite");
+    }
+
+    public static int getGeminiFastMaxTextLength() {
+        return Integer.parseInt(dotenv.get("GEMINI_FAST_MAX_TEXT_LENGTH", "200"));
+    }
+
+    // Локальный словарь для коротких фраз
+    public static boolean isDictionaryEnabled() {
+        return Boolean.parseBoolean(dotenv.get("DICTIONARY_ENABLED", "true"));
+    }
+
+    public static String getDictionaryIndexPath() {
+        return dotenv.get("DICTIONARY_INDEX_PATH", "dictionary.idx");
+    }
+
+    public static int getDictionaryMaxWords() {
+        return Integer.parseInt(dotenv.get("DICTIONARY_MAX_WORDS", "4"));
+    }
+
+    // Пакетная отправка коротких переводов в Gemini
+    public static boolean isGeminiBatchingEnabled() {
+        return Boolean.parseBoolean(dotenv.get("GEMINI_BATCH_ENABLED", "true"));
+    }
+
+    public static long getGeminiBatchWindowMs() {
+        return Long.parseLong(dotenv.get("GEMINI_BATCH_WINDOW_MS", "30"));
+    }
+
+    public static int getGeminiBatchMaxSize() {
+        return Integer.parseInt(dotenv.get("GEMINI_BATCH_MAX_SIZE", "8"));
+    }
+
+    public static int getGeminiBatchMaxTextLength() {
+        return Integer.parseInt(dotenv.get("GEMINI_BATCH_MAX_TEXT_LENGTH", "120"));
+    }
+
+    // Потоковый вывод перевода с правкой сообщения
+    public static boolean isStreamingEnabled() {
+        return Boolean.parseBoolean(dotenv.get("STREAMING_ENABLED", "true"));
+    }
+
+    public static int getStreamingMinTextLength() {
+        return Integer.parseInt(dotenv.get("STREAMING_MIN_TEXT_LENGTH", "200"));
+    }
+
+    public static long getStreamEditIntervalMs() {
+        return Long.parseLong(dotenv.get("STREAM_EDIT_INTERVAL_MS", "1000"));
+    }
+
+    // Длинные тексты: максимальная длина и параллельный перевод по частям
+    public static int getMaxTextLength() {
+        return Integer.parseInt(dotenv.get("MAX_TEXT_LENGTH", "4096"));
+    }
+
+    public static int getTranslationChunkSize() {
+        return Integer.parseInt(dotenv.get("TRANSLATION_CHUNK_SIZE", "1500"));
+    }
+
+    public static int getTranslationChunkParallelism() {
+        return Integer.parseInt(dotenv.get("TRANSLATION_CHUNK_PARALLELISM", "4"));
+    }
+
+    // Адаптивный лимит параллельных запросов к Gemini
+    public static int getGeminiConcurrencyInitial() {
+        return Integer.parseInt(dotenv.get("GEMINI_CONCURRENCY_INITIAL", "10"));
+    }
+
+    public static int getGeminiConcurrencyMin() {
+        return Integer.parseInt(dotenv.get("GEMINI_CONCURRENCY_MIN", "1"));
+    }
+
+    public static int getGeminiConcurrencyMax() {
+        return Integer.parseInt(dotenv.get("GEMINI_CONCURRENCY_MAX", "50"));
+    }
+
+    public static long getGeminiLatencyThresholdMs() {
+        return Long.parseLong(dotenv.get("GEMINI_LATENCY_THRESHOLD_MS", "8000"));
+    }
+
+    public static int getGeminiQueueMaxSize() {
+        return Integer.parseInt(dotenv.get("GEMINI_QUEUE_MAX_SIZE", "500"));
+    }
+
+    // Пул соединений и диспетчер HTTP-клиента Gemini
+    public static int getGeminiMaxRequests() {
+        return Integer.parseInt(dotenv.get("GEMINI_MAX_REQUESTS", "128"));
+    }
+
+    public static int getGeminiMaxRequestsPerHost() {
+        return Integer.parseInt(dotenv.get("GEMINI_MAX_REQUESTS_PER_HOST", "64"));
+    }
+
+    public static int getGeminiPoolMaxIdle() {
+        return Integer.parseInt(dotenv.get("GEMINI_POOL_MAX_IDLE", "16"));
+    }
+
+    public static long getGeminiPoolKeepAliveSeconds() {
+        return Long.parseLong(dotenv.get("GEMINI_POOL_KEEP_ALIVE_SECONDS", "300"));
+    }
+
+    public static long getGeminiKeepAliveIntervalSeconds() {
+        return Long.parseLong(dotenv.get("GEMINI_KEEPALIVE_INTERVAL_SECONDS", "60"));
+    }
+
+    // Хеджирование медленных запросов к Gemini
+    public static boolean isGeminiHedgingEnabled() {
+        return Boolean.parseBoolean(dotenv.get("GEMINI_HEDGING_ENABLED", "false"));
+    }
+
+    public static double getGeminiHedgePercentile() {
+        return Double.parseDouble(dotenv.get("GEMINI_HEDGE_PERCENTILE", "95"));
+    }
+
+    public static double getGeminiHedgeMaxPercent() {
+        return Double.parseDouble(dotenv.get("GEMINI_HEDGE_MAX_PERCENT", "5"));
+    }
+
+    public static long getGeminiHedgeMinDelayMs() {
+        return Long.parseLong(dotenv.get("GEMINI_HEDGE_MIN_DELAY_MS", "300"));
+    }
+
+    // Предохранитель Gemini API
+    public static int getCircuitFailureThreshold() {
+        return Integer.parseInt(dotenv.get("CIRCUIT_FAILURE_THRESHOLD", "5"));
+    }
+
+    public static long getCircuitOpenSeconds() {
+        return Long.parseLong(dotenv.get("CIRCUIT_OPEN_SECONDS", "30"));
+    }
+
     public static String getTelegramBotToken() {
         return dotenv.get("TELEGRAM_BOT_TOKEN");
     }
@@ -57,15 +205,74 @@ public class Config {
         return Integer.parseInt(dotenv.get("RATE_LIMIT_PER_HOUR", "1000"));
     }
 
+    // Квоты токенов Gemini
+    public static long getTokenLimitPerMinute() {
+        return Long.parseLong(dotenv.get("TOKEN_LIMIT_PER_MINUTE", "20000"));
+    }
+
+    public static long getTokenLimitPerHour() {
+        return Long.parseLong(dotenv.get("TOKEN_LIMIT_PER_HOUR", "200000"));
+    }
+
+    public static long getGlobalTokenLimitPerMinute() {
+        return Long.parseLong(dotenv.get("GLOBAL_TOKEN_LIMIT_PER_MINUTE", "1000000"));
+    }
+
     // Кеширование
     public static int getCacheMaxSize() {
         return Integer.parseInt(dotenv.get("CACHE_MAX_SIZE", "1000"));
     }
 
+    // Предел памяти под кеш в целом (ключи, значения, служебные объекты), 0 - только CACHE_MAX_SIZE
+    public static long getCacheMaxMb() {
+        return Long.parseLong(dotenv.get("CACHE_MAX_MB", "64"));
+    }
+
     public static long getCacheExpireMinutes() {
         return Long.parseLong(dotenv.get("CACHE_EXPIRE_MINUTES", "60"));
     }
 
+    // Общий для всех пользователей кеш переводов (0 - отключен)
+    public static long getTranslationCacheExpireMinutes() {
+        return Long.parseLong(dotenv.get("TRANSLATION_CACHE_EXPIRE_MINUTES", "1440"));
+    }
+
+    // Мягкий срок перевода: после него запись еще отдается, а в фоне запрашивается свежий перевод
+    public static long getTranslationCacheRefreshMinutes() {
+        return Long.parseLong(dotenv.get("TRANSLATION_CACHE_REFRESH_MINUTES", "720"));
+    }
+
+    // Прогрев кеша самыми частыми переводами из истории при старте (0 - отключен)
+    public static int getCacheWarmupLimit() {
+        return Integer.parseInt(dotenv.get("CACHE_WARMUP_LIMIT", "500"));
+    }
+
+    public static long getCacheWarmupBudgetSeconds() {
+        return Long.parseLong(dotenv.get("CACHE_WARMUP_BUDGET_SECONDS", "10"));
+    }
+
+    // Строковые значения кеша вне кучи (UTF-8, длинные - сжатые)
+    public static boolean isCacheOffHeapEnabled() {
+        return Boolean.parseBoolean(dotenv.get("CACHE_OFFHEAP_ENABLED", "true"));
+    }
+
+    public static long getCacheOffHeapMaxMb() {
+        return Long.parseLong(dotenv.get("CACHE_OFFHEAP_MAX_MB", "64"));
+    }
+
+    // Дисковый кеш переводов, переживающий перезапуск
+    public static boolean isDiskCacheEnabled() {
+        return Boolean.parseBoolean(dotenv.get("DISK_CACHE_ENABLED", "true"));
+    }
+
+    public static String getDiskCacheDir() {
+        return dotenv.get("DISK_CACHE_DIR", "cache");
+    }
+
+    public static long getDiskCacheMaxMb() {
+        return Long.parseLong(dotenv.get("DISK_CACHE_MAX_MB", "64"));
+    }
+
     // Очередь сообщений
     public static int getMaxRetryAttempts() {
         return Integer.parseInt(dotenv.get("MAX_RETRY_ATTEMPTS", "3"));
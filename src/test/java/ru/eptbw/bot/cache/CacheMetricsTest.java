@@ -0,0 +1,67 @@
+package ru.eptbw.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheMetricsTest {
+
+    @Test
+    void counters_ShouldBeSplitByNamespace() {
+        // Arrange
+        CacheMetrics metrics = new CacheMetrics();
+
+        // Act
+        metrics.recordHit("translation:aaa", false);
+        metrics.recordHit("translation:bbb", true);
+        metrics.recordMiss("translation:ccc");
+        metrics.recordMiss("command:1:/help:0");
+        metrics.recordRemoval("command:1:/help:0", SegmentedLruMap.RemovalCause.EXPIRED);
+        metrics.recordHit("plainKey", false);
+
+        // Assert
+        assertEquals(2, metrics.getHits("translation:x"));
+        assertEquals(1, metrics.getMisses("translation:x"));
+        assertEquals(0, metrics.getHits("command:x"));
+        assertEquals(1, metrics.getRemovals("command:x", SegmentedLruMap.RemovalCause.EXPIRED));
+        assertEquals(1, metrics.getHits("anotherPlainKey"));
+
+        String stats = metrics.getStats();
+        assertTrue(stats.startsWith("Метрики кеша: попаданий=3 из 5"), stats);
+        assertTrue(stats.contains("translation: попаданий=2 (с диска 1), промахов=1"), stats);
+        assertTrue(stats.contains("command: попаданий=0"), stats);
+    }
+
+    @Test
+    void histogram_ShouldEstimatePercentilesByBucketBound() {
+        // Arrange
+        CacheMetrics.LoadTimeHistogram histogram = new CacheMetrics.LoadTimeHistogram();
+
+        // Act: 90 быстрых загрузок и 10 медленных
+        for (int i = 0; i < 90; i++) {
+            histogram.record(3);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(900);
+        }
+
+        // Assert
+        assertEquals(100, histogram.getCount());
+        assertEquals(4, histogram.percentile(50));
+        assertEquals(1024, histogram.percentile(95));
+        assertTrue(histogram.getStats().startsWith("p50/p95/p99<=4/1024/1024 мс"), histogram.getStats());
+    }
+
+    @Test
+    void recordLoad_ShouldCountFailures() {
+        CacheMetrics metrics = new CacheMetrics();
+
+        metrics.recordLoad("translation:a", TimeUnit.MILLISECONDS.toNanos(120), true);
+        metrics.recordLoad("translation:b", TimeUnit.MILLISECONDS.toNanos(80), false);
+
+        assertEquals(2, metrics.getLoadTime("translation:").getCount());
+        assertTrue(metrics.getStats().contains("ошибок загрузки=1"), metrics.getStats());
+    }
+}
@@ -0,0 +1,78 @@
+package ru.eptbw.bot.cache;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность put/get заполненного кеша из нескольких потоков.
+ * Кеш заполнен до maxSize, поэтому каждая вставка нового ключа вытесняет запись;
+ * до перехода на SLRU такая вставка обходила всю карту и на 1M записей занимала миллисекунды.
+ * Запуск: main() этого класса из IDE или через exec:java с classpath тестов.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheServiceBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int entries;
+
+    private CacheService cache;
+    private String[] keys;
+
+    @Setup
+    public void setUp() {
+        cache = new CacheService(entries, 60);
+
+        // Ключей вдвое больше емкости: половина запросов get промахивается, put вытесняет
+        keys = new String[entries * 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "translation:" + i + ":russian";
+        }
+        for (int i = 0; i < entries; i++) {
+            cache.put(keys[i], "value-" + i);
+        }
+    }
+
+    @Benchmark
+    public Object get() {
+        return cache.get(keys[ThreadLocalRandom.current().nextInt(keys.length)]);
+    }
+
+    @Benchmark
+    public void put() {
+        int index = ThreadLocalRandom.current().nextInt(keys.length);
+        cache.put(keys[index], "value-" + index);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public Object mixedGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedPut() {
+        put();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CacheServiceBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
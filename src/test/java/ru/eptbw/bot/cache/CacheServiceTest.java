@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -239,18 +240,40 @@ class CacheServiceTest {
     @Test
     void testTranslationCacheKeyGeneration() {
         // Arrange
-        Long userId = 12345L;
         String text = "Hello world";
-        String targetLang = "russian";
+        String targetLang = "ru";
 
         // Act
-        String cacheKey = cacheService.getTranslationCacheKey(userId, text, targetLang);
+        String cacheKey = cacheService.getTranslationCacheKey(text, "auto", targetLang);
 
         // Assert
         assertNotNull(cacheKey);
         assertTrue(cacheKey.startsWith("translation:"));
-        assertTrue(cacheKey.contains("12345"));
-        assertTrue(cacheKey.contains("russian"));
+        assertEquals(cacheKey, cacheService.getTranslationCacheKey(text, "auto", targetLang));
+        assertNotEquals(cacheKey, cacheService.getTranslationCacheKey(text, "en", targetLang));
+    }
+
+    @Test
+    void testSharedTranslationCacheKey_ShouldNotDependOnUserOrWhitespace() {
+        // Act
+        String key = cacheService.getTranslationCacheKey("Hello  world\r\n", "en", "ru");
+        String sameText = cacheService.getTranslationCacheKey(" Hello world", "en", "ru");
+        String otherTarget = cacheService.getTranslationCacheKey("Hello world", "en", "de");
+
+        // Assert
+        assertTrue(key.startsWith("translation:"));
+        assertEquals(key, sameText);
+        assertNotEquals(key, otherTarget);
+    }
+
+    @Test
+    void testSharedTranslationCacheKey_ShouldSeparateHashCodeCollisions() {
+        // Arrange: у "Aa" и "BB" одинаковый String.hashCode()
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        // Act & Assert
+        assertNotEquals(cacheService.getTranslationCacheKey("Aa", "auto", "ru"),
+                cacheService.getTranslationCacheKey("BB", "auto", "ru"));
     }
 
     @Test
@@ -292,4 +315,116 @@ class CacheServiceTest {
         assertEquals(integerValue, cacheService.get(integerKey));
         assertEquals(booleanValue, cacheService.get(booleanKey));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testByteBoundEvictsLargeValues() {
+        // Arrange: места на 1000 записей, но памяти всего 64KB
+        CacheService bounded = new CacheService(1000, 60, 0, 64 * 1024);
+        String large = "а".repeat(4096); // ~8KB в куче (кириллица - 2 байта на символ)
+
+        // Act
+        for (int i = 0; i < 20; i++) {
+            bounded.put("large" + i, large);
+        }
+
+        // Assert
+        assertTrue(bounded.size() < 10, "Записей: " + bounded.size());
+        assertNotNull(bounded.get("large19"));
+        assertTrue(bounded.getStats().contains("/64KB"), bounded.getStats());
+    }
+
+    @Test
+    void testEstimateStringSize() {
+        assertEquals(24 + 16 + 8, CacheService.estimateStringSize("12345678"));
+        assertEquals(24 + 16 + 16, CacheService.estimateStringSize("абвгдежз"));
+    }
+
+    @Test
+    void testCleanupHonoursPerEntryTtl() throws InterruptedException {
+        // Arrange: ответ на команду живет меньше перевода
+        CacheService cache = new CacheService(100, 60);
+        cache.put("command:1", "ответ", 0);
+        cache.put("translation:1", "перевод", 60);
+
+        // Act: ждем поворота колеса на следующую секунду
+        Thread.sleep(2100);
+        cache.cleanupExpired();
+
+        // Assert
+        assertEquals(1, cache.size());
+        assertEquals("перевод", cache.get("translation:1"));
+        assertTrue(cache.getStats().contains("истекло=1"), cache.getStats());
+    }
+
+    @Test
+    void testMetricsTrackHitsMissesAndEvictions() {
+        // Arrange
+        CacheService cache = new CacheService(64, 60);
+        cache.put("translation:hot", "перевод");
+
+        // Act
+        cache.get("translation:hot");
+        cache.get("translation:missing");
+        for (int i = 0; i < 100; i++) {
+            cache.put("command:" + i, "ответ");
+        }
+        cache.put("translation:hot", "новый перевод");
+
+        // Assert
+        CacheMetrics metrics = cache.getMetrics();
+        assertEquals(1, metrics.getHits("translation:"));
+        assertEquals(1, metrics.getMisses("translation:"));
+        assertTrue(metrics.getRemovals("command:", SegmentedLruMap.RemovalCause.SIZE) > 0);
+        assertEquals(1, metrics.getRemovals("translation:", SegmentedLruMap.RemovalCause.REPLACED));
+        assertTrue(cache.getMetricsStats().contains("translation: попаданий=1"), cache.getMetricsStats());
+    }
+
+    @Test
+    void testStaleEntryIsServedWhileSingleRefreshRuns() throws InterruptedException {
+        // Arrange: мягкий срок 0 минут - запись устаревает сразу, жесткий - час
+        CacheService cache = new CacheService(100, 60);
+        cache.put("translation:hot", "старый перевод", 0, 60);
+        Thread.sleep(5);
+        AtomicInteger reloads = new AtomicInteger();
+        CompletableFuture<String> reload = new CompletableFuture<>();
+
+        // Act: два читателя во время одного обновления
+        String first = cache.getWithRefresh("translation:hot", () -> {
+            reloads.incrementAndGet();
+            return reload;
+        });
+        String second = cache.getWithRefresh("translation:hot", () -> {
+            reloads.incrementAndGet();
+            return reload;
+        });
+        reload.complete("новый перевод");
+
+        // Assert
+        assertEquals("старый перевод", first);
+        assertEquals("старый перевод", second);
+        assertEquals(1, reloads.get());
+        assertEquals("новый перевод", cache.get("translation:hot"));
+        assertEquals(1, cache.getMetrics().getRefreshes("translation:"));
+    }
+
+    @Test
+    void testFailedRefreshKeepsStaleEntry() throws InterruptedException {
+        CacheService cache = new CacheService(100, 60);
+        cache.put("translation:hot", "перевод", 0, 60);
+        Thread.sleep(5);
+
+        cache.getWithRefresh("translation:hot", () -> CompletableFuture.completedFuture(null));
+
+        assertEquals("перевод", cache.get("translation:hot"));
+    }
+
+    @Test
+    void testPlainGetDoesNotRefresh() throws InterruptedException {
+        CacheService cache = new CacheService(100, 60);
+        cache.put("translation:hot", "перевод", 0, 60);
+        Thread.sleep(5);
+
+        assertEquals("перевод", cache.get("translation:hot"));
+        assertEquals(0, cache.getMetrics().getRefreshes("translation:"));
+    }
+}
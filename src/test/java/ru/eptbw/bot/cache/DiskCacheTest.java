@@ -0,0 +1,166 @@
+package ru.eptbw.bot.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiskCacheTest {
+    private static final long HOUR = 3_600_000;
+
+    @TempDir
+    Path directory;
+
+    private DiskCache open() {
+        return new DiskCache(directory, 1024 * 1024, Runnable::run);
+    }
+
+    private static long inAnHour() {
+        return System.currentTimeMillis() + HOUR;
+    }
+
+    @Test
+    void putAndGet_ShouldReturnLatestValue() {
+        // Arrange
+        DiskCache cache = open();
+
+        // Act
+        cache.put("translation:a", "первый", inAnHour());
+        cache.put("translation:a", "второй", inAnHour());
+        cache.put("translation:b", "expired", System.currentTimeMillis() - 1);
+
+        // Assert
+        assertEquals("второй", cache.get("translation:a").value());
+        assertNull(cache.get("translation:b"));
+        assertNull(cache.get("translation:missing"));
+    }
+
+    @Test
+    void entries_ShouldSurviveRestartWithAndWithoutSavedIndex() {
+        // Arrange: первая половина попадает в индекс при закрытии, вторая остается только в журнале
+        DiskCache first = open();
+        for (int i = 0; i < 100; i++) {
+            first.put("translation:" + i, "value-" + i, inAnHour());
+        }
+        first.close();
+
+        DiskCache second = open();
+        for (int i = 100; i < 200; i++) {
+            second.put("translation:" + i, "value-" + i, inAnHour());
+        }
+        second.remove("translation:5");
+
+        // Act: перезапуск без close - индекс старый, хвост дочитывается из журнала
+        DiskCache restarted = open();
+
+        // Assert
+        for (int i = 0; i < 200; i++) {
+            DiskCache.CachedValue cached = restarted.get("translation:" + i);
+            if (i == 5) {
+                assertNull(cached);
+            } else {
+                assertEquals("value-" + i, cached.value(), "ключ " + i);
+            }
+        }
+    }
+
+    @Test
+    void compaction_ShouldBoundLogAndKeepNewestEntries() throws IOException {
+        // Arrange
+        DiskCache cache = new DiskCache(directory, 64 * 1024, Runnable::run);
+        String value = "x".repeat(500);
+
+        // Act: пишем в несколько раз больше лимита
+        for (int i = 0; i < 600; i++) {
+            cache.put("translation:" + i, value + i, inAnHour());
+        }
+
+        // Assert
+        assertTrue(Files.size(directory.resolve("translations.log")) <= 64 * 1024);
+        assertEquals(value + 599, cache.get("translation:599").value());
+        assertNull(cache.get("translation:0"));
+        assertTrue(cache.getStats().contains("сжатий="));
+    }
+
+    @Test
+    void compaction_ShouldKeepLatestValuesAndConcurrentWrites() throws Exception {
+        // Arrange: часть значений в индексе, их перезаписи - в хвосте
+        DiskCache cache = open();
+        for (int i = 0; i < 100; i++) {
+            cache.put("translation:" + i, "old-" + i, inAnHour());
+        }
+        cache.flushIndex();
+        for (int i = 0; i < 100; i += 2) {
+            cache.put("translation:" + i, "new-" + i, inAnHour());
+        }
+
+        // Act: записи продолжают идти во время сжатия
+        Thread compaction = new Thread(() -> {
+            try {
+                cache.compact();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        compaction.start();
+        for (int i = 100; i < 300; i++) {
+            cache.put("translation:" + i, "late-" + i, inAnHour());
+        }
+        compaction.join();
+        DiskCache restarted = open();
+
+        // Assert
+        for (DiskCache disk : new DiskCache[]{cache, restarted}) {
+            for (int i = 0; i < 100; i++) {
+                assertEquals((i % 2 == 0 ? "new-" : "old-") + i, disk.get("translation:" + i).value(), "ключ " + i);
+            }
+            for (int i = 100; i < 300; i++) {
+                assertEquals("late-" + i, disk.get("translation:" + i).value(), "ключ " + i);
+            }
+        }
+    }
+
+    @Test
+    void tornRecord_ShouldBeDroppedOnLoad() throws IOException {
+        // Arrange
+        DiskCache cache = open();
+        cache.put("translation:ok", "value", inAnHour());
+        Files.write(directory.resolve("translations.log"), new byte[]{0, 0, 1, 0, 42},
+                StandardOpenOption.APPEND);
+
+        // Act
+        DiskCache restarted = open();
+        restarted.put("translation:after", "next", inAnHour());
+
+        // Assert
+        assertEquals("value", restarted.get("translation:ok").value());
+        assertEquals("next", open().get("translation:after").value());
+    }
+
+    @Test
+    void cacheService_ShouldFallThroughToDiskAfterRestart() {
+        // Arrange
+        CacheService beforeRestart = new CacheService(100, 60);
+        beforeRestart.attachDiskCache(open());
+        beforeRestart.put("translation:hello", "привет", 60);
+        beforeRestart.put("command:1:/help:0", "help text", 60);
+        beforeRestart.shutdown();
+
+        CacheService afterRestart = new CacheService(100, 60);
+        afterRestart.attachDiskCache(open());
+
+        // Act
+        String translation = afterRestart.get("translation:hello");
+        String command = afterRestart.get("command:1:/help:0");
+
+        // Assert: на диск попадают только переводы
+        assertEquals("привет", translation);
+        assertNull(command);
+        assertEquals(1, afterRestart.size());
+    }
+}
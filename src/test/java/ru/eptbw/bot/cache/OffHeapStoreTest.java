@@ -0,0 +1,100 @@
+package ru.eptbw.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStoreTest {
+
+    @Test
+    void storeAndRead_ShouldRoundTripUnicode() {
+        // Arrange
+        OffHeapStore store = new OffHeapStore(8 * 1024 * 1024);
+
+        // Act
+        long handle = store.store("Привет, мир! ¿Qué tal? 👋");
+
+        // Assert
+        assertEquals("Привет, мир! ¿Qué tal? 👋", store.read(handle));
+        assertEquals(64, store.blockSize(handle));
+    }
+
+    @Test
+    void longText_ShouldBeCompressed() {
+        OffHeapStore store = new OffHeapStore(8 * 1024 * 1024);
+        String text = "Это длинный перевод, который хорошо сжимается. ".repeat(100);
+
+        long handle = store.store(text);
+
+        assertEquals(text, store.read(handle));
+        assertTrue(store.getPayloadBytes() < text.length() / 4, "сжатых байт: " + store.getPayloadBytes());
+        assertTrue(store.getStats().contains("сжатых 1"));
+    }
+
+    @Test
+    void free_ShouldReuseBlockAndReturnBytes() {
+        OffHeapStore store = new OffHeapStore(8 * 1024 * 1024);
+        long first = store.store("first");
+
+        store.free(first);
+        long second = store.store("second");
+
+        assertEquals(first, second);
+        assertEquals("second", store.read(second));
+        assertEquals(64, store.getUsedBytes());
+    }
+
+    @Test
+    void store_WhenMemoryExhausted_ShouldRejectValue() {
+        // Лимит в один слаб: второй класс размера слаб уже не получит
+        OffHeapStore store = new OffHeapStore(1024 * 1024);
+        assertNotEquals(OffHeapStore.NO_HANDLE, store.store("short"));
+
+        assertEquals(OffHeapStore.NO_HANDLE, store.store("x".repeat(200)));
+    }
+
+    @Test
+    void emptySlab_ShouldBeReturnedForOtherSizeClasses() {
+        // Arrange: два слаба блоков по 64 байта при лимите в два слаба
+        OffHeapStore store = new OffHeapStore(2 * 1024 * 1024);
+        long[] handles = new long[20_000];
+        for (int i = 0; i < handles.length; i++) {
+            handles[i] = store.store("value " + i);
+        }
+        assertEquals(OffHeapStore.NO_HANDLE, store.store("x".repeat(200)));
+
+        // Act: первый слаб освобождается целиком
+        for (int i = 0; i < 16_384; i++) {
+            store.free(handles[i]);
+        }
+
+        // Assert: его память отдана и досталась другому классу размера
+        assertEquals(1024 * 1024, store.getReservedBytes());
+        long large = store.store("x".repeat(200));
+        assertNotEquals(OffHeapStore.NO_HANDLE, large);
+        assertEquals("x".repeat(200), store.read(large));
+        assertEquals("value 19999", store.read(handles[19_999]));
+    }
+
+    @Test
+    void cacheService_ShouldKeepStringsOffHeapAndFreeOnEviction() {
+        // Arrange
+        CacheService cache = new CacheService(100, 60, 8 * 1024 * 1024);
+
+        // Act
+        for (int i = 0; i < 1000; i++) {
+            cache.put("translation:" + i, "перевод " + i);
+        }
+        cache.put("number", 42);
+
+        // Assert: вытесненные значения вернули память, остальные читаются из блоков
+        assertEquals(100, cache.size());
+        assertEquals("перевод 999", cache.get("translation:999"));
+        assertEquals(Integer.valueOf(42), cache.get("number"));
+        assertTrue(cache.getStats().contains("значений 99,") || cache.getStats().contains("значений 99 "),
+                cache.getStats());
+
+        cache.clear();
+        assertTrue(cache.getStats().contains("вне кучи=0KB"), cache.getStats());
+    }
+}
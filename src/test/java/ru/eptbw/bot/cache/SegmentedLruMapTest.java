@@ -0,0 +1,175 @@
+package ru.eptbw.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedLruMapTest {
+
+    @Test
+    void put_OverCapacity_ShouldEvictLeastRecentlyUsed() {
+        // Arrange
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(3, 1);
+        map.put("a", "1");
+        map.put("b", "2");
+        map.put("c", "3");
+
+        // Act
+        map.put("d", "4");
+
+        // Assert
+        assertEquals(3, map.size());
+        assertNull(map.get("a"));
+        assertEquals("4", map.get("d"));
+        assertEquals(1, map.getEvictionCount());
+    }
+
+    @Test
+    void accessedEntries_ShouldSurviveScanOfOneTimeKeys() {
+        // Arrange
+        SegmentedLruMap<String, Integer> map = new SegmentedLruMap<>(10, 1);
+        for (int i = 0; i < 5; i++) {
+            map.put("hot" + i, i);
+            map.get("hot" + i);
+        }
+
+        // Act: поток разовых ключей вдвое больше емкости
+        for (int i = 0; i < 20; i++) {
+            map.put("cold" + i, i);
+        }
+
+        // Assert
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, map.get("hot" + i));
+        }
+        assertEquals(10, map.size());
+    }
+
+    @Test
+    void peek_ShouldNotPromoteEntry() {
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(2, 1);
+        map.put("a", "1");
+        map.put("b", "2");
+
+        map.peek("a");
+        map.put("c", "3");
+
+        assertNull(map.peek("a"));
+    }
+
+    @Test
+    void removeWithValue_ShouldKeepReplacedEntry() {
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(10, 1);
+        String stale = "old";
+        map.put("key", stale);
+        map.put("key", "new");
+
+        assertFalse(map.remove("key", stale));
+        assertEquals("new", map.get("key"));
+        assertEquals(1, map.removeIf((key, value) -> value.equals("new")));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void put_OverWeight_ShouldEvictUntilBudgetFits() {
+        // Arrange: вес записи - длина значения, бюджет 100
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(1000, 100,
+                (key, value) -> value.length(), null, 1, null);
+        map.put("a", "x".repeat(40));
+        map.put("b", "x".repeat(40));
+
+        // Act
+        map.put("c", "x".repeat(40));
+
+        // Assert: по количеству место есть, но по весу - только две записи
+        assertEquals(2, map.size());
+        assertNull(map.get("a"));
+        assertEquals(80, map.weightedSize());
+    }
+
+    @Test
+    void replace_ShouldUpdateWeight() {
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(10, 100,
+                (key, value) -> value.length(), null, 1, null);
+        map.put("a", "x".repeat(10));
+
+        map.put("a", "x".repeat(30));
+        assertEquals(30, map.weightedSize());
+
+        map.remove("a");
+        assertEquals(0, map.weightedSize());
+    }
+
+    @Test
+    void entryHeavierThanBudget_ShouldNotBeRetained() {
+        // Arrange
+        List<String> removed = new ArrayList<>();
+        SegmentedLruMap<String, String> map = new SegmentedLruMap<>(10, 100,
+                (key, value) -> value.length(), null, 1, (key, value, cause) -> removed.add(key));
+        map.put("small", "x");
+
+        // Act
+        map.put("huge", "x".repeat(101));
+
+        // Assert: вытеснено все, что мешало, и сама запись - бюджет не превышен
+        assertNull(map.get("huge"));
+        assertTrue(removed.contains("huge"));
+        assertTrue(map.weightedSize() <= 100);
+    }
+
+    @Test
+    void expire_ShouldRemoveOnlyExpiredEntries() {
+        // Arrange: значение - момент истечения
+        long now = System.currentTimeMillis();
+        List<String> removed = new ArrayList<>();
+        SegmentedLruMap<String, Long> map = new SegmentedLruMap<>(10, 0, null, value -> value, 1,
+                (key, value, cause) -> removed.add(key));
+        map.put("short", now + 1000);
+        map.put("long", now + TimeUnit.HOURS.toMillis(1));
+        map.put("renewed", now + 1000);
+        map.put("renewed", now + TimeUnit.HOURS.toMillis(1));
+        map.put("removed", now + 1000);
+        map.remove("removed");
+        removed.clear();
+
+        // Act
+        int expired = map.expire(now + 5000);
+
+        // Assert
+        assertEquals(1, expired);
+        assertEquals(List.of("short"), removed);
+        assertEquals(2, map.size());
+        assertEquals(1, map.getExpirationCount());
+    }
+
+    @Test
+    void concurrentPuts_ShouldNeverExceedMaxSize() throws Exception {
+        // Arrange
+        SegmentedLruMap<String, Integer> map = new SegmentedLruMap<>(1000, 16);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // Act
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            executor.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    map.put(thread + ":" + i, i);
+                    map.get(thread + ":" + (i / 2));
+                }
+            });
+        }
+        executor.shutdown();
+
+        // Assert
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1000, map.size());
+        assertEquals(8, map.getStripeCount());
+        assertEquals(80_000 - 1000, map.getEvictionCount());
+    }
+}
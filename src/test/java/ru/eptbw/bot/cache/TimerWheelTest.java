@@ -0,0 +1,101 @@
+package ru.eptbw.bot.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+    private static final long START = 1_700_000_000_000L;
+
+    private static TimerWheel.Timer timer(long expiresAt) {
+        TimerWheel.Timer timer = new TimerWheel.Timer();
+        timer.expiresAt = expiresAt;
+        return timer;
+    }
+
+    @Test
+    void advance_ShouldExpireOnlyDueTimers() {
+        // Arrange
+        TimerWheel wheel = new TimerWheel(START);
+        TimerWheel.Timer soon = timer(START + TimeUnit.SECONDS.toMillis(5));
+        TimerWheel.Timer later = timer(START + TimeUnit.MINUTES.toMillis(5));
+        wheel.schedule(soon);
+        wheel.schedule(later);
+        List<TimerWheel.Timer> expired = new ArrayList<>();
+
+        // Act
+        wheel.advance(START + TimeUnit.SECONDS.toMillis(7), expired::add);
+
+        // Assert
+        assertEquals(List.of(soon), expired);
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void longTimers_ShouldCascadeDownAndExpireNearDeadline() {
+        // Arrange: сутки - таймер начинает с верхнего уровня
+        TimerWheel wheel = new TimerWheel(START);
+        long deadline = START + TimeUnit.DAYS.toMillis(1);
+        TimerWheel.Timer timer = timer(deadline);
+        wheel.schedule(timer);
+        List<TimerWheel.Timer> expired = new ArrayList<>();
+
+        // Act: поворачиваем колесо посекундно вокруг срока, крупно - до него
+        for (long now = START; now < deadline - TimeUnit.MINUTES.toMillis(2); now += TimeUnit.MINUTES.toMillis(1)) {
+            wheel.advance(now, expired::add);
+        }
+        assertTrue(expired.isEmpty());
+
+        long expiredAt = -1;
+        for (long now = deadline - TimeUnit.MINUTES.toMillis(2); expiredAt < 0; now += 1000) {
+            wheel.advance(now, expired::add);
+            if (!expired.isEmpty()) {
+                expiredAt = now;
+            }
+        }
+
+        // Assert: точность не хуже пары секунд
+        assertTrue(expiredAt >= deadline, "Истек раньше срока: " + (deadline - expiredAt));
+        assertTrue(expiredAt - deadline <= 2000, "Опоздание: " + (expiredAt - deadline));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void deschedule_ShouldRemoveTimer() {
+        TimerWheel wheel = new TimerWheel(START);
+        TimerWheel.Timer timer = timer(START + 1000);
+        wheel.schedule(timer);
+
+        wheel.deschedule(timer);
+        wheel.deschedule(timer);
+        List<TimerWheel.Timer> expired = new ArrayList<>();
+        wheel.advance(START + 10_000, expired::add);
+
+        assertTrue(expired.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void longPause_ShouldExpireEverythingDue() {
+        // Arrange: таймеры на разных уровнях
+        TimerWheel wheel = new TimerWheel(START);
+        List<TimerWheel.Timer> timers = new ArrayList<>();
+        for (long delay : new long[]{500, 30_000, 600_000, 7_200_000}) {
+            TimerWheel.Timer timer = timer(START + delay);
+            timers.add(timer);
+            wheel.schedule(timer);
+        }
+        List<TimerWheel.Timer> expired = new ArrayList<>();
+
+        // Act: колесо не поворачивалось три часа
+        wheel.advance(START + TimeUnit.HOURS.toMillis(3), expired::add);
+
+        // Assert
+        assertEquals(timers.size(), expired.size());
+        assertEquals(0, wheel.size());
+    }
+}
@@ -6,6 +6,7 @@ import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.api.objects.User;
 import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.config.Config;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -160,14 +161,14 @@ class TranslateCommandTest {
 
     @Test
     void execute_TextTooLong_ShouldReturnError() {
-        String longText = "a".repeat(1001);
+        String longText = "a".repeat(Config.getMaxTextLength() + 1);
         Update update = createTestUpdate(123L, "/translate " + longText);
         String[] args = {longText};
 
         String result = translateCommand.execute(update, args);
 
         assertTrue(result.contains("❌ Текст слишком длинный"));
-        assertTrue(result.contains("1000 символов"));
+        assertTrue(result.contains(Config.getMaxTextLength() + " символов"));
     }
 
     @Test
@@ -0,0 +1,106 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.gemini.ApiKeyPool.ApiKey;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyPoolTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+
+    @Test
+    void parse_ShouldReadKeysAndWeights() {
+        // Act
+        ApiKeyPool pool = ApiKeyPool.parse(" key-a:3, key-b ,", 60_000);
+
+        // Assert
+        assertEquals(2, pool.size());
+        assertEquals("key-a", pool.getKeys().get(0).getKey());
+        assertEquals(3, pool.getKeys().get(0).getWeight());
+        assertEquals(1, pool.getKeys().get(1).getWeight());
+        assertEquals(1, ApiKeyPool.parse(null, 60_000).size());
+    }
+
+    @Test
+    void parse_ShouldFallBackToWeightOneOnInvalidWeight() {
+        // Act
+        ApiKeyPool pool = ApiKeyPool.parse("key-a:abc,key-b:,key-c:0,key-d:-2", 60_000);
+
+        // Assert
+        assertEquals(4, pool.size());
+        assertEquals("key-a", pool.getKeys().get(0).getKey());
+        assertEquals("key-b", pool.getKeys().get(1).getKey());
+        for (ApiKey key : pool.getKeys()) {
+            assertEquals(1, key.getWeight());
+        }
+    }
+
+    @Test
+    void acquire_ShouldBalanceOutstandingByWeight() {
+        // Arrange
+        ApiKeyPool pool = new ApiKeyPool(List.of(new ApiKey("heavy", 3), new ApiKey("light", 1)), 60_000, now::get);
+        Map<String, Integer> counts = new HashMap<>();
+
+        // Act: запросы не завершаются, поэтому выбор определяется только нагрузкой
+        for (int i = 0; i < 8; i++) {
+            counts.merge(pool.acquire().getKey(), 1, Integer::sum);
+        }
+
+        // Assert
+        assertEquals(6, counts.get("heavy"));
+        assertEquals(2, counts.get("light"));
+    }
+
+    @Test
+    void rateLimitedKey_ShouldCoolDownAndReturn() {
+        // Arrange
+        ApiKeyPool pool = new ApiKeyPool(List.of(new ApiKey("a", 1), new ApiKey("b", 1)), 60_000, now::get);
+        ApiKey limited = pool.acquire();
+
+        // Act
+        pool.release(limited, new GeminiApiException(429, "quota"));
+
+        // Assert: пока ключ на охлаждении, все запросы идут в другой
+        for (int i = 0; i < 4; i++) {
+            ApiKey key = pool.acquire();
+            assertNotSame(limited, key);
+            pool.release(key, null);
+        }
+        assertEquals(1, limited.getRateLimited());
+
+        now.addAndGet(60_001);
+        boolean returned = false;
+        for (int i = 0; i < 4; i++) {
+            returned |= pool.acquire() == limited;
+        }
+        assertTrue(returned);
+    }
+
+    @Test
+    void allKeysCoolingDown_ShouldPickEarliestRecoveryAndDoubleCooldown() {
+        // Arrange
+        ApiKeyPool pool = new ApiKeyPool(List.of(new ApiKey("a", 1), new ApiKey("b", 1)), 60_000, now::get);
+        ApiKey first = pool.acquire();
+        ApiKey second = pool.acquire();
+        pool.release(first, new GeminiApiException(429, "quota"));
+        now.addAndGet(1_000);
+        pool.release(second, new GeminiApiException(429, "quota"));
+
+        // Act & Assert: оба ключа на охлаждении, раньше освободится первый
+        assertFalse(pool.hasAvailableKey());
+        ApiKey retried = pool.acquire();
+        assertSame(first, retried);
+
+        // Повторный 429 подряд удваивает охлаждение первого ключа
+        pool.release(retried, new GeminiApiException(429, "quota"));
+        assertSame(second, pool.select());
+        now.addAndGet(60_001);
+        assertSame(second, pool.select());
+        assertTrue(pool.getStats().contains("на охлаждении"));
+    }
+}
@@ -0,0 +1,33 @@
+package ru.eptbw.bot.gemini;
+
+import okhttp3.Protocol;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionStatsTest {
+
+    @Test
+    void reuseRate_ShouldCountCallsWithoutNewConnection() {
+        // Arrange
+        ConnectionStats stats = new ConnectionStats();
+
+        // Act - первый вызов открывает соединение, три следующих берут его из пула
+        stats.connectEnd(null, null, null, Protocol.HTTP_2);
+        for (int i = 0; i < 4; i++) {
+            stats.callStart(null);
+            stats.connectionAcquired(null, null);
+        }
+
+        // Assert
+        assertEquals(1, stats.getOpenedConnections());
+        assertEquals(4, stats.getAcquiredConnections());
+        assertEquals(75.0, stats.getReuseRate(), 0.001);
+        assertTrue(stats.getStats().contains("HTTP/2: 1"));
+    }
+
+    @Test
+    void reuseRate_ShouldBeZeroWithoutCalls() {
+        assertEquals(0.0, new ConnectionStats().getReuseRate());
+    }
+}
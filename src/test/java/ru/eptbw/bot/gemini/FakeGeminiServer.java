@@ -0,0 +1,218 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Локальный фейковый Gemini API для офлайн-тестов и нагрузочных прогонов.
+ * Поддерживает generateContent, streamGenerateContent (SSE) и GET описания модели.
+ * Задержка ответа - логнормальная с заданной медианой и sigma; можно внести долю ошибок 500 и 429.
+ * <p>
+ * Запуск: main(port) и GEMINI_BASE_URL=http://localhost:port/v1beta в .env бота.
+ * Параметры берутся из системных свойств fake.medianMs, fake.sigma, fake.errorRate, fake.rateLimitRate.
+ */
+public class FakeGeminiServer implements AutoCloseable {
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private volatile double medianLatencyMs;
+    private volatile double latencySigma;
+    private volatile double errorRate;
+    private volatile double rateLimitRate;
+    private volatile String finishReason = "STOP";
+
+    private final AtomicLong requests = new AtomicLong(0);
+    private final AtomicLong injectedErrors = new AtomicLong(0);
+    private final AtomicLong injectedRateLimits = new AtomicLong(0);
+
+    public FakeGeminiServer(int port, double medianLatencyMs, double latencySigma,
+                            double errorRate, double rateLimitRate) throws IOException {
+        this.medianLatencyMs = medianLatencyMs;
+        this.latencySigma = latencySigma;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        // Ожидание задержки не занимает платформенный поток
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server.setExecutor(executor);
+        this.server.createContext("/v1beta/models/", this::handle);
+    }
+
+    public static FakeGeminiServer start(double medianLatencyMs, double latencySigma,
+                                         double errorRate, double rateLimitRate) throws IOException {
+        FakeGeminiServer fake = new FakeGeminiServer(0, medianLatencyMs, latencySigma, errorRate, rateLimitRate);
+        fake.server.start();
+        return fake;
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1beta";
+    }
+
+    public void setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+    }
+
+    public void setRateLimitRate(double rateLimitRate) {
+        this.rateLimitRate = rateLimitRate;
+    }
+
+    /**
+     * MAX_TOKENS имитирует ответ, оборванный по лимиту maxOutputTokens
+     */
+    public void setFinishReason(String finishReason) {
+        this.finishReason = finishReason;
+    }
+
+    public void setLatency(double medianLatencyMs, double latencySigma) {
+        this.medianLatencyMs = medianLatencyMs;
+        this.latencySigma = latencySigma;
+    }
+
+    public long getRequestCount() {
+        return requests.get();
+    }
+
+    public String getStats() {
+        return String.format("Fake Gemini: запросов=%d, ошибок 500=%d, ответов 429=%d",
+                requests.get(), injectedErrors.get(), injectedRateLimits.get());
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            String path = exchange.getRequestURI().getPath();
+
+            if ("GET".equals(exchange.getRequestMethod())) {
+                String model = path.substring(path.lastIndexOf('/') + 1);
+                send(exchange, 200, "application/json", "{\"name\":\"models/" + model + "\"}");
+                return;
+            }
+
+            sleepLatency();
+
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            if (random.nextDouble() < rateLimitRate) {
+                injectedRateLimits.incrementAndGet();
+                send(exchange, 429, "application/json",
+                        "{\"error\":{\"code\":429,\"status\":\"RESOURCE_EXHAUSTED\"}}");
+                return;
+            }
+            if (random.nextDouble() < errorRate) {
+                injectedErrors.incrementAndGet();
+                send(exchange, 500, "application/json", "{\"error\":{\"code\":500,\"status\":\"INTERNAL\"}}");
+                return;
+            }
+
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            String reply = fakeReply(request.path("contents").path(0).path("parts"));
+
+            if (path.endsWith(":streamGenerateContent")) {
+                sendStream(exchange, reply);
+            } else {
+                send(exchange, 200, "application/json", responseJson(reply, true, finishReason));
+            }
+        }
+    }
+
+    /**
+     * Ответ строится из текста пользователя (вторая часть промпта); пакетный промпт получает JSON-массив
+     */
+    private static String fakeReply(JsonNode parts) throws IOException {
+        String instruction = parts.path(0).path("text").asText("");
+        String userText = parts.size() > 1 ? parts.path(1).path("text").asText("") : instruction;
+
+        if (instruction.contains("JSON-массива")) {
+            ArrayNode translated = objectMapper.createArrayNode();
+            for (JsonNode item : objectMapper.readTree(userText)) {
+                translated.add("[fake] " + item.asText());
+            }
+            return objectMapper.writeValueAsString(translated);
+        }
+        if (instruction.startsWith("Ответь одним словом")) {
+            return "OK";
+        }
+        return "[fake] " + userText;
+    }
+
+    private static String responseJson(String text, boolean withUsage, String finishReason) throws IOException {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode candidate = root.putArray("candidates").addObject();
+        candidate.putObject("content").put("role", "model").putArray("parts").addObject().put("text", text);
+        candidate.put("finishReason", finishReason);
+        if (withUsage) {
+            ObjectNode usage = root.putObject("usageMetadata");
+            usage.put("promptTokenCount", 20 + text.length() / 3);
+            usage.put("candidatesTokenCount", 1 + text.length() / 3);
+        }
+        return objectMapper.writeValueAsString(root);
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private void sendStream(HttpExchange exchange, String reply) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            int chunkSize = Math.max(1, reply.length() / 4);
+            for (int start = 0; start < reply.length(); start += chunkSize) {
+                String chunk = reply.substring(start, Math.min(reply.length(), start + chunkSize));
+                boolean last = start + chunkSize >= reply.length();
+                out.write(("data: " + responseJson(chunk, last, finishReason) + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+    }
+
+    private void sleepLatency() {
+        if (medianLatencyMs <= 0) {
+            return;
+        }
+        double latency = medianLatencyMs * Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian());
+        try {
+            Thread.sleep((long) latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        FakeGeminiServer fake = new FakeGeminiServer(port,
+                Double.parseDouble(System.getProperty("fake.medianMs", "400")),
+                Double.parseDouble(System.getProperty("fake.sigma", "0.5")),
+                Double.parseDouble(System.getProperty("fake.errorRate", "0.01")),
+                Double.parseDouble(System.getProperty("fake.rateLimitRate", "0.02")));
+        fake.server.start();
+        System.out.println("Fake Gemini API запущен: GEMINI_BASE_URL=" + fake.getBaseUrl().replace("127.0.0.1", "localhost"));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(fake.getStats())));
+    }
+}
@@ -0,0 +1,90 @@
+package ru.eptbw.bot.gemini;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import ru.eptbw.bot.gemini.GeminiRequestBody.PromptTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение сборки тела запроса: старый String.format + цепочка replace против GeminiRequestBody.
+ * Запуск: main() этого класса из IDE или через exec:java с classpath тестов.
+ * Основная метрика - gc.alloc.rate.norm (байт на запрос) от GC-профайлера.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeminiRequestBodyBenchmark {
+    private static final MediaType JSON = MediaType.parse("application/json");
+    private static final String INSTRUCTION =
+            "Переведи следующий текст на english. Ответь ТОЛЬКО переводом без дополнительных комментариев:\n\n";
+
+    @Param({"64", "1000"})
+    private int textLength;
+
+    private String text;
+    private PromptTemplate template;
+    private Buffer sink;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder(textLength);
+        String sample = "Привет, \"мир\"!\nКак дела?\t";
+        while (builder.length() < textLength) {
+            builder.append(sample);
+        }
+        text = builder.substring(0, textLength);
+        template = new PromptTemplate(INSTRUCTION, null);
+        sink = new Buffer();
+    }
+
+    @Benchmark
+    public long legacyFormat() throws IOException {
+        String prompt = INSTRUCTION + text;
+        String jsonBody = String.format(
+                "{\"contents\":[{\"parts\":[{\"text\":\"%s\"}]}],\"generationConfig\":{\"temperature\":0.3,\"maxOutputTokens\":1000}}",
+                legacyEscape(prompt)
+        );
+        return write(RequestBody.create(jsonBody, JSON));
+    }
+
+    @Benchmark
+    public long streamingGenerator() throws IOException {
+        return write(new GeminiRequestBody(template, text));
+    }
+
+    private long write(RequestBody body) throws IOException {
+        sink.clear();
+        body.writeTo(sink);
+        return sink.size();
+    }
+
+    private static String legacyEscape(String text) {
+        return text.replace("\\", "\\\\")
+                .replace("\"", "\\\"")
+                .replace("\n", "\\n")
+                .replace("\r", "\\r")
+                .replace("\t", "\\t")
+                .replace("\b", "\\b")
+                .replace("\f", "\\f");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GeminiRequestBodyBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,86 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okio.Buffer;
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.gemini.GeminiRequestBody.GenerationConfig;
+import ru.eptbw.bot.gemini.GeminiRequestBody.PromptTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiRequestBodyTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JsonNode write(PromptTemplate template, String text) throws Exception {
+        Buffer buffer = new Buffer();
+        new GeminiRequestBody(template, text).writeTo(buffer);
+        return objectMapper.readTree(buffer.readUtf8());
+    }
+
+    @Test
+    void body_ShouldEscapeUserTextAsSeparatePart() throws Exception {
+        // Arrange
+        PromptTemplate template = new PromptTemplate("Переведи \"это\":\n\n", null);
+        String text = "Строка с \"кавычками\", \\слешем\\,\tтабом\nи эмодзи 😀\u0001";
+
+        // Act
+        JsonNode json = write(template, text);
+
+        // Assert
+        JsonNode parts = json.get("contents").get(0).get("parts");
+        assertEquals(2, parts.size());
+        assertEquals("Переведи \"это\":\n\n", parts.get(0).get("text").asText());
+        assertEquals(text, parts.get(1).get("text").asText());
+        assertEquals(1000, json.get("generationConfig").get("maxOutputTokens").asInt());
+    }
+
+    @Test
+    void thinkingModel_ShouldGetZeroThinkingBudget() throws Exception {
+        // Arrange
+        PromptTemplate template = new PromptTemplate("Переведи: ", null);
+        GenerationConfig config = new GenerationConfig(0.2, 128, false);
+        Buffer thinking = new Buffer();
+        Buffer plain = new Buffer();
+
+        // Act
+        new GeminiRequestBody(template, "текст", config, true).writeTo(thinking);
+        new GeminiRequestBody(template, "текст", config, false).writeTo(plain);
+
+        // Assert
+        JsonNode thinkingConfig = objectMapper.readTree(thinking.readUtf8()).get("generationConfig");
+        assertEquals(0, thinkingConfig.get("thinkingConfig").get("thinkingBudget").asInt());
+        assertEquals(128, thinkingConfig.get("maxOutputTokens").asInt());
+        assertNull(objectMapper.readTree(plain.readUtf8()).get("generationConfig").get("thinkingConfig"));
+    }
+
+    @Test
+    void body_ShouldAppendSuffixPart() throws Exception {
+        // Arrange
+        PromptTemplate template = new PromptTemplate("Сообщение: ", "\n\nОтветь кратко.");
+
+        // Act
+        JsonNode json = write(template, "Привет");
+
+        // Assert
+        JsonNode parts = json.get("contents").get(0).get("parts");
+        assertEquals(3, parts.size());
+        assertEquals("Привет", parts.get(1).get("text").asText());
+        assertEquals("\n\nОтветь кратко.", parts.get(2).get("text").asText());
+    }
+
+    @Test
+    void body_ShouldBeRewritableForRetries() throws Exception {
+        // Arrange
+        GeminiRequestBody body = new GeminiRequestBody(new PromptTemplate("Текст: ", null), "повтор");
+        Buffer first = new Buffer();
+        Buffer second = new Buffer();
+
+        // Act
+        body.writeTo(first);
+        body.writeTo(second);
+
+        // Assert
+        assertEquals(first.readUtf8(), second.readUtf8());
+    }
+}
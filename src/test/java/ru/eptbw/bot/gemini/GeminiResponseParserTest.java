@@ -0,0 +1,50 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.gemini.GeminiResponseParser.ParsedResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GeminiResponseParserTest {
+
+    @Test
+    void parse_ShouldExtractTextFinishReasonAndUsage() throws Exception {
+        // Arrange
+        String json = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"Hello, \\\"world\\\"\"},{\"text\":\"ignored\"}]," +
+                "\"role\":\"model\"},\"finishReason\":\"STOP\",\"avgLogprobs\":-0.1," +
+                "\"safetyRatings\":[{\"category\":\"HARM\",\"probability\":\"NEGLIGIBLE\"}]}," +
+                "{\"content\":{\"parts\":[{\"text\":\"second candidate\"}]}}]," +
+                "\"usageMetadata\":{\"promptTokenCount\":12,\"candidatesTokenCount\":4,\"totalTokenCount\":16," +
+                "\"promptTokensDetails\":[{\"modality\":\"TEXT\",\"tokenCount\":12}]},\"modelVersion\":\"gemini\"}";
+
+        // Act
+        ParsedResponse response = GeminiResponseParser.parse(
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // Assert
+        assertEquals("Hello, \"world\"", response.text);
+        assertEquals("STOP", response.finishReason);
+        assertTrue(response.hasUsage);
+        assertEquals(12, response.promptTokens);
+        assertEquals(4, response.candidatesTokens);
+    }
+
+    @Test
+    void parse_ShouldHandleMissingCandidates() throws Exception {
+        // Act
+        ParsedResponse response = GeminiResponseParser.parse("{\"promptFeedback\":{\"blockReason\":\"SAFETY\"}}");
+
+        // Assert
+        assertNull(response.text);
+        assertFalse(response.hasUsage);
+    }
+
+    @Test
+    void parse_ShouldRejectNonObject() {
+        assertThrows(IOException.class, () -> GeminiResponseParser.parse("[1,2]"));
+    }
+}
@@ -0,0 +1,112 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * GeminiService против локального FakeGeminiServer - без сети и расхода квоты
+ */
+class GeminiServiceFakeServerTest {
+    private FakeGeminiServer fakeServer;
+    private TranslationBackend backend;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        fakeServer = FakeGeminiServer.start(5, 0.3, 0, 0);
+        backend = new GeminiService("test-key", "test-model", fakeServer.getBaseUrl());
+    }
+
+    @AfterEach
+    void tearDown() {
+        fakeServer.close();
+    }
+
+    @Test
+    void translateTextAsync_ShouldReturnFakeTranslation() throws Exception {
+        // Act
+        String result = backend.translateTextAsync("Привет, мир", "english").get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals("[fake] Привет, мир", result);
+        assertTrue(fakeServer.getRequestCount() >= 1);
+    }
+
+    @Test
+    void concurrentTranslations_ShouldAllComplete() throws Exception {
+        // Arrange
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 100; i++) {
+            futures.add(backend.translateTextAsync("Текст номер " + i, "english"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+
+        // Assert
+        for (int i = 0; i < 100; i++) {
+            assertEquals("[fake] Текст номер " + i, futures.get(i).join());
+        }
+    }
+
+    @Test
+    void rateLimitedBackend_ShouldReturnErrorMessage() throws Exception {
+        // Arrange
+        fakeServer.setRateLimitRate(1.0);
+
+        // Act
+        String result = backend.translateTextAsync("Ошибка", "english").get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(result.startsWith("⚠️"));
+    }
+
+    @Test
+    void truncatedTranslation_ShouldBeReportedAsError() throws Exception {
+        // Arrange
+        fakeServer.setFinishReason("MAX_TOKENS");
+
+        // Act
+        String result = backend.translateTextAsync("Длинный текст", "english").get(10, TimeUnit.SECONDS);
+
+        // Assert: обрезанный перевод не выдается за готовый, а ошибка не кешируется
+        assertTrue(result.startsWith("⚠️"));
+    }
+
+    @Test
+    void translateTextStream_ShouldDeliverPartials() throws Exception {
+        // Arrange
+        List<String> partials = new CopyOnWriteArrayList<>();
+        String text = "Длинный текст для потокового перевода через фейковый сервер";
+
+        // Act
+        String result = backend.translateTextStream(text, "english", null, partials::add)
+                .get(10, TimeUnit.SECONDS);
+
+        // Assert
+        assertEquals("[fake] " + text, result);
+        assertTrue(partials.size() > 1);
+    }
+
+    @Test
+    void failedTranslation_ShouldFailOrFailAndStreamFutures() {
+        // Arrange
+        fakeServer.setRateLimitRate(1.0);
+
+        // Act & Assert: вызывающий код получает исключение, а не текст ошибки как перевод
+        assertThrows(ExecutionException.class,
+                () -> backend.translateTextOrFail("Ошибка", "english", null).get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class,
+                () -> backend.translateTextStream("Ошибка", "english", null, partial -> { })
+                        .get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,116 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingPolicyTest {
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<CompletableFuture<String>> attempts = new ArrayList<>();
+
+    private HedgingPolicy createPolicy(double maxHedgePercent) {
+        return new HedgingPolicy((task, delayMs) -> scheduled.add(task), 95, maxHedgePercent, 0);
+    }
+
+    private CompletableFuture<String> attempt() {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        attempts.add(future);
+        return future;
+    }
+
+    /**
+     * Набираем статистику задержек, чтобы политика начала хеджировать
+     */
+    private void warmUp(HedgingPolicy policy) {
+        for (int i = 0; i < 32; i++) {
+            policy.execute(() -> CompletableFuture.completedFuture("fast"));
+        }
+    }
+
+    @Test
+    void noHedge_UntilLatencyStatisticsCollected() {
+        // Arrange
+        HedgingPolicy policy = createPolicy(100);
+
+        // Act
+        policy.execute(this::attempt);
+
+        // Assert
+        assertTrue(scheduled.isEmpty());
+        assertEquals(-1, policy.getHedgeDelayMs());
+    }
+
+    @Test
+    void slowRequest_ShouldBeHedgedAndLoserCancelled() {
+        // Arrange
+        HedgingPolicy policy = createPolicy(100);
+        warmUp(policy);
+
+        // Act
+        CompletableFuture<String> result = policy.execute(this::attempt);
+        assertEquals(1, scheduled.size());
+        scheduled.get(0).run();
+        attempts.get(1).complete("hedge");
+
+        // Assert
+        assertEquals("hedge", result.join());
+        assertTrue(attempts.get(0).isCancelled());
+        assertEquals(1, policy.getHedgesSent());
+        assertEquals(1, policy.getHedgeWins());
+    }
+
+    @Test
+    void failedPrimary_ShouldWaitForHedge() {
+        // Arrange
+        HedgingPolicy policy = createPolicy(100);
+        warmUp(policy);
+        CompletableFuture<String> result = policy.execute(this::attempt);
+        scheduled.get(0).run();
+
+        // Act
+        attempts.get(0).completeExceptionally(new RuntimeException("timeout"));
+
+        // Assert
+        assertFalse(result.isDone());
+        attempts.get(1).complete("hedge");
+        assertEquals("hedge", result.join());
+    }
+
+    @Test
+    void hedges_ShouldBeCappedByBudget() {
+        // Arrange - бюджет 5% от 32 прогревочных и 10 медленных запросов = 2 дубликата
+        HedgingPolicy policy = createPolicy(5);
+        warmUp(policy);
+
+        // Act
+        for (int i = 0; i < 10; i++) {
+            policy.execute(this::attempt);
+        }
+        scheduled.forEach(Runnable::run);
+
+        // Assert
+        assertEquals(2, policy.getHedgesSent());
+        assertEquals(12, attempts.size());
+    }
+
+    @Test
+    void noFreeSlotForHedge_ShouldSkipHedgeAndRefundBudget() {
+        // Arrange
+        HedgingPolicy policy = createPolicy(100);
+        warmUp(policy);
+
+        // Act
+        CompletableFuture<String> result = policy.execute(this::attempt, () -> null);
+        scheduled.get(0).run();
+        attempts.get(0).complete("primary");
+
+        // Assert
+        assertEquals("primary", result.join());
+        assertEquals(1, attempts.size());
+        assertEquals(0, policy.getHedgesSent());
+    }
+}
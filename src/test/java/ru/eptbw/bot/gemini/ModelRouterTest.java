@@ -0,0 +1,103 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.gemini.GeminiRequestBody.GenerationConfig;
+import ru.eptbw.bot.gemini.ModelRouter.RequestType;
+import ru.eptbw.bot.gemini.ModelRouter.Route;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelRouterTest {
+    private final ModelRouter router = new ModelRouter("main-model", "fast-model", 200);
+
+    @Test
+    void shortTranslation_ShouldUseFastTierWithMainFallback() {
+        // Act
+        Route route = router.route(RequestType.TRANSLATION, 50);
+
+        // Assert
+        assertEquals("fast-model", route.tier.model);
+        assertEquals("main-model", route.fallback.model);
+    }
+
+    @Test
+    void longTranslationAndResponses_ShouldUseMainTier() {
+        // Act
+        Route longTranslation = router.route(RequestType.TRANSLATION, 800);
+        Route response = router.route(RequestType.RESPONSE, 10);
+
+        // Assert
+        assertEquals("main-model", longTranslation.tier.model);
+        assertEquals("main-model", response.tier.model);
+        assertEquals(1000, response.config.maxOutputTokens);
+    }
+
+    @Test
+    void maxOutputTokens_ShouldScaleWithInputLength() {
+        // Act
+        int shortTokens = router.route(RequestType.TRANSLATION, 10).config.maxOutputTokens;
+        int longTokens = router.route(RequestType.TRANSLATION, 1000).config.maxOutputTokens;
+
+        // Assert
+        assertEquals(128, shortTokens);
+        assertTrue(longTokens >= 1000);
+        assertSame(router.route(RequestType.TRANSLATION, 20).config, router.route(RequestType.TRANSLATION, 30).config);
+    }
+
+    @Test
+    void unavailableTier_ShouldBeSkipped() {
+        // Act
+        router.markUnavailable(router.getFastTier());
+        Route route = router.route(RequestType.TRANSLATION, 50);
+
+        // Assert
+        assertEquals("main-model", route.tier.model);
+        assertNull(route.fallback);
+    }
+
+    @Test
+    void sameFastModel_ShouldDisableRouting() {
+        // Arrange
+        ModelRouter single = new ModelRouter("main-model", "main-model", 200);
+
+        // Act
+        Route route = single.route(RequestType.TRANSLATION, 10);
+
+        // Assert
+        assertNull(single.getFastTier());
+        assertEquals("main-model", route.tier.model);
+        assertNull(route.fallback);
+    }
+
+    @Test
+    void translationAndPing_ShouldDisableThinkingOnlyWhereSupported() {
+        // Act
+        GenerationConfig translation = router.route(RequestType.TRANSLATION, 50).config;
+        GenerationConfig ping = router.route(RequestType.PING, 2).config;
+        GenerationConfig response = router.route(RequestType.RESPONSE, 10).config;
+
+        // Assert
+        assertFalse(translation.thinking);
+        assertFalse(ping.thinking);
+        assertTrue(response.thinking);
+        assertTrue(ModelRouter.canDisableThinking("gemini-2.5-flash"));
+        assertTrue(ModelRouter.canDisableThinking("gemini-2.5-flash-lite"));
+        assertFalse(ModelRouter.canDisableThinking("gemini-2.0-flash-lite"));
+        assertFalse(ModelRouter.canDisableThinking("gemini-2.5-pro"));
+    }
+
+    @Test
+    void ping_ShouldLeaveRoomForThinkingWhenItCannotBeDisabled() {
+        // Arrange
+        ModelRouter flashRouter = new ModelRouter("gemini-2.5-flash", null, 200);
+        ModelRouter proRouter = new ModelRouter("gemini-2.5-pro", null, 200);
+
+        // Act
+        GenerationConfig flashPing = flashRouter.route(RequestType.PING, 2).config;
+        GenerationConfig proPing = proRouter.route(RequestType.PING, 2).config;
+
+        // Assert
+        assertEquals(16, flashPing.maxOutputTokens);
+        assertTrue(proPing.maxOutputTokens >= 256);
+    }
+}
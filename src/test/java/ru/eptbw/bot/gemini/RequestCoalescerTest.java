@@ -0,0 +1,82 @@
+package ru.eptbw.bot.gemini;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCoalescerTest {
+
+    @Test
+    void concurrentCallsWithSameKey_ShouldShareOneRequest() {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        AtomicInteger calls = new AtomicInteger(0);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<String> second = coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("другой");
+        });
+
+        assertEquals(1, coalescer.getInFlightCount());
+        pending.complete("перевод");
+
+        assertEquals("перевод", first.join());
+        assertEquals("перевод", second.join());
+        assertEquals(1, calls.get());
+        assertEquals(1, coalescer.getCoalescedCalls());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    void callAfterCompletion_ShouldStartNewRequest() {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+
+        coalescer.execute("key", () -> CompletableFuture.completedFuture("1")).join();
+        String result = coalescer.execute("key", () -> CompletableFuture.completedFuture("2")).join();
+
+        assertEquals("2", result);
+        assertEquals(2, coalescer.getExecutedCalls());
+        assertEquals(0, coalescer.getCoalescedCalls());
+    }
+
+    @Test
+    void failure_ShouldPropagateToAllWaiters() {
+        RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        CompletableFuture<String> pending = new CompletableFuture<>();
+
+        CompletableFuture<String> first = coalescer.execute("key", () -> pending);
+        CompletableFuture<String> second = coalescer.execute("key", () -> pending);
+        pending.completeExceptionally(new RuntimeException("Превышена квота Gemini API."));
+
+        assertTrue(first.isCompletedExceptionally());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, coalescer.getInFlightCount());
+    }
+
+    @Test
+    void translationKey_ShouldIgnoreSurroundingAndRepeatedWhitespace() {
+        assertEquals(
+                RequestCoalescer.translationKey("Привет   мир", "English"),
+                RequestCoalescer.translationKey("  Привет мир \n", "english"));
+        assertNotEquals(
+                RequestCoalescer.translationKey("Привет мир", "english"),
+                RequestCoalescer.translationKey("Привет мир", "german"));
+    }
+
+    @Test
+    void translationKey_ShouldKeepLineBreaks() {
+        assertNotEquals(
+                RequestCoalescer.translationKey("Первая строка\nВторая строка", "english"),
+                RequestCoalescer.translationKey("Первая строка Вторая строка", "english"));
+        assertEquals(
+                RequestCoalescer.translationKey("Строка\r\nещё\tодна", "english"),
+                RequestCoalescer.translationKey("Строка\nещё одна", "english"));
+    }
+}
@@ -0,0 +1,122 @@
+package ru.eptbw.bot.gemini;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranslationBatcherTest {
+
+    private final List<Runnable> scheduled = new ArrayList<>();
+    private final List<String> prompts = new ArrayList<>();
+    private final AtomicInteger singleCalls = new AtomicInteger(0);
+
+    private TranslationBatcher createBatcher(String batchResponse, int maxItems) {
+        return new TranslationBatcher(
+                (lang, jsonArray) -> {
+                    prompts.add(jsonArray);
+                    return CompletableFuture.completedFuture(new GeminiResult(batchResponse, 40, 20));
+                },
+                (text, lang) -> {
+                    singleCalls.incrementAndGet();
+                    return CompletableFuture.completedFuture(new GeminiResult("single:" + text, 10, 5));
+                },
+                (task, delayMs) -> scheduled.add(task),
+                new ObjectMapper(),
+                30, maxItems, 100);
+    }
+
+    @Test
+    void fullBatch_ShouldBeSentAsOneRequest() {
+        TranslationBatcher batcher = createBatcher("```json\n[\"Hello\", \"World\"]\n```", 2);
+
+        CompletableFuture<GeminiResult> first = batcher.submit("Привет", "english");
+        CompletableFuture<GeminiResult> second = batcher.submit("Мир", "english");
+
+        assertEquals("Hello", first.join().getText());
+        assertEquals("World", second.join().getText());
+        assertEquals(1, prompts.size());
+        assertTrue(prompts.get(0).contains("[\"Привет\",\"Мир\"]"));
+        assertEquals(0, singleCalls.get());
+        // Токены пакета делятся пропорционально длине текстов
+        assertEquals(40, first.join().getPromptTokens() + second.join().getPromptTokens());
+    }
+
+    @Test
+    void windowExpiry_ShouldFlushPartialBatch() {
+        TranslationBatcher batcher = createBatcher("[\"Hello\"]", 8);
+
+        CompletableFuture<GeminiResult> only = batcher.submit("Привет", "english");
+        assertFalse(only.isDone());
+        assertEquals(1, scheduled.size());
+
+        scheduled.get(0).run();
+
+        // Один текст отправляется обычным промптом
+        assertEquals("single:Привет", only.join().getText());
+        assertTrue(prompts.isEmpty());
+    }
+
+    @Test
+    void unparsableResponse_ShouldFallBackToSingleCalls() {
+        TranslationBatcher batcher = createBatcher("Hello, World", 2);
+
+        CompletableFuture<GeminiResult> first = batcher.submit("Привет", "english");
+        CompletableFuture<GeminiResult> second = batcher.submit("Мир", "english");
+
+        assertEquals("single:Привет", first.join().getText());
+        assertEquals("single:Мир", second.join().getText());
+        assertEquals(1, batcher.getFallbacks());
+    }
+
+    @Test
+    void failedBatchRequest_ShouldFailJobsWithoutSingleCalls() {
+        // Arrange
+        GeminiApiException quota = new GeminiApiException(429, "Quota exceeded");
+        TranslationBatcher batcher = new TranslationBatcher(
+                (lang, jsonArray) -> CompletableFuture.failedFuture(quota),
+                (text, lang) -> {
+                    singleCalls.incrementAndGet();
+                    return CompletableFuture.completedFuture(new GeminiResult("single:" + text, 10, 5));
+                },
+                (task, delayMs) -> scheduled.add(task),
+                new ObjectMapper(),
+                30, 2, 100);
+
+        // Act
+        CompletableFuture<GeminiResult> first = batcher.submit("Привет", "english");
+        CompletableFuture<GeminiResult> second = batcher.submit("Мир", "english");
+
+        // Assert: ошибка доходит до каждого задания, лишних запросов нет
+        CompletionException error = assertThrows(CompletionException.class, first::join);
+        assertSame(quota, error.getCause());
+        assertTrue(second.isCompletedExceptionally());
+        assertEquals(0, singleCalls.get());
+        assertEquals(0, batcher.getFallbacks());
+    }
+
+    @Test
+    void languagesShouldBeBatchedSeparately() {
+        TranslationBatcher batcher = createBatcher("[\"a\", \"b\"]", 2);
+
+        batcher.submit("Привет", "english");
+        batcher.submit("Привет", "german");
+
+        assertTrue(prompts.isEmpty());
+        assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    void longText_ShouldNotBeAccepted() {
+        TranslationBatcher batcher = createBatcher("[]", 8);
+
+        assertTrue(batcher.accepts("кот"));
+        assertFalse(batcher.accepts("x".repeat(101)));
+    }
+}
@@ -0,0 +1,76 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.cache.CacheService;
+import ru.eptbw.bot.gemini.GeminiService;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CachingTranslationBackendTest {
+
+    private final AtomicInteger apiCalls = new AtomicInteger();
+    private CachingTranslationBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        CacheService.getInstance().clear();
+        GeminiService gemini = new GeminiService("test-key", "test-model") {
+            @Override
+            public String translateText(String text, String targetLanguage) {
+                apiCalls.incrementAndGet();
+                return text.startsWith("fail") ? "⚠️ Ошибка перевода. Попробуйте позже." : "[" + targetLanguage + "] " + text;
+            }
+
+            @Override
+            public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+                return CompletableFuture.completedFuture(translateText(text, targetLanguage));
+            }
+        };
+        backend = new CachingTranslationBackend(gemini, CacheService.getInstance(), 60);
+    }
+
+    @Test
+    void sameText_ShouldBeTranslatedOnceForAllLanguageSpellings() {
+        // Act: разные пользователи, язык указан названием и кодом
+        String first = backend.translateText("Good morning, dear friends", "russian");
+        String second = backend.translateText("Good morning,  dear friends ", "ru");
+
+        // Assert
+        assertEquals(first, second);
+        assertEquals(1, apiCalls.get());
+        assertTrue(backend.getCacheStats().contains("попаданий=1 из 2"));
+    }
+
+    @Test
+    void errorReplies_ShouldNotBeCached() {
+        backend.translateText("fail once", "english");
+        backend.translateText("fail once", "english");
+
+        assertEquals(2, apiCalls.get());
+    }
+
+    @Test
+    void staleTranslation_ShouldBeServedAndRefreshedInBackground() throws InterruptedException {
+        // Arrange: перевод в кеше устарел сразу, но живет еще час
+        CacheService cache = CacheService.getInstance();
+        LanguageDetector.Detection detection = LanguageDetector.detect("Good night");
+        String key = cache.getTranslationCacheKey("Good night",
+                detection.isReliable() ? detection.getLanguage() : "auto", "ru");
+        cache.put(key, "старый перевод", 0, 60);
+        Thread.sleep(5);
+
+        // Act
+        String translation = backend.translateTextAsync("Good night", "russian", 1L).join();
+
+        // Assert: пользователь получил запись из кеша, а свежий перевод запрошен одним запросом в фоне
+        assertEquals("старый перевод", translation);
+        for (int i = 0; i < 100 && apiCalls.get() == 0; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(1, apiCalls.get());
+    }
+}
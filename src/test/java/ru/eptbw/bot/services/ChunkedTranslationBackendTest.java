@@ -0,0 +1,162 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.cache.CacheService;
+import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.gemini.TranslationBackend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkedTranslationBackendTest {
+
+    private static final String LONG_TEXT = "First paragraph.\n\nSecond paragraph.\n\nThird paragraph.\n\nFourth paragraph.";
+
+    @Test
+    void translateTextAsync_ShouldLimitParallelismAndKeepOrder() {
+        // Arrange
+        ManualBackend backend = new ManualBackend();
+        ChunkedTranslationBackend chunked = new ChunkedTranslationBackend(backend, 20, 2);
+
+        // Act
+        CompletableFuture<String> result = chunked.translateTextAsync(LONG_TEXT, "russian", 1L);
+
+        // Assert: одновременно выполняются только две части
+        assertEquals(2, backend.pending.size());
+        backend.complete(1);
+        assertEquals(3, backend.requested.size());
+        backend.complete(0);
+        backend.complete(2);
+        backend.complete(3);
+
+        assertEquals("[First paragraph.]\n\n[Second paragraph.]\n\n[Third paragraph.]\n\n[Fourth paragraph.]",
+                result.join());
+    }
+
+    @Test
+    void translateTextStream_ShouldPublishContiguousPrefix() {
+        ManualBackend backend = new ManualBackend();
+        ChunkedTranslationBackend chunked = new ChunkedTranslationBackend(backend, 20, 4);
+        List<String> partials = new CopyOnWriteArrayList<>();
+
+        CompletableFuture<String> result = chunked.translateTextStream(LONG_TEXT, "russian", 1L, partials::add);
+        backend.complete(1);
+        backend.complete(0);
+        backend.complete(3);
+        backend.complete(2);
+
+        // Вторая часть ждет первую, четвертая - третью
+        assertEquals(List.of("[First paragraph.]\n\n[Second paragraph.]"), partials);
+        assertTrue(result.join().endsWith("[Fourth paragraph.]"));
+    }
+
+    @Test
+    void translateTextAsync_ShouldFailWhenChunkFails() {
+        ManualBackend backend = new ManualBackend();
+        ChunkedTranslationBackend chunked = new ChunkedTranslationBackend(backend, 20, 2);
+
+        CompletableFuture<String> result = chunked.translateTextAsync(LONG_TEXT, "russian", 1L);
+        backend.pending.get(0).completeExceptionally(new IllegalStateException("Gemini недоступен"));
+
+        assertTrue(result.isCompletedExceptionally());
+    }
+
+    @Test
+    void failedChunk_FromGeminiErrorText_ShouldFailWholeDocumentAndNotBeCached() {
+        // Arrange: настоящий GeminiService с недоступным API - ошибку он отдает текстом "⚠️ ..."
+        GeminiService gemini = new GeminiService("test-key", "test-model", "http://127.0.0.1:1");
+        ChunkedTranslationBackend chunked = new ChunkedTranslationBackend(gemini, 20, 2);
+        CacheService cache = CacheService.getInstance();
+        CachingTranslationBackend caching = new CachingTranslationBackend(chunked, cache, 60);
+        String text = "Errors must not be cached.\n\n" + LONG_TEXT;
+
+        // Act
+        String single = gemini.translateTextAsync("Single paragraph.", "russian", 1L).join();
+        CompletableFuture<String> document = caching.translateTextAsync(text, "russian", 1L);
+
+        // Assert: ошибка части не склеивается с остальными, весь документ проваливается
+        assertTrue(single.startsWith("⚠️"));
+        assertThrows(CompletionException.class, document::join);
+        assertTrue(chunked.translateText(text, "russian").startsWith("⚠️"));
+        LanguageDetector.Detection detection = LanguageDetector.detect(text);
+        assertNull(cache.get(cache.getTranslationCacheKey(text,
+                detection.isReliable() ? detection.getLanguage() : "auto", "ru")));
+    }
+
+    @Test
+    void shortText_ShouldBePassedToDelegateAsIs() {
+        ManualBackend backend = new ManualBackend();
+        ChunkedTranslationBackend chunked = new ChunkedTranslationBackend(backend, 100, 2);
+
+        assertEquals("[Short text]", chunked.translateText("Short text", "russian"));
+        chunked.translateTextAsync("Short text", "russian", 1L);
+        assertEquals(List.of("Short text"), backend.requested);
+    }
+
+    /**
+     * Бэкенд, чьи асинхронные переводы завершаются вручную из теста
+     */
+    private static class ManualBackend implements TranslationBackend {
+        final List<String> requested = new ArrayList<>();
+        final List<CompletableFuture<String>> pending = new ArrayList<>();
+
+        void complete(int index) {
+            pending.get(index).complete("[" + requested.get(index) + "]");
+        }
+
+        @Override
+        public String translateText(String text, String targetLanguage) {
+            return "[" + text + "]";
+        }
+
+        @Override
+        public CompletableFuture<String> translateTextAsync(String text, String targetLanguage, Long userId) {
+            CompletableFuture<String> future = new CompletableFuture<>();
+            requested.add(text);
+            pending.add(future);
+            return future;
+        }
+
+        @Override
+        public CompletableFuture<String> translateTextStream(String text, String targetLanguage, Long userId,
+                                                             Consumer<String> onPartial) {
+            return translateTextAsync(text, targetLanguage, userId);
+        }
+
+        @Override
+        public String autoTranslateToRussian(String text) {
+            return text;
+        }
+
+        @Override
+        public CompletableFuture<String> autoTranslateToRussianAsync(String text) {
+            return CompletableFuture.completedFuture(text);
+        }
+
+        @Override
+        public String generateResponse(String userMessage) {
+            return userMessage;
+        }
+
+        @Override
+        public CompletableFuture<String> generateResponseAsync(String userMessage) {
+            return CompletableFuture.completedFuture(userMessage);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        public String getStats() {
+            return "";
+        }
+    }
+}
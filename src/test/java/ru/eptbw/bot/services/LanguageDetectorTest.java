@@ -0,0 +1,45 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.services.LanguageDetector.Detection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LanguageDetectorTest {
+
+    @Test
+    void detect_ShouldRecognizeRussianByScript() {
+        Detection detection = LanguageDetector.detect("Привет, как дела?");
+
+        assertEquals("ru", detection.getLanguage());
+        assertTrue(detection.isLanguage("russian"));
+    }
+
+    @Test
+    void detect_ShouldNotTreatUkrainianAsRussian() {
+        assertFalse(LanguageDetector.detect("Привіт, як справи? Дякую, все добре").isLanguage("ru"));
+    }
+
+    @Test
+    void detect_ShouldRecognizeLatinLanguages() {
+        assertTrue(LanguageDetector.detect("The weather is good and I want to go for a walk").isLanguage("en"));
+        assertTrue(LanguageDetector.detect("¿Qué hora es? Estoy muy cansado y quiero dormir").isLanguage("es"));
+        assertTrue(LanguageDetector.detect("Je suis très content de vous voir, c'est génial").isLanguage("fr"));
+        assertTrue(LanguageDetector.detect("Ich bin nicht müde, aber ich möchte nach Hause gehen").isLanguage("german"));
+    }
+
+    @Test
+    void detect_ShouldNotBeReliableForSingleShortWord() {
+        // "Hola" - слишком мало данных, чтобы отказаться от перевода
+        assertFalse(LanguageDetector.detect("Hola").isReliable());
+        assertFalse(LanguageDetector.detect("en").isReliable());
+        assertNull(LanguageDetector.detect("12345 !!!").getLanguage());
+    }
+
+    @Test
+    void toCode_ShouldMapLanguageNames() {
+        assertEquals("en", LanguageDetector.toCode("english"));
+        assertEquals("de", LanguageDetector.toCode("DE"));
+        assertEquals("it", LanguageDetector.toCode("it"));
+    }
+}
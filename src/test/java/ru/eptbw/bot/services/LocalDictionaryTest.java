@@ -0,0 +1,76 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalDictionaryTest {
+    private static final String TSV = """
+            # тестовый словарь
+            ru\ten\tes\tfr\tde
+            кот\tcat\tgato\tchat\tkatze
+            зелёный\tgreen\tverde\tvert\tgrün
+            доброе утро\tgood morning\tbuenos días\tbonjour\tguten morgen
+            привет\thello\thola\tbonjour\thallo
+            да\tyes\tsí\toui\t
+            """;
+
+    @TempDir
+    static Path tempDir;
+    private static LocalDictionary dictionary;
+
+    @BeforeAll
+    static void setUp() throws Exception {
+        Path index = tempDir.resolve("test.idx");
+        Files.write(index, LocalDictionary.build(TSV, 0));
+        dictionary = LocalDictionary.open(index);
+    }
+
+    @Test
+    void lookup_ShouldTranslateBetweenAnyLanguages() {
+        assertEquals("cat", dictionary.lookup("кот", "en"));
+        assertEquals("katze", dictionary.lookup("gato", "german"));
+        assertEquals("кот", dictionary.lookup("chat", "russian"));
+    }
+
+    @Test
+    void lookup_ShouldNormalizeQuery() {
+        assertEquals("Good morning", dictionary.lookup("  Доброе   утро! ", "english"));
+        assertEquals("green", dictionary.lookup("зеленый", "en"));
+        assertEquals("зелёный", dictionary.lookup("grün", "ru"));
+    }
+
+    @Test
+    void lookup_ShouldReturnNullOnMissOrSameLanguage() {
+        assertNull(dictionary.lookup("собака", "en"));
+        assertNull(dictionary.lookup("cat", "en"));
+        assertNull(dictionary.lookup("да", "de"));
+        assertNull(dictionary.lookup("кот", "japanese"));
+    }
+
+    @Test
+    void lookup_ShouldPickFirstEntryForAmbiguousTerm() {
+        // bonjour есть в двух статьях - берется первая по порядку в словаре
+        assertEquals("доброе утро", dictionary.lookup("bonjour", "ru"));
+    }
+
+    @Test
+    void loadOrBuild_ShouldBuildIndexFromBundledResource() throws Exception {
+        // Arrange
+        Path index = tempDir.resolve("bundled.idx");
+
+        // Act
+        LocalDictionary bundled = LocalDictionary.loadOrBuild(index, "dictionary.tsv");
+        LocalDictionary reopened = LocalDictionary.loadOrBuild(index, "dictionary.tsv");
+
+        // Assert
+        assertTrue(bundled.getEntryCount() > 100);
+        assertEquals(bundled.getTermCount(), reopened.getTermCount());
+        assertEquals("Katze", reopened.lookup("Кот", "de"));
+    }
+}
@@ -0,0 +1,65 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.services.TextChunker.Chunk;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TextChunkerTest {
+
+    @Test
+    void split_ShortText_ShouldReturnSingleChunk() {
+        List<Chunk> chunks = TextChunker.split("Привет, мир!", 100);
+
+        assertEquals(1, chunks.size());
+        assertEquals("Привет, мир!", chunks.get(0).text());
+    }
+
+    @Test
+    void split_ShouldPreferParagraphBoundaries() {
+        String text = "Первый абзац. Второе предложение.\n\nВторой абзац тоже есть.\n\nТретий.";
+
+        List<Chunk> chunks = TextChunker.split(text, 40);
+
+        assertEquals("Первый абзац. Второе предложение.", chunks.get(0).text());
+        assertEquals("\n\n", chunks.get(0).separator());
+        assertEquals("Второй абзац тоже есть.\n\nТретий.", chunks.get(1).text());
+    }
+
+    @Test
+    void split_LongParagraph_ShouldSplitAtSentences() {
+        String text = "One sentence here. Another sentence follows. And the last one ends it.";
+
+        List<Chunk> chunks = TextChunker.split(text, 30);
+
+        assertEquals("One sentence here.", chunks.get(0).text());
+        assertEquals("Another sentence follows.", chunks.get(1).text());
+        assertEquals("And the last one ends it.", chunks.get(2).text());
+        chunks.forEach(chunk -> assertTrue(chunk.text().length() <= 30));
+    }
+
+    @Test
+    void split_ShouldKeepEveryCharacterAndRespectLimit() {
+        String text = ("Lorem ipsum dolor sit amet, consectetur adipiscing elit. " + "x".repeat(75) + "\n\n").repeat(20);
+
+        List<Chunk> chunks = TextChunker.split(text.strip(), 50);
+
+        StringBuilder restored = new StringBuilder();
+        for (Chunk chunk : chunks) {
+            assertTrue(chunk.text().length() <= 50, chunk.text());
+            restored.append(chunk.text()).append(chunk.separator());
+        }
+        assertEquals(text.strip(), restored.toString());
+    }
+
+    @Test
+    void join_ShouldRestoreSeparatorsInOrder() {
+        List<Chunk> chunks = List.of(new Chunk("А.", "\n\n"), new Chunk("Б.", " "), new Chunk("В.", ""));
+
+        String joined = TextChunker.join(chunks, List.of(" A. ", "B.\n", "C."));
+
+        assertEquals("A.\n\nB. C.", joined);
+    }
+}
@@ -0,0 +1,102 @@
+package ru.eptbw.bot.services;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.eptbw.bot.cache.CacheService;
+import ru.eptbw.bot.gemini.GeminiService;
+import ru.eptbw.bot.services.DatabaseManager.HistoryTranslation;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranslationCacheWarmerTest {
+
+    private final AtomicInteger apiCalls = new AtomicInteger();
+    private CachingTranslationBackend backend;
+
+    @BeforeEach
+    void setUp() {
+        CacheService.getInstance().clear();
+        GeminiService gemini = new GeminiService("test-key", "test-model") {
+            @Override
+            public String translateText(String text, String targetLanguage) {
+                apiCalls.incrementAndGet();
+                return "[" + targetLanguage + "] " + text;
+            }
+        };
+        backend = new CachingTranslationBackend(gemini, CacheService.getInstance(), 60);
+    }
+
+    @Test
+    void warmUp_ShouldPreloadHistoryAndSkipErrorReplies() {
+        // Arrange: язык в истории хранится и названием (/translate), и кодом (автоперевод)
+        List<HistoryTranslation> history = List.of(
+                new HistoryTranslation("Good morning, dear friends", "russian", "Доброе утро, дорогие друзья", 40),
+                new HistoryTranslation("See you tomorrow at the office", "ru", "Увидимся завтра в офисе", 25),
+                new HistoryTranslation("Broken request text", "ru", "⚠️ Ошибка перевода. Попробуйте позже.", 10));
+        TranslationCacheWarmer warmer = new TranslationCacheWarmer((limit, timeout, consumer) -> {
+            int read = 0;
+            for (HistoryTranslation translation : history.subList(0, Math.min(limit, history.size()))) {
+                read++;
+                if (!consumer.test(translation)) {
+                    break;
+                }
+            }
+            return read;
+        }, backend);
+
+        // Act
+        int loaded = warmer.warmUp(10, 5_000);
+
+        // Assert: прогретые фразы переводятся без обращения к API
+        assertEquals(2, loaded);
+        assertEquals("Доброе утро, дорогие друзья", backend.translateText("Good morning, dear friends", "ru"));
+        assertEquals("Увидимся завтра в офисе", backend.translateText("See you tomorrow at the office", "russian"));
+        assertEquals(0, apiCalls.get());
+        backend.translateText("Broken request text", "ru");
+        assertEquals(1, apiCalls.get());
+    }
+
+    @Test
+    void warmUp_ShouldStopWhenBudgetIsSpent() {
+        // Arrange: медленный источник с бесконечной историей
+        AtomicInteger read = new AtomicInteger();
+        TranslationCacheWarmer warmer = new TranslationCacheWarmer((limit, timeout, consumer) -> {
+            while (read.get() < limit) {
+                int i = read.incrementAndGet();
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (!consumer.test(new HistoryTranslation("Phrase number " + i, "ru", "Фраза номер " + i, 1))) {
+                    break;
+                }
+            }
+            return read.get();
+        }, backend);
+
+        // Act
+        long start = System.currentTimeMillis();
+        int loaded = warmer.warmUp(1_000_000, 100);
+
+        // Assert
+        assertTrue(System.currentTimeMillis() - start < 2_000);
+        assertTrue(loaded > 0 && loaded < 1_000, "Загружено: " + loaded);
+    }
+
+    @Test
+    void warmUp_ShouldNotOverwriteCachedTranslation() {
+        backend.translateText("Thank you very much", "ru");
+        TranslationCacheWarmer warmer = new TranslationCacheWarmer((limit, timeout, consumer) -> {
+            consumer.test(new HistoryTranslation("Thank you very much", "ru", "Старый перевод", 5));
+            return 1;
+        }, backend);
+
+        assertEquals(0, warmer.warmUp(10, 1_000));
+        assertEquals("[ru] Thank you very much", backend.translateText("Thank you very much", "ru"));
+    }
+}
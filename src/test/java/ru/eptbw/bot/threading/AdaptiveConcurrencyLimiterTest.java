@@ -0,0 +1,122 @@
+package ru.eptbw.bot.threading;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static class OverloadException extends RuntimeException {
+    }
+
+    private AdaptiveConcurrencyLimiter createLimiter(int initialLimit, int maxQueue) {
+        return new AdaptiveConcurrencyLimiter("test", initialLimit, 1, 10, 60_000, maxQueue,
+                e -> e instanceof OverloadException);
+    }
+
+    @Test
+    void callsOverLimit_ShouldWaitInQueue() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(2, 10);
+        List<CompletableFuture<String>> calls = new ArrayList<>();
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(limiter.submit(() -> {
+                CompletableFuture<String> call = new CompletableFuture<>();
+                calls.add(call);
+                return call;
+            }));
+        }
+
+        assertEquals(2, calls.size(), "Третий вызов должен ждать в очереди");
+        assertEquals(2, limiter.getInFlight());
+
+        calls.get(0).complete("ok");
+
+        assertEquals(3, calls.size(), "После завершения вызова стартует следующий из очереди");
+        assertEquals("ok", results.get(0).join());
+    }
+
+    @Test
+    void overload_ShouldDecreaseLimit() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(8, 10);
+
+        CompletableFuture<String> result = limiter.submit(
+                () -> CompletableFuture.failedFuture(new OverloadException()));
+
+        assertTrue(result.isCompletedExceptionally());
+        assertEquals(6, limiter.getLimit());
+    }
+
+    @Test
+    void slowCall_ShouldDecreaseLimitOnlyWhenLatencyCounts() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 8, 1, 10, 10, 10,
+                e -> e instanceof OverloadException);
+
+        // Потоковый вызов долгий по природе и не считается перегрузкой
+        limiter.submit(() -> slowCall(30), 0).join();
+        assertEquals(8, limiter.getLimit());
+
+        // Для длинного ответа порог увеличен
+        limiter.submit(() -> slowCall(30), 10).join();
+        assertEquals(8, limiter.getLimit());
+
+        limiter.submit(() -> slowCall(30)).join();
+        assertEquals(6, limiter.getLimit());
+    }
+
+    private static CompletableFuture<String> slowCall(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return CompletableFuture.completedFuture("ok");
+    }
+
+    @Test
+    void successes_ShouldIncreaseLimitSlowly() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(2, 10);
+
+        for (int i = 0; i < 4; i++) {
+            limiter.submit(() -> CompletableFuture.completedFuture("ok")).join();
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void fullQueue_ShouldReject() {
+        AdaptiveConcurrencyLimiter limiter = createLimiter(1, 0);
+
+        limiter.submit(CompletableFuture::new);
+        CompletableFuture<String> rejected = limiter.submit(() -> CompletableFuture.completedFuture("ok"));
+
+        assertTrue(rejected.isCompletedExceptionally());
+        assertThrows(Exception.class, rejected::join);
+        assertTrue(rejected.handle((r, e) -> e instanceof RejectedExecutionException).join());
+    }
+
+    @Test
+    void trySubmit_ShouldRunOnlyWithFreeSlotAndPropagateCancel() {
+        // Arrange
+        AdaptiveConcurrencyLimiter limiter = createLimiter(2, 10);
+        limiter.submit(CompletableFuture::new);
+        CompletableFuture<String> call = new CompletableFuture<>();
+
+        // Act
+        CompletableFuture<String> started = limiter.trySubmit(() -> call, 1.0);
+        CompletableFuture<String> skipped = limiter.trySubmit(() -> CompletableFuture.completedFuture("ok"), 1.0);
+        started.cancel(true);
+
+        // Assert
+        assertNull(skipped);
+        assertTrue(call.isCancelled());
+        assertEquals(1, limiter.getInFlight());
+    }
+}
@@ -161,4 +161,45 @@ class RateLimiterServiceSimpleTest {
 
         System.out.println("  ✓ Сервис работает после многопоточной нагрузки");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testTokenQuota() {
+        // Тест 7: Квота токенов зависит от объема текста, а не от числа сообщений
+        Long heavyUser = 66666L;
+        Long lightUser = 77777L;
+
+        System.out.println("Тест 7: Квота токенов");
+
+        int almostAll = (int) ru.eptbw.config.Config.getTokenLimitPerMinute() - 100;
+        assertTrue(rateLimiter.allowTokens(heavyUser, almostAll));
+        rateLimiter.recordTokenUsage(heavyUser, almostAll);
+
+        assertFalse(rateLimiter.allowTokens(heavyUser, 1000),
+                "Пользователь с длинными текстами должен упереться в лимит токенов");
+        assertTrue(rateLimiter.allowTokens(lightUser, 1000),
+                "Квота другого пользователя не должна меняться");
+        assertTrue(rateLimiter.getUserStats(heavyUser).contains("токенов"));
+
+        System.out.println("  ✓ Лимит токенов применяется к каждому пользователю отдельно");
+    }
+
+    @Test
+    void testGlobalTokenUsageWithoutUser() {
+        // Тест 8: расход без пользователя (фоновые запросы) виден в общем бюджете
+        Long user = 88888L;
+        String before = rateLimiter.getTokenStats();
+
+        rateLimiter.recordGlobalTokenUsage(500);
+
+        assertNotEquals(before, rateLimiter.getTokenStats());
+        assertEquals("Нет данных о лимитах", rateLimiter.getUserStats(user));
+    }
+
+    @Test
+    void testTokenEstimateGrowsWithTextLength() {
+        int shortEstimate = RateLimiterService.estimateTranslationTokens("кот");
+        int longEstimate = RateLimiterService.estimateTranslationTokens("кот ".repeat(250));
+
+        assertTrue(longEstimate > shortEstimate * 10);
+    }
+}